@@ -0,0 +1,191 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package crazyballrun.game.level;
+
+import crazyballrun.game.GameConstants;
+import crazyballrun.game.SimulationRunner;
+import crazyballrun.game.physics.CollisionTexture;
+import crazyballrun.game.physics.bodies.PhysicalBody;
+import crazyballrun.game.utilities.QuadTree;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Shared benchmark state: loads a level headless (see SimulationRunner) and
+ * rasterizes the ground of its first layer into walls ("1") and walkable
+ * ground ("0") like the LevelParser does for the pathfinding quadtrees.
+ * The level is loaded once per trial and shared by all benchmark threads.
+ *
+ * @author Timm Hoffmeister
+ */
+@State(Scope.Benchmark)
+public class LevelFixture {
+
+    /**
+     * Name of the level (from level description).
+     */
+    @Param({"SimpleMap"})
+    public String mLevelName;
+
+    /**
+     * The loaded level.
+     */
+    private Level mLevel = null;
+
+    /**
+     * Ground raster of the first layer (row by row, "1" for walls).
+     */
+    private byte [] mGround = null;
+
+    /**
+     * Width of the ground raster in pixels.
+     */
+    private int mWidth = 0;
+
+    /**
+     * Height of the ground raster in pixels.
+     */
+    private int mHeight = 0;
+
+    /**
+     * Quadtree of the first layer (built from the ground raster).
+     */
+    private QuadTree<Integer> mQuadTree = null;
+
+    /**
+     * Start position of the first player (in textures).
+     */
+    private double mStartX = 0.0, mStartY = 0.0;
+
+    /**
+     * Loads the level and rasterizes its ground.
+     * @throws Exception errors while loading the level
+     */
+    @Setup
+    public void setup () throws Exception
+    {
+        System.setProperty("java.awt.headless", "true");
+        mLevel = new SimulationRunner(mLevelName).getLevel();
+        mStartX = getPlayerBody().getPosition().x;
+        mStartY = getPlayerBody().getPosition().y;
+
+        mWidth = mLevel.getWidth() * GameConstants.TEXTURE_SIZE;
+        mHeight = mLevel.getHeight() * GameConstants.TEXTURE_SIZE;
+        mGround = new byte[mWidth * mHeight];
+        for (int x = 0; x < mLevel.getWidth(); x++)
+        {
+            for (int y = 0; y < mLevel.getHeight(); y++)
+            {
+                Tile vTile = mLevel.getTile(x, y, 0);
+                if (vTile == null) continue;
+                for (int ix = 0; ix < GameConstants.TEXTURE_SIZE; ix++)
+                {
+                    for (int iy = 0; iy < GameConstants.TEXTURE_SIZE; iy++)
+                    {
+                        double vX = (ix + 0.5) / GameConstants.TEXTURE_SIZE;
+                        double vY = (iy + 0.5) / GameConstants.TEXTURE_SIZE;
+                        if (vTile.getGroundProperty(vX, vY) == CollisionTexture.GroundProperty.WALL)
+                        {
+                            int px = x * GameConstants.TEXTURE_SIZE + ix;
+                            int py = y * GameConstants.TEXTURE_SIZE + iy;
+                            mGround[py * mWidth + px] = 1;
+                        }
+                    }
+                }
+            }
+        }
+        mQuadTree = createQuadTree();
+    }
+
+    /**
+     * Creates a new quadtree of the first layer by inserting every pixel of
+     * the ground raster (like the LevelParser).
+     * @return the filled quadtree
+     */
+    public QuadTree<Integer> createQuadTree ()
+    {
+        QuadTree<Integer> vQuadTree = new QuadTree<Integer>(0, 0, mWidth, mHeight, GameConstants.TEXTURE_SIZE / 5);
+        for (int x = 0; x < mWidth; x++)
+            for (int y = 0; y < mHeight; y++)
+                vQuadTree.insert(x, y, (int) mGround[y * mWidth + x]);
+        return vQuadTree;
+    }
+
+    /**
+     * Gets the loaded level.
+     * @return the level
+     */
+    public Level getLevel ()
+    {
+        return mLevel;
+    }
+
+    /**
+     * Gets the quadtree of the first layer (built once).
+     * @return the quadtree
+     */
+    public QuadTree<Integer> getQuadTree ()
+    {
+        return mQuadTree;
+    }
+
+    /**
+     * Gets the body of the first player's vehicle.
+     * @return the body
+     */
+    public PhysicalBody getPlayerBody ()
+    {
+        return mLevel.getPlayers().get(0).getVehicle().getObjectModel();
+    }
+
+    /**
+     * Gets the start position of the first player.
+     * @return x-coordinate in textures
+     */
+    public double getStartX ()
+    {
+        return mStartX;
+    }
+
+    /**
+     * Gets the start position of the first player.
+     * @return y-coordinate in textures
+     */
+    public double getStartY ()
+    {
+        return mStartY;
+    }
+
+    /**
+     * Gets the width of the ground raster.
+     * @return width in pixels
+     */
+    public int getWidth ()
+    {
+        return mWidth;
+    }
+
+    /**
+     * Gets the height of the ground raster.
+     * @return height in pixels
+     */
+    public int getHeight ()
+    {
+        return mHeight;
+    }
+
+    /**
+     * Checks if a pixel of the ground raster is a wall.
+     * @param x x-coordinate in pixels
+     * @param y y-coordinate in pixels
+     * @return "true" for walls
+     */
+    public boolean isWall (int x, int y)
+    {
+        return mGround[y * mWidth + x] != 0;
+    }
+}
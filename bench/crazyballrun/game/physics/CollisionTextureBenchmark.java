@@ -0,0 +1,92 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package crazyballrun.game.physics;
+
+import crazyballrun.game.GameConstants;
+import java.io.File;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import javax.imageio.ImageIO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the ground property lookup of a baked collision texture at random
+ * points (as done for every collision point of every body in each timestep).
+ * Run with "-prof gc": the lookup is expected to allocate 0 bytes per
+ * operation.
+ *
+ * @author Timm Hoffmeister
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CollisionTextureBenchmark {
+
+    /**
+     * Name of the texture (from the texture resource folder).
+     */
+    @Param({"Wall", "Ground"})
+    public String mTexture;
+
+    /**
+     * Number of prepared lookup points.
+     */
+    private static final int POINTS = 1024;
+
+    /**
+     * Baked collision texture.
+     */
+    private CollisionTexture mCollisionTexture = null;
+
+    /**
+     * Lookup points (x, y in [0,1]).
+     */
+    private double [] mX = null, mY = null;
+
+    /**
+     * Current lookup point.
+     */
+    private int mPoint = 0;
+
+    /**
+     * Loads and bakes the collision texture and creates the lookup points.
+     * @throws Exception errors while reading the collision image
+     */
+    @Setup
+    public void setup () throws Exception
+    {
+        File vFile = new File(GameConstants.TEXTURE_RESOURCE_PATH + File.separator + mTexture + ".col.bmp");
+        mCollisionTexture = new CollisionTexture(ImageIO.read(vFile));
+
+        Random vRandom = new Random(42);
+        mX = new double[POINTS];
+        mY = new double[POINTS];
+        for (int i = 0; i < POINTS; i++)
+        {
+            mX[i] = vRandom.nextDouble();
+            mY[i] = vRandom.nextDouble();
+        }
+        mPoint = 0;
+    }
+
+    /**
+     * Looks up the ground property of the next point.
+     * @return the ground property
+     */
+    @Benchmark
+    public CollisionTexture.GroundProperty getGroundProperty ()
+    {
+        int i = mPoint;
+        mPoint = (i + 1) & (POINTS - 1);
+        return mCollisionTexture.getGroundProperty(mX[i], mY[i]);
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package crazyballrun.game.physics.bodies;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares the integration of bodies keeping their state in private stores
+ * (one "PhysicalBody.update" per body) with the integration of a shared
+ * BodyStore (one "prepareUpdate" per body and one loop over the store).
+ *
+ * @author Timm Hoffmeister
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BodyStoreBenchmark {
+
+    /**
+     * Storage of the body states ("Private" or "Shared").
+     */
+    @Param({"Private", "Shared"})
+    public String mLayout;
+
+    /**
+     * Number of bodies.
+     */
+    @Param({"1000", "10000"})
+    public int mBodies;
+
+    /**
+     * Timestep size in seconds.
+     */
+    private static final double DT = 1.0 / 65.0;
+
+    /**
+     * Bodies to integrate.
+     */
+    private PhysicalBody [] mObjects = null;
+
+    /**
+     * Shared store (null for the private layout).
+     */
+    private BodyStore mStore = null;
+
+    /**
+     * Creates the bodies with random state, half of them accelerating.
+     */
+    @Setup
+    public void setup ()
+    {
+        Random vRandom = new Random(42);
+        mObjects = new PhysicalBody[mBodies];
+        mStore = mLayout.equals("Shared") ? new BodyStore(mBodies) : null;
+        for (int i = 0; i < mBodies; i++)
+        {
+            PhysicalBody vBody = new SoftBody();
+            vBody.setPosition(vRandom.nextDouble() * 100.0, vRandom.nextDouble() * 100.0);
+            vBody.setRotation(vRandom.nextDouble() * Math.PI * 2.0);
+            vBody.setPhysicalProperty(PhysicalBody.P_MAXIMUM_SPEED, 1.0 + vRandom.nextDouble());
+            if (i % 2 == 0)
+                vBody.applyAcceleration(true);
+            if (i % 3 == 0)
+                vBody.applyRotation(vRandom.nextBoolean());
+            mObjects[i] = vBody;
+        }
+
+        // Add the bodies after creating all of them, so the store is
+        // filled in the same order as the bodies are visited.
+        if (mStore != null)
+        {
+            for (PhysicalBody vBody : mObjects)
+                mStore.add(vBody);
+        }
+    }
+
+    /**
+     * Integrates all bodies for one timestep.
+     * @return rotation of the first body
+     */
+    @Benchmark
+    public double integrate ()
+    {
+        if (mStore == null)
+        {
+            for (PhysicalBody vBody : mObjects)
+                vBody.update(DT, 0.4, 0.9);
+        }
+        else
+        {
+            for (PhysicalBody vBody : mObjects)
+                vBody.prepareUpdate(0.4, 0.9);
+            mStore.integrate(DT);
+        }
+        return mObjects[0].getRotation();
+    }
+}
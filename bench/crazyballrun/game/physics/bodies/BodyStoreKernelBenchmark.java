@@ -0,0 +1,102 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package crazyballrun.game.physics.bodies;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Compares the kernels of "BodyStore.integrate" (scalar loop and batch 
+ * kernel) on a shared store. The inputs of the integration are written once, 
+ * so only the integration itself is measured.
+ *
+ * @author Timm Hoffmeister
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BodyStoreKernelBenchmark {
+
+    /**
+     * Kernel of the integration ("Scalar" or "Batch").
+     */
+    @Param({"Scalar", "Batch"})
+    public String mKernel;
+
+    /**
+     * Number of bodies.
+     */
+    @Param({"1000", "10000", "100000"})
+    public int mBodies;
+
+    /**
+     * Timestep size in seconds.
+     */
+    private static final double DT = 1.0 / 65.0;
+
+    /**
+     * Shared store of the bodies.
+     */
+    private BodyStore mStore = null;
+
+    /**
+     * Fills the store with bodies with random state (half of them 
+     * accelerating) and selects the kernel.
+     */
+    @Setup
+    public void setup ()
+    {
+        Random vRandom = new Random(42);
+        PhysicalBody [] vObjects = new PhysicalBody[mBodies];
+        for (int i = 0; i < mBodies; i++)
+        {
+            PhysicalBody vBody = new SoftBody();
+            vBody.setPosition(vRandom.nextDouble() * 100.0, vRandom.nextDouble() * 100.0);
+            vBody.setRotation(vRandom.nextDouble() * Math.PI * 2.0);
+            vBody.setPhysicalProperty(PhysicalBody.P_MAXIMUM_SPEED, 1.0 + vRandom.nextDouble());
+            if (i % 2 == 0)
+                vBody.applyAcceleration(true);
+            if (i % 3 == 0)
+                vBody.applyRotation(vRandom.nextBoolean());
+            vObjects[i] = vBody;
+        }
+        mStore = new BodyStore(mBodies);
+        for (PhysicalBody vBody : vObjects)
+        {
+            mStore.add(vBody);
+            vBody.prepareUpdate(0.4, 0.9);
+        }
+        BodyStore.setBatchKernel(mKernel.equals("Batch"));
+    }
+
+    /**
+     * Restores the default kernel.
+     */
+    @TearDown
+    public void tearDown ()
+    {
+        BodyStore.setBatchKernel(false);
+    }
+
+    /**
+     * Integrates all bodies for one timestep.
+     * @return rotation of the first body
+     */
+    @Benchmark
+    public double integrate ()
+    {
+        mStore.integrate(DT);
+        return mStore.getBody(0).getRotation();
+    }
+}
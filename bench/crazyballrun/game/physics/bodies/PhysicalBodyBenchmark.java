@@ -0,0 +1,84 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package crazyballrun.game.physics.bodies;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures one "PhysicalBody.update" (integration of velocity, position and
+ * orientation of a single body with its private store) of an accelerating
+ * and turning body. Run with "-prof gc": the update is expected to allocate
+ * 0 bytes per operation.
+ *
+ * @author Timm Hoffmeister
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PhysicalBodyBenchmark {
+
+    /**
+     * Type of the body ("SoftBody" or "Vehicle").
+     */
+    @Param({"SoftBody", "Vehicle"})
+    public String mType;
+
+    /**
+     * Timestep size in seconds.
+     */
+    private static final double DT = 1.0 / 65.0;
+
+    /**
+     * Body to integrate.
+     */
+    private PhysicalBody mBody = null;
+
+    /**
+     * Creates the body and lets it accelerate and turn.
+     */
+    @Setup
+    public void setup ()
+    {
+        if (mType.equals("Vehicle"))
+        {
+            Vehicle vVehicle = new Vehicle();
+            vVehicle.set("CollisionPoint", "20,2");
+            vVehicle.set("CollisionPoint", "40,2");
+            vVehicle.set("CollisionPoint", "40,66");
+            vVehicle.set("CollisionPoint", "20,66");
+            vVehicle.set("OffsetX", "30");
+            vVehicle.set("OffsetY", "40");
+            vVehicle.initialize();
+            mBody = vVehicle;
+        }
+        else
+        {
+            mBody = new SoftBody();
+        }
+        mBody.setPosition(1.0, 1.0);
+        mBody.setPhysicalProperty(PhysicalBody.P_MAXIMUM_SPEED, 1.5);
+        mBody.applyAcceleration(true);
+        mBody.applyRotation(true);
+    }
+
+    /**
+     * Integrates the body for one timestep.
+     * @return rotation of the body
+     */
+    @Benchmark
+    public double update ()
+    {
+        mBody.update(DT, 0.4, 0.9);
+        return mBody.getRotation();
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package crazyballrun.game.physics.bodies;
+
+import crazyballrun.game.level.LevelFixture;
+import crazyballrun.game.utilities.Vector2D;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the per-step collision data update of the Vehicle (polygon rotation
+ * and collision points), the object-collision test using these points and the
+ * texture-collision test of the first player's vehicle on a level. Run
+ * with "-prof gc": all benchmarks are expected to allocate 0 bytes per
+ * operation ("gc.alloc.rate.norm").
+ *
+ * @author Timm Hoffmeister
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class VehicleBenchmark {
+
+    /**
+     * Number of recorded poses of the moving vehicle.
+     */
+    private static final int FRAMES = 600;
+
+    /**
+     * Vehicle driving a circle.
+     */
+    private Vehicle mMoving = null;
+
+    /**
+     * Vehicle standing still next to the circle.
+     */
+    private Vehicle mResting = null;
+
+    /**
+     * Recorded poses of the moving vehicle (frame, x/y/rotation).
+     */
+    private double [][] mPoses = null;
+
+    /**
+     * Current frame of the recording.
+     */
+    private int mFrame = 0;
+
+    /**
+     * Creates a vehicle with the polygon of the truck.
+     * @return reference to the vehicle
+     */
+    private static Vehicle createVehicle ()
+    {
+        Vehicle vVehicle = new Vehicle();
+        vVehicle.set("CollisionPoint", "20,2");
+        vVehicle.set("CollisionPoint", "40,2");
+        vVehicle.set("CollisionPoint", "44,20");
+        vVehicle.set("CollisionPoint", "40,66");
+        vVehicle.set("CollisionPoint", "20,66");
+        vVehicle.set("CollisionPoint", "16,20");
+        vVehicle.set("OffsetX", "30");
+        vVehicle.set("OffsetY", "40");
+        vVehicle.initialize();
+        return vVehicle;
+    }
+
+    /**
+     * Creates the vehicles and records the poses of the moving one.
+     */
+    @Setup
+    public void setup ()
+    {
+        mMoving = createVehicle();
+        mResting = createVehicle();
+        mResting.setPosition(1.3, 1.0);
+        mResting.setRotation(0.3);
+        mResting.updateData();
+
+        double dt = 1.0 / 65.0;
+        mPoses = new double[FRAMES][3];
+        for (int f = 0; f < FRAMES; f++)
+        {
+            double vAngle = f * dt * 2.0;
+            mPoses[f][0] = 1.0 + 0.4 * Math.cos(vAngle);
+            mPoses[f][1] = 1.0 + 0.4 * Math.sin(vAngle);
+            mPoses[f][2] = vAngle;
+        }
+        mFrame = 0;
+    }
+
+    /**
+     * Moves and rotates the vehicle to the next recorded pose and updates its
+     * collision data (like one physics step).
+     * @return number of the updated frame
+     */
+    @Benchmark
+    public int updateMoving ()
+    {
+        double [] vPose = mPoses[mFrame];
+        mFrame = (mFrame + 1) % FRAMES;
+        mMoving.setPosition(vPose[0], vPose[1]);
+        mMoving.setRotation(vPose[2]);
+        mMoving.updateData();
+        return mFrame;
+    }
+
+    /**
+     * Updates the collision data of a vehicle that has not moved since the
+     * last step.
+     * @return rotation of the vehicle
+     */
+    @Benchmark
+    public double updateResting ()
+    {
+        mResting.updateData();
+        return mResting.getRotation();
+    }
+
+    /**
+     * Moves the vehicle to the next recorded pose and checks it against the
+     * resting vehicle (collision points against polygon).
+     * @return "true" if the vehicles are colliding
+     */
+    @Benchmark
+    public boolean collide ()
+    {
+        updateMoving();
+        return mMoving.isColliding(mResting) || mResting.isColliding(mMoving);
+    }
+
+    /**
+     * Moves the first player's vehicle of the level around its start position
+     * and checks it against the collision textures.
+     * @param level the loaded level
+     * @return colliding point (or 'null')
+     */
+    @Benchmark
+    public Vector2D collideLevel (LevelFixture level)
+    {
+        double [] vPose = mPoses[mFrame];
+        mFrame = (mFrame + 1) % FRAMES;
+        PhysicalBody vBody = level.getPlayerBody();
+        vBody.setPosition(level.getStartX() + vPose[0] - 1.0, level.getStartY() + vPose[1] - 1.0);
+        vBody.setRotation(vPose[2]);
+        vBody.updateData();
+        return vBody.isColliding(level.getLevel());
+    }
+}
@@ -0,0 +1,326 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package crazyballrun.game.physics.broadphase;
+
+import crazyballrun.game.graphics.Animation;
+import crazyballrun.game.level.Level;
+import crazyballrun.game.level.Tile;
+import crazyballrun.game.level.objects.LevelObject;
+import crazyballrun.game.physics.bodies.PhysicalBody;
+import crazyballrun.game.physics.bodies.SoftBody;
+import crazyballrun.game.physics.bodies.Vehicle;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares the object-collision detection of the Broadphase-implementations:
+ * the object queries (Broadphase.collision for each object, like in the 
+ * object order of the PhysicsThread) of the tiles and of the grid, and the 
+ * candidate pairs with a narrowphase (like in the phased order). All 
+ * variants replay the same recorded scene: a few vehicles driving circles and 
+ * a swarm of homing rockets following them. 
+ * 
+ * @author Timm Hoffmeister
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BroadphaseBenchmark {
+    
+    /**
+     * Type of the Broadphase to measure (see BroadphaseFactory).
+     */
+    @Param({"Tile", "Grid", "SweepAndPrune"})
+    public String mType;
+    
+    /**
+     * Number of homing rockets in the scene.
+     */
+    @Param({"200"})
+    public int mRockets;
+    
+    /**
+     * Number of vehicles in the scene.
+     */
+    private static final int VEHICLES = 4;
+    
+    /**
+     * Number of recorded frames. 
+     */
+    private static final int FRAMES = 600;
+    
+    /**
+     * Size of the level (in textures).
+     */
+    private static final int LEVEL_SIZE = 20;
+    
+    /**
+     * Minimal LevelObject for the recorded scene.
+     */
+    private static class SceneObject extends LevelObject 
+    {
+        @Override
+        public Animation getAnimation() { return null; }
+
+        @Override
+        public void setProperty(String property, String value) { }
+
+        @Override
+        public void initialize() { }
+
+        @Override
+        public void onCollision(LevelObject obj) { }
+    }
+    
+    /**
+     * Level containing the tiles of the scene.
+     */
+    private Level mLevel = null;
+    
+    /**
+     * Objects of the scene.
+     */
+    private LevelObject [] mObjects = null;
+    
+    /**
+     * Tile each object is registered on.
+     */
+    private Tile [] mTiles = null;
+    
+    /**
+     * Collision flag of each object (narrowphase of the broadphase variants). 
+     */
+    private boolean [] mHit = null;
+    
+    /**
+     * Recorded center positions (frame, object, x/y).
+     */
+    private double [][] mRecording = null;
+    
+    /**
+     * Broadphase to measure.
+     */
+    private Broadphase mBroadphase = null;
+    
+    /**
+     * Current frame of the recording.
+     */
+    private int mFrame = 0;
+    
+    /**
+     * Creates the level, the objects and records the scene. 
+     */
+    @Setup
+    public void setup ()
+    {
+        mLevel = new Level();
+        mLevel.createMap(LEVEL_SIZE, LEVEL_SIZE, 1);
+        for (int x = 0; x < LEVEL_SIZE; x++)
+            for (int y = 0; y < LEVEL_SIZE; y++)
+                mLevel.createLevelTile(new Tile(null, null, null), x, y, 0);
+        
+        int vCount = VEHICLES + mRockets;
+        mObjects = new LevelObject[vCount];
+        mTiles = new Tile[vCount];
+        mHit = new boolean[vCount];
+        for (int i = 0; i < vCount; i++)
+        {
+            PhysicalBody vBody;
+            if (i < VEHICLES)
+            {
+                vBody = new Vehicle();
+                vBody.set("CollisionPoint", "20,2");
+                vBody.set("CollisionPoint", "40,2");
+                vBody.set("CollisionPoint", "40,66");
+                vBody.set("CollisionPoint", "20,66");
+                vBody.set("OffsetX", "30");
+                vBody.set("OffsetY", "40");
+            }
+            else
+            {
+                vBody = new SoftBody();
+                vBody.set("Radius", "0.3");
+                vBody.set("OffsetX", "15");
+                vBody.set("OffsetY", "20");
+            }
+            vBody.initialize();
+            mObjects[i] = new SceneObject();
+            mObjects[i].setRigidBody(vBody);
+        }
+        
+        record();
+        
+        mBroadphase = BroadphaseFactory.create(mType);
+        mBroadphase.setLevel(mLevel);
+        mFrame = 0;
+    }
+    
+    /**
+     * Records the scene: vehicles drive circles around the level center, every 
+     * rocket follows one of the vehicles with limited turn rate. 
+     */
+    private void record ()
+    {
+        Random vRandom = new Random(42);
+        int vCount = mObjects.length;
+        double dt = 1.0 / 65.0;
+        double vCenter = LEVEL_SIZE / 2.0;
+        
+        double [] vX = new double[vCount];
+        double [] vY = new double[vCount];
+        double [] vHeading = new double[vCount];
+        for (int i = VEHICLES; i < vCount; i++)
+        {
+            vX[i] = 1.0 + vRandom.nextDouble() * (LEVEL_SIZE - 2.0);
+            vY[i] = 1.0 + vRandom.nextDouble() * (LEVEL_SIZE - 2.0);
+            vHeading[i] = vRandom.nextDouble() * Math.PI * 2.0;
+        }
+        
+        mRecording = new double[FRAMES][2 * vCount];
+        for (int f = 0; f < FRAMES; f++)
+        {
+            for (int i = 0; i < VEHICLES; i++)
+            {
+                double vAngle = f * dt * 0.4 + i * Math.PI * 0.5;
+                double vRadius = 3.0 + 1.5 * i;
+                vX[i] = vCenter + vRadius * Math.cos(vAngle);
+                vY[i] = vCenter + vRadius * Math.sin(vAngle);
+            }
+            for (int i = VEHICLES; i < vCount; i++)
+            {
+                int vTarget = i % VEHICLES;
+                double vDesired = Math.atan2(vY[vTarget] - vY[i], vX[vTarget] - vX[i]);
+                double vTurn = Math.IEEEremainder(vDesired - vHeading[i], Math.PI * 2.0);
+                vHeading[i] += Math.max(-1.5 * dt, Math.min(1.5 * dt, vTurn));
+                vX[i] += 3.0 * dt * Math.cos(vHeading[i]);
+                vY[i] += 3.0 * dt * Math.sin(vHeading[i]);
+            }
+            for (int i = 0; i < vCount; i++)
+            {
+                mRecording[f][2 * i] = vX[i];
+                mRecording[f][2 * i + 1] = vY[i];
+            }
+        }
+    }
+    
+    /**
+     * Moves all objects to the next recorded frame and registers them on the
+     * tile below their center (like LevelObject.update()). 
+     */
+    private void nextFrame ()
+    {
+        double [] vFrame = mRecording[mFrame];
+        mFrame = (mFrame + 1) % FRAMES;
+        
+        for (int i = 0; i < mObjects.length; i++)
+        {
+            PhysicalBody vBody = mObjects[i].getObjectModel();
+            vBody.setPosition(vFrame[2 * i] - vBody.getOffset().x, vFrame[2 * i + 1] - vBody.getOffset().y);
+            vBody.updateData();
+            
+            Tile vTile = mLevel.getTile(vBody.getCenterX(), vBody.getCenterY(), 0);
+            if (vTile != mTiles[i])
+            {
+                if (mTiles[i] != null) 
+                    mTiles[i].delRigidBody(mObjects[i]);
+                if (vTile != null) 
+                    vTile.addRigidBody(mObjects[i]);
+                mTiles[i] = vTile;
+            }
+        }
+    }
+    
+    /**
+     * Detects the object-collisions of one frame of the scene with object 
+     * queries, if the broadphase supports them.
+     * @return number of objects colliding with another object
+     */
+    @Benchmark
+    public int detectCollisions ()
+    {
+        nextFrame();
+        return mBroadphase.hasObjectQueries() ? objectQueries() : broadphase();
+    }
+    
+    /**
+     * Detects the object-collisions of one frame of the scene with the 
+     * candidate pairs of the broadphase.
+     * @return number of objects colliding with another object
+     */
+    @Benchmark
+    public int detectPairs ()
+    {
+        nextFrame();
+        return broadphase();
+    }
+    
+    /**
+     * Collision detection through object queries: every object asks the 
+     * broadphase for a colliding object (see Broadphase.collision).
+     * @return number of objects colliding with another object
+     */
+    private int objectQueries ()
+    {
+        mBroadphase.beginQueries(mObjects, mObjects.length);
+        int vHits = 0;
+        for (LevelObject vObject : mObjects)
+            if (mBroadphase.collision(vObject) != null) 
+                vHits++;
+        return vHits;
+    }
+    
+    /**
+     * Collision detection through the broadphase and a narrowphase on the
+     * candidate pairs (rigid pairs are tested once, like in the PhysicsThread). 
+     * @return number of objects colliding with another object
+     */
+    private int broadphase ()
+    {
+        mBroadphase.update(mObjects, mObjects.length);
+        
+        boolean [] vHit = mHit;
+        Arrays.fill(vHit, false);
+        int vHits = 0;
+        for (int p = 0; p < mBroadphase.getPairCount(); p++)
+        {
+            int a = mBroadphase.getFirst(p);
+            int b = mBroadphase.getSecond(p);
+            PhysicalBody vFirst = mObjects[a].getObjectModel();
+            PhysicalBody vSecond = mObjects[b].getObjectModel();
+            if (vHit[a] && vHit[b])
+                continue;
+            
+            boolean vForward = vSecond.isRigidBody(), vBackward = vFirst.isRigidBody();
+            boolean vAB, vBA;
+            if (vForward && vBackward)
+                vAB = vBA = vFirst.isColliding(vSecond);
+            else
+            {
+                vAB = vForward && vFirst.isColliding(vSecond);
+                vBA = vBackward && vSecond.isColliding(vFirst);
+            }
+            if (!vHit[a] && vAB)
+            {
+                vHit[a] = true;
+                vHits++;
+            }
+            if (!vHit[b] && vBA)
+            {
+                vHit[b] = true;
+                vHits++;
+            }
+        }
+        return vHits;
+    }
+}
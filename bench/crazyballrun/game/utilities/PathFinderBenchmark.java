@@ -0,0 +1,118 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package crazyballrun.game.utilities;
+
+import crazyballrun.game.level.LevelFixture;
+import java.util.LinkedList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the pathfinding on the first layer of a level: generating the
+ * graph of the quadtree ("GraphGenerator") and searching paths between random
+ * points of walkable ground ("PathFinder.getPath"). 
+ *
+ * @author Timm Hoffmeister
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PathFinderBenchmark {
+
+    /**
+     * Number of prepared start/goal pairs.
+     */
+    private static final int PAIRS = 64;
+
+    /**
+     * Graph of the first layer.
+     */
+    private GraphGenerator mGraph = null;
+
+    /**
+     * PathFinder for the graph.
+     */
+    private PathFinder mPathFinder = null;
+
+    /**
+     * Start and goal nodes.
+     */
+    private PathFinder.Node [] mStart = null, mGoal = null;
+
+    /**
+     * Current start/goal pair.
+     */
+    private int mPair = 0;
+
+    /**
+     * Finds a node of walkable ground at a random point.
+     * @param level the loaded level
+     * @param random random generator
+     * @return the node
+     */
+    private PathFinder.Node getRandomNode (LevelFixture level, Random random)
+    {
+        while (true)
+        {
+            int x = random.nextInt(level.getWidth());
+            int y = random.nextInt(level.getHeight());
+            if (level.isWall(x, y)) continue;
+            PathFinder.Node vNode = mGraph.getNode(x, y);
+            if (vNode != null) return vNode;
+        }
+    }
+
+    /**
+     * Generates the graph and the start/goal pairs.
+     * @param level the loaded level
+     */
+    @Setup
+    public void setup (LevelFixture level)
+    {
+        mGraph = new GraphGenerator(level.getQuadTree());
+        mPathFinder = new PathFinder(mGraph.getNodes());
+
+        Random vRandom = new Random(42);
+        mStart = new PathFinder.Node[PAIRS];
+        mGoal = new PathFinder.Node[PAIRS];
+        for (int i = 0; i < PAIRS; i++)
+        {
+            mStart[i] = getRandomNode(level, vRandom);
+            mGoal[i] = getRandomNode(level, vRandom);
+        }
+        mPair = 0;
+    }
+
+    /**
+     * Generates the graph of the quadtree of the first layer.
+     * @param level the loaded level
+     * @return the graph
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public GraphGenerator generateGraph (LevelFixture level)
+    {
+        return new GraphGenerator(level.getQuadTree());
+    }
+
+    /**
+     * Searches the path of the next start/goal pair.
+     * @return the path (or 'null' if there is none)
+     */
+    @Benchmark
+    public LinkedList<PathFinder.Node> getPath ()
+    {
+        int i = mPair;
+        mPair = (i + 1) % PAIRS;
+        return mPathFinder.getPath(mStart[i], mGoal[i]);
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package crazyballrun.game.utilities;
+
+import crazyballrun.game.level.LevelFixture;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the quadtree of the first layer of a level: filling it pixel by 
+ * pixel like the LevelParser ("insert") and looking up the leaves of random 
+ * points ("getLeaf"). 
+ *
+ * @author Timm Hoffmeister
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class QuadTreeBenchmark {
+
+    /**
+     * Number of prepared lookup points.
+     */
+    private static final int POINTS = 1024;
+
+    /**
+     * Lookup points (in pixels).
+     */
+    private long [] mX = null, mY = null;
+
+    /**
+     * Current lookup point.
+     */
+    private int mPoint = 0;
+
+    /**
+     * Creates the lookup points inside of the level.
+     * @param level the loaded level
+     */
+    @Setup
+    public void setup (LevelFixture level)
+    {
+        Random vRandom = new Random(42);
+        mX = new long[POINTS];
+        mY = new long[POINTS];
+        for (int i = 0; i < POINTS; i++)
+        {
+            mX[i] = vRandom.nextInt(level.getWidth());
+            mY[i] = vRandom.nextInt(level.getHeight());
+        }
+        mPoint = 0;
+    }
+
+    /**
+     * Builds the whole quadtree of the first layer.
+     * @param level the loaded level
+     * @return the quadtree
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public QuadTree<Integer> insert (LevelFixture level)
+    {
+        return level.createQuadTree();
+    }
+
+    /**
+     * Looks up the leaf of the next point.
+     * @param level the loaded level
+     * @return the leaf
+     */
+    @Benchmark
+    public QuadTree.Node getLeaf (LevelFixture level)
+    {
+        int i = mPoint;
+        mPoint = (i + 1) & (POINTS - 1);
+        return level.getQuadTree().getLeaf(mX[i], mY[i]);
+    }
+}
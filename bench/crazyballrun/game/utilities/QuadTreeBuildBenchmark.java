@@ -0,0 +1,99 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package crazyballrun.game.utilities;
+
+import crazyballrun.game.GameConstants;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares the construction of the quadtree of a level layer by inserting 
+ * each pixel tile by tile ("insert", like the LevelParser did before) with
+ * the bottom-up construction from a raster ("raster"). The map is generated:
+ * square tiles whose borders are walls with a door in each wall. Both 
+ * methods create the same tree. The insertion into a 100x100 tiles map takes
+ * minutes, so each operation is measured once ("SingleShotTime").
+ *
+ * @author Timm Hoffmeister
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class QuadTreeBuildBenchmark {
+
+    /**
+     * Width and height of the map in tiles.
+     */
+    @Param({"10", "100"})
+    public int mTiles;
+
+    /**
+     * Size of a tile in pixels.
+     */
+    private static final int TILE = GameConstants.TEXTURE_SIZE;
+
+    /**
+     * Width of the walls in pixels.
+     */
+    private static final int WALL = 8;
+
+    /**
+     * Generated map: walls at the borders of the tiles, except of a door in
+     * the middle of each wall.
+     */
+    private static final QuadTree.Raster<Integer> sMap = new QuadTree.Raster<Integer>() {
+        @Override
+        public Integer get (long x, long y) {
+            return getPixel((int) (x % TILE), (int) (y % TILE));
+        }
+    };
+
+    /**
+     * Gets a pixel of a tile of the generated map.
+     * @param ix x-coordinate in the tile
+     * @param iy y-coordinate in the tile
+     * @return "1" for walls, "0" for walkable ground
+     */
+    private static Integer getPixel (int ix, int iy)
+    {
+        boolean vDoorX = Math.abs(ix - TILE / 2) < TILE / 8;
+        boolean vDoorY = Math.abs(iy - TILE / 2) < TILE / 8;
+        return (ix < WALL && !vDoorY) || (iy < WALL && !vDoorX) ? 1 : 0;
+    }
+
+    /**
+     * Builds the quadtree by inserting each pixel (tile by tile).
+     * @return the quadtree
+     */
+    @Benchmark
+    public QuadTree<Integer> insert ()
+    {
+        long vSize = (long) mTiles * TILE;
+        QuadTree<Integer> vQuadTree = new QuadTree<Integer>(0, 0, vSize, vSize, TILE / 5);
+        for (int x = 0; x < mTiles; x++)
+            for (int y = 0; y < mTiles; y++)
+                for (int ix = 0; ix < TILE; ix++)
+                    for (int iy = 0; iy < TILE; iy++)
+                        vQuadTree.insert(x * TILE + ix, y * TILE + iy, getPixel(ix, iy));
+        return vQuadTree;
+    }
+
+    /**
+     * Builds the quadtree bottom-up from the raster.
+     * @return the quadtree
+     */
+    @Benchmark
+    public QuadTree<Integer> raster ()
+    {
+        long vSize = (long) mTiles * TILE;
+        return new QuadTree<Integer>(0, 0, vSize, vSize, TILE / 5, sMap);
+    }
+}
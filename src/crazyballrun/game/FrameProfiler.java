@@ -0,0 +1,302 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package crazyballrun.game;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The FrameProfiler keeps the durations of the phases of the physics timesteps
+ * and of the rendered frames. Each phase has a ring buffer of the last
+ * GameConstants.PROFILER_HISTORY durations (in nanoseconds), which is written
+ * by one thread only (PhysicsThread or RenderThread) without locking. Readers
+ * (overlay of the RenderThread, CSV export) compute percentiles from a copy
+ * of the ring buffers, a copy may contain a few samples of the next frames.
+ * The FrameProfiler has a "getInstance"-method (singleton pattern).
+ *
+ * @author Timm Hoffmeister
+ */
+public class FrameProfiler {
+
+    /**
+     * Profiled phases.
+     */
+    public enum Phase {
+        /**
+         * controllers and internal forces of the objects (PhysicsThread)
+         */
+        CONTROL,
+        /**
+         * integration of the objects without their controllers (PhysicsThread)
+         */
+        INTEGRATE,
+        /**
+         * candidate pairs of object collisions, in the object order the 
+         * object queries including their collision tests (PhysicsThread)
+         */
+        BROADPHASE,
+        /**
+         * collision tests of the candidate pairs, phased order only 
+         * (PhysicsThread)
+         */
+        NARROWPHASE,
+        /**
+         * collision reactions and texture collisions (PhysicsThread)
+         */
+        RESPONSE,
+        /**
+         * object updates, e.g. migration to other tiles (PhysicsThread)
+         */
+        OBJECT_UPDATE,
+        /**
+         * painting of the cameras (RenderThread)
+         */
+        CAMERA_PAINT,
+        /**
+         * painting of the GUI (RenderThread)
+         */
+        GUI_PAINT
+    }
+
+    /**
+     * The global FrameProfiler-instance.
+     */
+    private static FrameProfiler sInstance = null;
+
+    /**
+     * Provides access to the FrameProfiler.
+     * @return a reference to the FrameProfiler
+     */
+    public static synchronized FrameProfiler getInstance ()
+    {
+        if (sInstance == null)
+            sInstance = new FrameProfiler();
+        return sInstance;
+    }
+
+    /**
+     * Bit mask for the indices of the ring buffers.
+     */
+    private static final int sMask = GameConstants.PROFILER_HISTORY - 1;
+
+    /**
+     * Phases (cached, "Phase.values()" creates a new array each time).
+     */
+    private static final Phase [] sPhases = Phase.values();
+
+    /**
+     * "true" if the durations are recorded.
+     */
+    private volatile boolean mEnabled = false;
+
+    /**
+     * "true" if the RenderThread paints the overlay.
+     */
+    private volatile boolean mOverlay = false;
+
+    /**
+     * File for the CSV export.
+     */
+    private String mFile = "profile.csv";
+
+    /**
+     * Ring buffers of the durations (phase, sample).
+     */
+    private final long [][] mSamples = new long[sPhases.length][GameConstants.PROFILER_HISTORY];
+
+    /**
+     * Number of recorded samples of each phase (written after the sample).
+     */
+    private final AtomicLongArray mCounts = new AtomicLongArray(sPhases.length);
+
+    /**
+     * Sorted copy of a ring buffer (used by the readers).
+     */
+    private final long [] mSorted = new long[GameConstants.PROFILER_HISTORY];
+
+    /**
+     * Private constructor of FrameProfiler.
+     */
+    private FrameProfiler ()
+    {
+
+    }
+
+    /**
+     * Reads the profiler settings from the GameSettings ("ProfilerEnabled",
+     * "ProfilerOverlay" and "ProfilerFile", all optional).
+     */
+    public void initialize ()
+    {
+        GameSettings vSettings = GameSettings.getInstance();
+        mEnabled = "true".equals(vSettings.getValue("ProfilerEnabled"));
+        mOverlay = "true".equals(vSettings.getValue("ProfilerOverlay"));
+        if (mOverlay)
+            mEnabled = true;
+        if (vSettings.getValue("ProfilerFile") != null)
+            mFile = (String) vSettings.getValue("ProfilerFile");
+    }
+
+    /**
+     * Checks if durations are recorded.
+     * @return "true" if the profiler is enabled
+     */
+    public boolean isEnabled ()
+    {
+        return mEnabled;
+    }
+
+    /**
+     * Enables or disables the recording of durations.
+     * @param enabled "true" to record durations
+     */
+    public void setEnabled (boolean enabled)
+    {
+        mEnabled = enabled;
+    }
+
+    /**
+     * Checks if the RenderThread paints the overlay.
+     * @return "true" if the overlay is visible
+     */
+    public boolean isOverlayVisible ()
+    {
+        return mOverlay;
+    }
+
+    /**
+     * Shows or hides the overlay. Showing the overlay enables the profiler.
+     * @param visible "true" to show the overlay
+     */
+    public void setOverlayVisible (boolean visible)
+    {
+        if (visible)
+            mEnabled = true;
+        mOverlay = visible;
+    }
+
+    /**
+     * Gets the file for the CSV export.
+     * @return path of the file
+     */
+    public String getFile ()
+    {
+        return mFile;
+    }
+
+    /**
+     * Records the duration of a phase. Has to be called by the same thread for
+     * each phase. Nothing is recorded while the profiler is disabled.
+     * @param phase profiled phase
+     * @param nanos duration in nanoseconds
+     */
+    public void record (Phase phase, long nanos)
+    {
+        if (!mEnabled)
+            return;
+        int p = phase.ordinal();
+        long vCount = mCounts.get(p);
+        mSamples[p][(int) (vCount & sMask)] = nanos;
+        mCounts.lazySet(p, vCount + 1);
+    }
+
+    /**
+     * Gets the number of samples recorded for a phase so far.
+     * @param phase profiled phase
+     * @return number of samples
+     */
+    public long getCount (Phase phase)
+    {
+        return mCounts.get(phase.ordinal());
+    }
+
+    /**
+     * Copies the samples of a phase which are still in the ring buffer into
+     * the sorted copy.
+     * @param phase profiled phase
+     * @return number of copied samples
+     */
+    private int sortSamples (Phase phase)
+    {
+        int vSize = (int) Math.min(mCounts.get(phase.ordinal()), GameConstants.PROFILER_HISTORY);
+        System.arraycopy(mSamples[phase.ordinal()], 0, mSorted, 0, vSize);
+        Arrays.sort(mSorted, 0, vSize);
+        return vSize;
+    }
+
+    /**
+     * Gets percentiles of the durations of a phase (e.g. "50" for the
+     * median and "99" for the slowest frames) over the last samples.
+     * @param phase profiled phase
+     * @param percentiles requested percentiles (in [0,100])
+     * @param result durations in nanoseconds for each percentile (0 if there
+     * are no samples)
+     */
+    public synchronized void getPercentiles (Phase phase, double [] percentiles, long [] result)
+    {
+        int vSize = sortSamples(phase);
+        for (int i = 0; i < percentiles.length; i++)
+        {
+            if (vSize == 0)
+            {
+                result[i] = 0;
+                continue;
+            }
+            int vIndex = (int) Math.ceil(percentiles[i] / 100.0 * vSize) - 1;
+            result[i] = mSorted[Math.max(0, Math.min(vSize - 1, vIndex))];
+        }
+    }
+
+    /**
+     * Writes the samples in the ring buffers into a CSV file: one line per
+     * sample with phase, number of the sample and duration in nanoseconds.
+     * Samples with the same number belong to the same timestep (phases of the
+     * PhysicsThread) or to the same frame (phases of the RenderThread).
+     * @param file path of the file
+     * @throws IOException errors while writing the file
+     */
+    public synchronized void dump (String file) throws IOException
+    {
+        BufferedWriter vWriter = new BufferedWriter(new FileWriter(file));
+        try
+        {
+            vWriter.write("phase,sample,nanos");
+            vWriter.newLine();
+            for (Phase vPhase : sPhases)
+            {
+                long vCount = mCounts.get(vPhase.ordinal());
+                long vFirst = Math.max(0, vCount - GameConstants.PROFILER_HISTORY);
+                for (long s = vFirst; s < vCount; s++)
+                {
+                    vWriter.write(vPhase.name() + "," + s + "," + mSamples[vPhase.ordinal()][(int) (s & sMask)]);
+                    vWriter.newLine();
+                }
+            }
+        }
+        finally
+        {
+            vWriter.close();
+        }
+    }
+
+    /**
+     * Writes the samples into the configured CSV file (see "dump(String)").
+     * Errors are logged.
+     */
+    public void dump ()
+    {
+        try
+        {
+            dump(mFile);
+        }
+        catch (IOException e)
+        {
+            GameLogger.log(e);
+        }
+    }
+}
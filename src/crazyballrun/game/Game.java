@@ -224,6 +224,7 @@ public class Game {
             MusicEngine.getInstance().initialize();
             LevelEngine.getInstance().initialize();
             PhysicsEngine.getInstance().initialize();
+            FrameProfiler.getInstance().initialize();
             // TODO: MultiplayerEngine - offers functionaliy for connect/discconect,
             //       send messages, receive messages and interpret messages. This
             //       engine should be used by physics engine to synchronized in
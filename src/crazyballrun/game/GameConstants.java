@@ -64,6 +64,12 @@ public class GameConstants {
      * File extension for texture-files (have to support transparency!).
      */
     public static final String COLLISION_FILE_EXTENSION = ".bmp";
+    
+    /**
+     * File extension of the binary quadtree caches of the levels (the former
+     * xml-caches have the extension ".xml").
+     */
+    public static final String QUADTREE_FILE_EXTENSION = ".qtc";
 
     /**
      * File extension for image-files (have to support transparency!).
@@ -156,4 +162,71 @@ public class GameConstants {
      * Maximum frame-rate for the physics engine. 
      */
     public static final int MAX_FPS = 65;
+    
+    /**
+     * Maximum number of fixed physics timesteps performed at once. If the 
+     * physics falls behind wall-clock time further than that, the remaining
+     * time is dropped (the game slows down instead of freezing). 
+     */
+    public static final int MAX_PHYSICS_STEPS = 5;
+    
+    /**
+     * Size of a cell of the collision broadphase grid (in textures). 
+     */
+    public static final double BROADPHASE_CELL_SIZE = 1.0;
+    
+    /**
+     * Initial number of slots of the shared physics body store (grows if 
+     * necessary). 
+     */
+    public static final int BODY_STORE_CAPACITY = 256;
+    
+    /**
+     * Maximal number of unused effects of each type kept by the 
+     * ObjectEffectPool.
+     */
+    public static final int EFFECT_POOL_SIZE = 64;
+    
+    /**
+     * Minimal number of objects (or collision pairs) processed by one task of
+     * the parallel physics step. 
+     */
+    public static final int PHYSICS_MIN_CHUNK = 32;
+    
+    /**
+     * Movement of a body within one timestep (in textures) above which texture
+     * collisions are checked continuously along the movement (4 pixels). 
+     */
+    public static final double CCD_THRESHOLD = 4.0 / TEXTURE_SIZE;
+    
+    /**
+     * Advancement of a body near walls (in textures) during the continuous 
+     * collision detection (half a pixel, i.e. half of the thinnest wall, so 
+     * no wall can be skipped). 
+     */
+    public static final double CCD_SUBSTEP = 0.5 / TEXTURE_SIZE;
+    
+    /**
+     * Distance (in textures) by which colliding bodies are moved apart in 
+     * addition to their penetration depth (one pixel, the accuracy of the
+     * distance field). 
+     */
+    public static final double CONTACT_SEPARATION = 1.0 / TEXTURE_SIZE;
+    
+    /**
+     * Number of idle timesteps after which a body falls asleep (see 
+     * PhysicalBody.updateSleep).
+     */
+    public static final int SLEEP_STEPS = 30;
+    
+    /**
+     * Number of timesteps whose state hashes are kept for verification (see
+     * StateHash). 
+     */
+    public static final int STATE_HASH_HISTORY = 256;
+    
+    /**
+     * Number of samples per phase kept by the FrameProfiler (power of two).
+     */
+    public static final int PROFILER_HISTORY = 1024;
 }
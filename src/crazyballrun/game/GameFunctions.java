@@ -158,7 +158,15 @@ public class GameFunctions {
         /**
          * Second player playing at this computer shoots a rocket (if available).
          */
-        MAIN_PLAYER2_USE_ROCKET
+        MAIN_PLAYER2_USE_ROCKET,
+        /**
+         * Shows or hides the profiler overlay (see FrameProfiler).
+         */
+        PROFILER_OVERLAY,
+        /**
+         * Writes the recorded phase durations into the profiler's CSV file.
+         */
+        PROFILER_DUMP
     }
     
     /**
@@ -184,7 +192,9 @@ public class GameFunctions {
         "Player 2 Turn Right",
         "Player 2 Stop Turn Left",
         "Player 2 Stop Turn Right",
-        "Player 2 Use Rocket"
+        "Player 2 Use Rocket",
+        "Toggle Profiler Overlay",
+        "Write Profile"
     }; 
 
     /**
@@ -257,6 +267,10 @@ public class GameFunctions {
             case MAIN_PLAYER2_STOP_LEFT:            PLAYER_STOP_LEFT(sPlayerNumber[1]); break;
             case MAIN_PLAYER2_STOP_RIGHT:           PLAYER_STOP_RIGHT(sPlayerNumber[1]); break;
             case MAIN_PLAYER2_USE_ROCKET:           PLAYER_USE_ROCKET(sPlayerNumber[1]); break;
+                
+            // Profiler
+            case PROFILER_OVERLAY:                  PROFILER_OVERLAY(); break;
+            case PROFILER_DUMP:                     PROFILER_DUMP(); break;
         }
     }
     
@@ -274,6 +288,21 @@ public class GameFunctions {
         Game.getInstance().setGameState(Game.GameState.IN_GAME_PAUSED);
     }
     
+    /**
+     * Shows or hides the profiler overlay.
+     */
+    private static void PROFILER_OVERLAY() {
+        FrameProfiler vProfiler = FrameProfiler.getInstance();
+        vProfiler.setOverlayVisible(!vProfiler.isOverlayVisible());
+    }
+    
+    /**
+     * Writes the recorded phase durations into a CSV file. 
+     */
+    private static void PROFILER_DUMP() {
+        FrameProfiler.getInstance().dump();
+    }
+    
     ////////////////////////////////////////////////////////////////////////////
     //                            PLAYER STEARING                             //
     ////////////////////////////////////////////////////////////////////////////
@@ -107,6 +107,27 @@ public class GameSettingsParser extends DefaultHandler {
                     mSettings.addValue("ColorDepth", Integer.parseInt(attributes.getValue("colordepth")));
                     mSettings.addValue("RefreshRate", Integer.parseInt(attributes.getValue("refreshrate")));
                 } 
+                else if (qName.compareTo("Physics") == 0) {
+                    mSettings.addValue("PhysicsTimestep", attributes.getValue("timestep"));
+                    if (attributes.getValue("steprate") != null)
+                        mSettings.addValue("PhysicsStepRate", Integer.parseInt(attributes.getValue("steprate")));
+                    if (attributes.getValue("maxsteps") != null)
+                        mSettings.addValue("PhysicsMaxSteps", Integer.parseInt(attributes.getValue("maxsteps")));
+                    mSettings.addValue("PhysicsBroadphase", attributes.getValue("broadphase"));
+                    mSettings.addValue("PhysicsBodyStore", attributes.getValue("bodystore"));
+                    mSettings.addValue("PhysicsKernel", attributes.getValue("kernel"));
+                    mSettings.addValue("PhysicsCCD", attributes.getValue("ccd"));
+                    mSettings.addValue("PhysicsResponse", attributes.getValue("response"));
+                    mSettings.addValue("PhysicsSleep", attributes.getValue("sleep"));
+                    mSettings.addValue("PhysicsDeterministic", attributes.getValue("deterministic"));
+                    if (attributes.getValue("threads") != null)
+                        mSettings.addValue("PhysicsThreads", Integer.parseInt(attributes.getValue("threads")));
+                }
+                else if (qName.compareTo("Profiler") == 0) {
+                    mSettings.addValue("ProfilerEnabled", attributes.getValue("enabled"));
+                    mSettings.addValue("ProfilerOverlay", attributes.getValue("overlay"));
+                    mSettings.addValue("ProfilerFile", attributes.getValue("file"));
+                }
                 else if (qName.compareTo("Controls") == 0) {
                     mState = State.CONTROLS;
                 }
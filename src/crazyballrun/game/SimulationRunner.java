@@ -0,0 +1,192 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package crazyballrun.game;
+
+import crazyballrun.game.controls.EventMapper;
+import crazyballrun.game.controls.IControl;
+import crazyballrun.game.graphics.GraphicsEngine;
+import crazyballrun.game.level.Level;
+import crazyballrun.game.level.LevelEngine;
+import crazyballrun.game.level.controllers.Player;
+import crazyballrun.game.music.MusicEngine;
+import crazyballrun.game.physics.PhysicsEngine;
+import java.util.ArrayList;
+
+/**
+ * The SimulationRunner loads a level and runs its physics without rendering,
+ * GUI and music (headless). The timesteps are performed in the calling thread
+ * as fast as possible, so the SimulationRunner can be used for batch races,
+ * regression checks (together with the deterministic mode and its state
+ * hashes) and benchmarks. If the FrameProfiler is enabled, the durations of
+ * the last timesteps are written into its CSV file.
+ *
+ * Usage: SimulationRunner &lt;level&gt; [steps] [-accelerate]
+ *
+ * @author Timm Hoffmeister
+ */
+public class SimulationRunner {
+
+    /**
+     * Default number of timesteps of a simulation.
+     */
+    private static final int sDefaultSteps = 10000;
+
+    /**
+     * "true" if the engines have already been initialized.
+     */
+    private static boolean sInitialized = false;
+
+    /**
+     * The simulated level.
+     */
+    private Level mLevel = null;
+
+    /**
+     * Number of performed timesteps.
+     */
+    private long mSteps = 0;
+
+    /**
+     * Time spent for the timesteps in nanoseconds.
+     */
+    private long mNanos = 0;
+
+    /**
+     * Initializes the engines the physics depends on (settings, images and
+     * level objects). Music and sound are turned off, no thread is started.
+     * @throws Exception errors while parsing the game settings
+     */
+    private static synchronized void initializeEngines () throws Exception
+    {
+        if (sInitialized)
+            return;
+
+        // settings (controls are created, but don't listen to any frame)
+        GameSettingsParser vParser = new GameSettingsParser();
+        vParser.parse(GameConstants.GAME_CONFIG_FILE_PATH, new ArrayList<IControl>(), new EventMapper());
+
+        GraphicsEngine.getInstance().initialize();
+        MusicEngine.getInstance().initialize();
+        MusicEngine.getInstance().setMusicState(false);
+        MusicEngine.getInstance().setSoundState(false);
+        LevelEngine.getInstance().initialize();
+        PhysicsEngine.getInstance().initialize();
+        FrameProfiler.getInstance().initialize();
+
+        sInitialized = true;
+    }
+
+    /**
+     * Constructor of SimulationRunner. Loads the specified level and hands it
+     * to the PhysicsEngine.
+     * @param level level name (from level description)
+     * @throws Exception errors while parsing settings or level
+     */
+    public SimulationRunner (String level) throws Exception
+    {
+        initializeEngines();
+        mLevel = LevelEngine.getInstance().parseLevel(level);
+        LevelEngine.getInstance().setCurrentLevel(mLevel);
+        PhysicsEngine.getInstance().setLevel(mLevel);
+    }
+
+    /**
+     * Gets the simulated level.
+     * @return the level
+     */
+    public Level getLevel ()
+    {
+        return mLevel;
+    }
+
+    /**
+     * Lets all players accelerate (e.g. to get some movement and collisions
+     * into a simulation without input).
+     */
+    public void accelerateAll ()
+    {
+        for (Player vPlayer : mLevel.getPlayers())
+            vPlayer.startAction(Player.Action.START_ACCELERATION);
+    }
+
+    /**
+     * Performs the given number of timesteps.
+     * @param steps number of timesteps
+     */
+    public void run (int steps)
+    {
+        long vStart = System.nanoTime();
+        PhysicsEngine.getInstance().simulate(steps);
+        mNanos += System.nanoTime() - vStart;
+        mSteps += steps;
+    }
+
+    /**
+     * Gets the number of performed timesteps.
+     * @return number of timesteps
+     */
+    public long getSteps ()
+    {
+        return mSteps;
+    }
+
+    /**
+     * Gets the number of timesteps per second of wall-clock time.
+     * @return timesteps per second (0 if nothing has been simulated)
+     */
+    public double getStepsPerSecond ()
+    {
+        return mNanos == 0 ? 0.0 : mSteps * 1e9 / mNanos;
+    }
+
+    /**
+     * Runs a headless simulation and prints the timesteps per second (and the
+     * last state hash in the deterministic mode).
+     * @param args level name, optionally the number of timesteps and
+     * "-accelerate" to let all players accelerate
+     */
+    public static void main (String [] args)
+    {
+        if (args.length < 1)
+        {
+            System.out.println("Usage: SimulationRunner <level> [steps] [-accelerate]");
+            return;
+        }
+        System.setProperty("java.awt.headless", "true");
+
+        int vSteps = sDefaultSteps;
+        boolean vAccelerate = false;
+        for (int i = 1; i < args.length; i++)
+        {
+            if (args[i].equals("-accelerate"))
+                vAccelerate = true;
+            else
+                vSteps = Integer.parseInt(args[i]);
+        }
+
+        try
+        {
+            SimulationRunner vRunner = new SimulationRunner(args[0]);
+            if (vAccelerate)
+                vRunner.accelerateAll();
+            vRunner.run(vSteps);
+
+            System.out.println(args[0] + ": " + vRunner.getSteps() + " steps, "
+                    + Math.round(vRunner.getStepsPerSecond()) + " steps/s");
+            if ("true".equals(GameSettings.getInstance().getValue("PhysicsDeterministic")))
+                System.out.println("state hash: "
+                        + Long.toHexString(PhysicsEngine.getInstance().getStateHash().getLastHash()));
+            if (FrameProfiler.getInstance().isEnabled())
+                FrameProfiler.getInstance().dump();
+        }
+        catch (Exception e)
+        {
+            GameLogger.log(e);
+            System.exit(1);
+        }
+        GameLogger.close();
+        System.exit(0);
+    }
+}
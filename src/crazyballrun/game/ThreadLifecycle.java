@@ -0,0 +1,168 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package crazyballrun.game;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The ThreadLifecycle is the state of an engine thread (PhysicsThread,
+ * RenderThread): running, paused, running during the ample countdown or
+ * stopping. The state is kept in an atomic reference, so the thread can check
+ * it every frame without locking. A paused thread parks itself in
+ * "awaitResume" and is unparked by "resume" or "stop"; since an unpark before
+ * the park is not lost, a resume can never be missed.
+ *
+ * @author Timm Hoffmeister
+ */
+public class ThreadLifecycle {
+
+    /**
+     * States of the thread.
+     */
+    public enum State {
+        /**
+         * the thread performs its work
+         */
+        RUNNING,
+        /**
+         * the thread waits for "resume"
+         */
+        PAUSED,
+        /**
+         * the thread runs, but the ample is active (e.g. no object may move)
+         */
+        AMPLE,
+        /**
+         * the thread is supposed to end (final state)
+         */
+        STOPPING
+    }
+
+    /**
+     * Current state.
+     */
+    private final AtomicReference<State> mState;
+
+    /**
+     * The thread whose state this is (parked while paused).
+     */
+    private final Thread mOwner;
+
+    /**
+     * Constructor of ThreadLifecycle.
+     * @param owner the thread whose state this is
+     * @param state initial state
+     */
+    public ThreadLifecycle (Thread owner, State state)
+    {
+        mOwner = owner;
+        mState = new AtomicReference<State>(state);
+    }
+
+    /**
+     * Gets the current state.
+     * @return the state
+     */
+    public State getState ()
+    {
+        return mState.get();
+    }
+
+    /**
+     * Checks if the thread is supposed to go on (not stopping).
+     * @return "true" unless the thread is stopping
+     */
+    public boolean isRunning ()
+    {
+        return mState.get() != State.STOPPING;
+    }
+
+    /**
+     * Checks if the thread is paused.
+     * @return "true" if paused
+     */
+    public boolean isPaused ()
+    {
+        return mState.get() == State.PAUSED;
+    }
+
+    /**
+     * Checks if the ample is active.
+     * @return "true" in the state AMPLE
+     */
+    public boolean isAmple ()
+    {
+        return mState.get() == State.AMPLE;
+    }
+
+    /**
+     * Pauses the thread (from RUNNING or AMPLE). The thread pauses the next
+     * time it calls "awaitResume".
+     * @return "true" if the state has been changed
+     */
+    public boolean pause ()
+    {
+        while (true)
+        {
+            State vState = mState.get();
+            if (vState != State.RUNNING && vState != State.AMPLE)
+                return false;
+            if (mState.compareAndSet(vState, State.PAUSED))
+                return true;
+        }
+    }
+
+    /**
+     * Continues the paused thread (the new state is RUNNING).
+     * @return "true" if the thread has been paused
+     */
+    public boolean resume ()
+    {
+        if (!mState.compareAndSet(State.PAUSED, State.RUNNING))
+            return false;
+        LockSupport.unpark(mOwner);
+        return true;
+    }
+
+    /**
+     * Activates (RUNNING to AMPLE) or deactivates (AMPLE to RUNNING) the
+     * ample. Has no effect on paused or stopping threads.
+     * @param active "true" to activate the ample
+     * @return "true" if the state has been changed
+     */
+    public boolean setAmple (boolean active)
+    {
+        if (active)
+            return mState.compareAndSet(State.RUNNING, State.AMPLE);
+        return mState.compareAndSet(State.AMPLE, State.RUNNING);
+    }
+
+    /**
+     * Tells the thread to end (wakes it up if it is paused).
+     */
+    public void stop ()
+    {
+        mState.set(State.STOPPING);
+        LockSupport.unpark(mOwner);
+    }
+
+    /**
+     * Parks the calling thread while the state is PAUSED. Has to be called by
+     * the owner only. Interrupts don't end the pause.
+     * @return "true" if the thread has been paused
+     */
+    public boolean awaitResume ()
+    {
+        if (mState.get() != State.PAUSED)
+            return false;
+        while (mState.get() == State.PAUSED)
+        {
+            LockSupport.park(this);
+            Thread.interrupted();
+        }
+        return true;
+    }
+}
@@ -8,6 +8,7 @@ import crazyballrun.game.controls.ControlEngine;
 import crazyballrun.game.controls.IControl;
 import crazyballrun.game.controls.IListener;
 import crazyballrun.game.graphics.GraphicsEngine;
+import java.awt.Frame;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
 import java.util.ArrayList;
@@ -51,8 +52,10 @@ public class KeyboardControl implements IControl
      */
     public KeyboardControl () 
     {        
-        // Register event listeners to the frame
-        GraphicsEngine.getInstance().getFrame().addKeyListener(new CBKeyListener());
+        // Register event listeners to the frame (there is none when headless)
+        Frame vFrame = GraphicsEngine.getInstance().getFrame();
+        if (vFrame != null)
+            vFrame.addKeyListener(new CBKeyListener());
 
         // initialize event-/action-/listener-lists
         mEventList = new ArrayList<String>();
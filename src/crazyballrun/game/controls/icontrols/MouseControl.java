@@ -9,6 +9,7 @@ import crazyballrun.game.controls.EventContent;
 import crazyballrun.game.controls.IControl;
 import crazyballrun.game.controls.IListener;
 import crazyballrun.game.graphics.GraphicsEngine;
+import java.awt.Frame;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseWheelEvent;
@@ -52,11 +53,15 @@ public class MouseControl implements IControl {
      */
     public MouseControl () {
         
-        // Register event listeners to the rendering-frame
-        CBMouseListener vListener = new CBMouseListener();
-        GraphicsEngine.getInstance().getFrame().addMouseListener(vListener);
-        GraphicsEngine.getInstance().getFrame().addMouseMotionListener(vListener);
-        GraphicsEngine.getInstance().getFrame().addMouseWheelListener(vListener);
+        // Register event listeners to the rendering-frame (there is none when headless)
+        Frame vFrame = GraphicsEngine.getInstance().getFrame();
+        if (vFrame != null)
+        {
+            CBMouseListener vListener = new CBMouseListener();
+            vFrame.addMouseListener(vListener);
+            vFrame.addMouseMotionListener(vListener);
+            vFrame.addMouseWheelListener(vListener);
+        }
         
         // initialize event-/action-/listener-lists
         mEventList = new ArrayList<String>();
@@ -41,6 +41,17 @@ public class Animation {
      */
     private double mRotation = 0;
 
+    /**
+     * Position of the animation at the beginning of the last physics timestep
+     * (null if the animation is not attached to a moving object). 
+     */
+    private Vector2D mPreviousPosition = null;
+
+    /**
+     * Rotation of the animation at the beginning of the last physics timestep.
+     */
+    private double mPreviousRotation = 0;
+
     /**
      * Time step size of the animation. After 'mFrequency' ms the current
      * picture of the animation changes.
@@ -136,6 +147,18 @@ public class Animation {
         mRotation = rot;
     }
 
+    /**
+     * Sets position and rotation of the animation at the beginning of the last
+     * physics timestep. The animation is rendered in between this and the current
+     * state due to the interpolation factor of the camera. 
+     * @param pos previous position of the animation
+     * @param rot previous rotation angle of the animation
+     */
+    public synchronized void setPreviousState (Vector2D pos, double rot) {
+        mPreviousPosition = pos;
+        mPreviousRotation = rot;
+    }
+
     /**
      * Sets the time step size for the animation, after how many miliseconds to
      * change picture. 
@@ -225,16 +248,26 @@ public class Animation {
             }
         }
         
-        // calculate rendering position and rotation axis
+        // interpolate between previous and current physics state
         Vector2D vRender = new Vector2D(mPosition);
+        double vRotation = mRotation;
+        double vAlpha = c.getInterpolationAlpha();
+        if (mPreviousPosition != null && vAlpha < 1.0)
+        {
+            vRender.x = mPreviousPosition.x + vAlpha * (mPosition.x - mPreviousPosition.x);
+            vRender.y = mPreviousPosition.y + vAlpha * (mPosition.y - mPreviousPosition.y);
+            vRotation = mPreviousRotation + vAlpha * (mRotation - mPreviousRotation);
+        }
+        
+        // calculate rendering position and rotation axis
         vRender.sub(c.getRenderPosition());
         Vector2D vCenter = new Vector2D(vRender);
         vCenter.add(mOffset);
         
         // rotate and render current picture
-        g.rotate(-mRotation % (Math.PI * 2), vCenter.getX(), vCenter.getY());
+        g.rotate(-vRotation % (Math.PI * 2), vCenter.getX(), vCenter.getY());
         g.drawImage(mImages[mCurrentPicture], (int)vRender.getX(), (int)vRender.getY(), f);
-        g.rotate(mRotation % (Math.PI * 2), vCenter.getX(), vCenter.getY());
+        g.rotate(vRotation % (Math.PI * 2), vCenter.getX(), vCenter.getY());
     }
         
 }
@@ -80,6 +80,12 @@ public class Camera {
      */
     private double mDistanceToCenter = 0.0;
 
+    /**
+     * Interpolation factor between the last two physics states used for 
+     * rendering moving objects (1.0 means the current state). 
+     */
+    private double mInterpolationAlpha = 1.0;
+
     /**
      * Different transparency-values depending on distance of textures on higher
      * layer than the camera-layer. 
@@ -182,6 +188,23 @@ public class Camera {
         mDistanceToCenter = mOffset.length();
     }
     
+    /**
+     * Sets the interpolation factor between the last two physics states for 
+     * the next rendered frame.
+     * @param alpha interpolation factor in [0, 1]
+     */
+    public synchronized void setInterpolationAlpha (double alpha) {
+        mInterpolationAlpha = alpha;
+    }
+    
+    /**
+     * Gets the interpolation factor between the last two physics states.
+     * @return interpolation factor in [0, 1]
+     */
+    public synchronized double getInterpolationAlpha () {
+        return mInterpolationAlpha;
+    }
+    
     /**
      * Gets the display-area of the camera. 
      * @return camera's display
@@ -8,6 +8,7 @@ import crazyballrun.game.GameConstants;
 import crazyballrun.game.GameLogger;
 import crazyballrun.game.level.Level;
 import java.awt.Frame;
+import java.awt.GraphicsEnvironment;
 import java.awt.Image;
 import java.awt.image.BufferedImage;
 import java.io.File;
@@ -32,7 +33,8 @@ public class GraphicsEngine {
     private RenderThread mRenderer = null; 
 
     /**
-     * Reference to the Window-Frame.
+     * Reference to the Window-Frame (created on first use, so the engine can
+     * load images without a display).
      */
     private Frame mFrame = null;
     
@@ -65,7 +67,6 @@ public class GraphicsEngine {
      */
     private GraphicsEngine() 
     {
-        mFrame = new Frame();
         mGraphics = new HashMap<String, BufferedImage>();
         mTextures = new HashMap<String, BufferedImage>();
     }
@@ -91,11 +92,14 @@ public class GraphicsEngine {
     }
     
     /**
-     * Returns the main frame for rendering/event-listening.
-     * @return the main frame.
+     * Returns the main frame for rendering/event-listening. The frame is
+     * created on the first call.
+     * @return the main frame (or 'null' in a headless environment).
      */
-    public Frame getFrame() 
+    public synchronized Frame getFrame() 
     {
+        if (mFrame == null && !GraphicsEnvironment.isHeadless())
+            mFrame = new Frame();
         return mFrame;
     }
    
@@ -203,7 +207,7 @@ public class GraphicsEngine {
      */
     public void start()
     {
-        mRenderer = new RenderThread(mFrame);
+        mRenderer = new RenderThread(getFrame());
         mRenderer.start();
     }
 
@@ -402,6 +406,16 @@ public class GraphicsEngine {
         return vReturn;
     }
 
+    /**
+     * Removes a texture from the textures-hashmap (e.g. after its data has been
+     * converted into another representation). 
+     * @param filename name of the texture-file
+     */
+    public void releaseTexture(String filename)
+    {
+        mTextures.remove(filename);
+    }
+
     /**
      * Loads a texture animation.
      * @param filename root-filename of the texture
@@ -4,12 +4,15 @@
  */
 package crazyballrun.game.graphics;
 
+import crazyballrun.game.FrameProfiler;
 import crazyballrun.game.GameLogger;
 import crazyballrun.game.GameSettings;
+import crazyballrun.game.ThreadLifecycle;
 import crazyballrun.game.gui.GUIEngine;
 import crazyballrun.game.gui.GUIFrame;
 import crazyballrun.game.level.Level;
 import crazyballrun.game.level.controllers.Player;
+import crazyballrun.game.physics.PhysicsEngine;
 import java.awt.Color;
 import java.awt.DisplayMode;
 import java.awt.Frame;
@@ -29,20 +32,15 @@ import java.util.ArrayList;
 public class RenderThread extends Thread {
 
     /**
-     * Pauses the RenderThread if true. 
+     * State of the RenderThread (running, paused or stopping). 
      */
-    private boolean mPaused = false;
-    
-    /**
-     * Tells the render thread to exit is set to 'true'.
-     */
-    private boolean mExit = false;
+    private final ThreadLifecycle mLifecycle = new ThreadLifecycle(this, ThreadLifecycle.State.RUNNING);
     
     /**
      * If "mInGame" is set to "true" the RenderThread will just paint the
      * existing cameras, otherwise it's painting the current frame of the GUI.
      */
-    private boolean mInGame = false;
+    private volatile boolean mInGame = false;
     
     /**
      * Graphic environment for rendering (hardware information).
@@ -118,7 +116,44 @@ public class RenderThread extends Thread {
     /**
      * Index defining the state of the ample. 
      */
-    private int mAmpleIndex = -1;
+    private volatile int mAmpleIndex = -1;
+    
+    /**
+     * Reference to the FrameProfiler.
+     */
+    private FrameProfiler mProfiler = FrameProfiler.getInstance();
+    
+    /**
+     * Percentiles shown by the profiler overlay (median and slowest frames).
+     */
+    private static final double [] sProfilerPercentiles = {50.0, 99.0};
+    
+    /**
+     * Number of frames between two updates of the profiler overlay (the 
+     * percentiles are sorted out of all samples of a phase).
+     */
+    private static final int sProfilerRefresh = 30;
+    
+    /**
+     * Durations of the shown percentiles of each phase (in nanoseconds).
+     */
+    private long [][] mProfilerDurations = new long[FrameProfiler.Phase.values().length][2];
+    
+    /**
+     * Number of frames until the next update of the profiler overlay.
+     */
+    private int mProfilerCountdown = 0;
+    
+    /**
+     * Duration of one frame at the configured refresh rate in nanoseconds 
+     * (length of the bars of the profiler overlay).
+     */
+    private long mFrameNanos = 1000000000L / 60;
+    
+    /**
+     * Background of the profiler overlay.
+     */
+    private Color mProfilerBackground = new Color(0, 0, 0, 160);
     
     /**
      * Constructor for the RenderThread. 
@@ -172,6 +207,8 @@ public class RenderThread extends Thread {
         Integer vResolutionHeight = (Integer) mSettings.getValue("ResolutionHeight");
         Integer vColorDepth =       (Integer) mSettings.getValue("ColorDepth");
         Integer vRefreshRate =      (Integer) mSettings.getValue("RefreshRate");
+        if (vRefreshRate.intValue() > 0)
+            mFrameNanos = 1000000000L / vRefreshRate.intValue();
         DisplayMode[] vAvailableModes = mGraphicsDevice.getDisplayModes();
         for (DisplayMode dm : vAvailableModes) {
             if (dm.getWidth() == vResolutionWidth.intValue() && 
@@ -207,22 +244,21 @@ public class RenderThread extends Thread {
      * Pauses the RenderThread. 
      */
     public void doPause() {
-        mPaused = true;
+        mLifecycle.pause();
     }
     
     /**
      * Continues the RenderThread after pausing. 
      */
-    public synchronized void doContinue() {
-        mPaused = false;
-        this.notify();
+    public void doContinue() {
+        mLifecycle.resume();
     }
     
     /**
      * Tells the render thread to exit. 
      */
-    public synchronized void doExit () {
-        mExit = true;
+    public void doExit () {
+        mLifecycle.stop();
     }
     
     /**
@@ -230,7 +266,7 @@ public class RenderThread extends Thread {
      * @param inGame if 'true' the current level's cameras are rendered, otherwise
      * the current GUI-Frame
      */
-    public synchronized void switchState(boolean inGame) {
+    public void switchState(boolean inGame) {
         mInGame = inGame;
     }
     
@@ -238,16 +274,16 @@ public class RenderThread extends Thread {
      * Tells the render thread to end.
      * @return 'true' if the render thread is supposed to end.
      */
-    private synchronized boolean isExit () {
-        return mExit;
+    private boolean isExit () {
+        return !mLifecycle.isRunning();
     }
         
     /**
      * Shows if the render thread is paused. 
      * @return 'true' if the render thread is paused.
      */
-    private synchronized boolean isPaused() {
-        return mPaused;
+    private boolean isPaused() {
+        return mLifecycle.isPaused();
     }
     
     /**
@@ -255,7 +291,7 @@ public class RenderThread extends Thread {
      * in the current level. Otherwise it paints the current GUI-frame.
      * @return current state of the RenderThread (GUI or In-Game)
      */
-    private synchronized boolean isInGame () {
+    private boolean isInGame () {
         return mInGame;
     }
     
@@ -265,7 +301,7 @@ public class RenderThread extends Thread {
      * green and 4 just green).
      * @param index ample index (state of the ample)
      */
-    public synchronized void setAmple (int index)
+    public void setAmple (int index)
     {
         mAmpleIndex = index;
     }
@@ -274,11 +310,54 @@ public class RenderThread extends Thread {
      * Gets the state of the ample.
      * @return ample index
      */
-    private synchronized int getAmple ()
+    private int getAmple ()
     {
         return mAmpleIndex;
     }
     
+    /**
+     * Paints the profiler overlay: median (p50) and slowest (p99) duration of
+     * each profiled phase as text and as bars. A bar as wide as the overlay
+     * is one frame at the configured refresh rate. The percentiles are only
+     * updated every sProfilerRefresh frames.
+     * @param g graphics context
+     */
+    private void paintProfiler (Graphics2D g)
+    {
+        FrameProfiler.Phase [] vPhases = FrameProfiler.Phase.values();
+        int vX = mFrameBounds.width - 330;
+        int vY = 10;
+        int vBarWidth = 120;
+        
+        g.setColor(mProfilerBackground);
+        g.fillRect(vX, vY, 320, (vPhases.length + 1) * 16 + 8);
+        g.setColor(Color.WHITE);
+        g.drawString("phase: p50 / p99 [us]", vX + 6, vY + 16);
+        
+        if (--mProfilerCountdown <= 0)
+        {
+            for (int i = 0; i < vPhases.length; i++)
+                mProfiler.getPercentiles(vPhases[i], sProfilerPercentiles, mProfilerDurations[i]);
+            mProfilerCountdown = sProfilerRefresh;
+        }
+        
+        for (int i = 0; i < vPhases.length; i++)
+        {
+            long [] vDurations = mProfilerDurations[i];
+            int vLine = vY + 16 * (i + 2);
+            int vP50 = (int) Math.min(vBarWidth, vDurations[0] * vBarWidth / mFrameNanos);
+            int vP99 = (int) Math.min(vBarWidth, vDurations[1] * vBarWidth / mFrameNanos);
+            
+            g.setColor(Color.ORANGE);
+            g.fillRect(vX + 194, vLine - 10, vP99, 10);
+            g.setColor(Color.GREEN);
+            g.fillRect(vX + 194, vLine - 10, vP50, 10);
+            g.setColor(Color.WHITE);
+            g.drawString(vPhases[i].name().toLowerCase() + ": " + vDurations[0] / 1000 
+                    + " / " + vDurations[1] / 1000, vX + 6, vLine);
+        }
+    }
+    
     @Override
     public void run(){
 
@@ -294,21 +373,11 @@ public class RenderThread extends Thread {
             while (!isExit()) {
 
                 // Pause the render thread
-                if (isPaused())
+                if (mLifecycle.awaitResume())
                 {
-                    boolean vWait = false;
-                    while (!vWait) {
-                        try {
-                            synchronized(this) {
-                                this.wait();
-                            }
-                            vWait = true;
-                        }
-                        catch (InterruptedException e) {
-                            vWait = false;
-                            timestep = System.currentTimeMillis();
-                        }
-                    }
+                    timestep = System.currentTimeMillis();
+                    if (isExit())
+                        break;
                 }
                 
                 // Render Graphics
@@ -324,22 +393,28 @@ public class RenderThread extends Thread {
                     // Render in-game cameras
                     if (isInGame() || ample != -1) 
                     {
+                        long vStart = System.nanoTime();
                         stepsize = (int)(System.currentTimeMillis() - timestep);
                         timestep = System.currentTimeMillis();
+                        double vAlpha = PhysicsEngine.getInstance().getInterpolationAlpha();
                         ArrayList<Player> vPlayers = mCurrentLevel.getPlayers();
                         for (Player vPlayer : vPlayers) {
                             if (vPlayer.hasCamera()) {
-                                vPlayer.update();
+                                vPlayer.update(vAlpha);
+                                vPlayer.getCamera().setInterpolationAlpha(vAlpha);
                                 vPlayer.getCamera().paint(g, mFrame, Math.max(1000, stepsize));
                                 g.setColor(Color.red);
                                 g.draw(vPlayer.getCamera().getDisplay());
                             }
                         }
+                        mProfiler.record(FrameProfiler.Phase.CAMERA_PAINT, System.nanoTime() - vStart);
                     }
                     
                     // Render graphical user interface
+                    long vGuiStart = System.nanoTime();
                     GUIFrame mGui = mGuiEngine.getCurrentFrame();
                     if (mGui != null) mGui.paint(g, mFrame);
+                    mProfiler.record(FrameProfiler.Phase.GUI_PAINT, System.nanoTime() - vGuiStart);
     
                     // Render ample
                     if (ample != -1)
@@ -372,6 +447,10 @@ public class RenderThread extends Thread {
                         }
                     }
                     
+                    // Render profiler overlay
+                    if (mProfiler.isOverlayVisible())
+                        paintProfiler(g);
+                    
                     // Render buffers
                     mBufferStrategy.show();
                 } 
@@ -4,12 +4,12 @@
  */
 package crazyballrun.game.level;
 
+import crazyballrun.game.GameConstants;
 import crazyballrun.game.level.controllers.Player;
 import crazyballrun.game.level.objects.LevelObject;
 import crazyballrun.game.physics.CollisionTexture.GroundProperty;
 import crazyballrun.game.utilities.Vector2D;
 import java.util.ArrayList;
-import java.util.LinkedList;
 
 // TODO: Create player-specific checkpoints (if a player reached each checkpoint, 
 //       the number of rounds is increased by one in the level-statistics).
@@ -56,9 +56,9 @@ public class Level {
     private ArrayList<Player> mPlayers = new ArrayList<Player>();
     
     /**
-     * List of all objects in the level.
+     * Registry of all objects in the level.
      */
-    private LinkedList<LevelObject> mObjects = new LinkedList<LevelObject>();
+    private ObjectRegistry mObjects = new ObjectRegistry();
     
     /**
      * Player-specific Level-Statistics.
@@ -92,7 +92,8 @@ public class Level {
     }
     
     /**
-     * Creates an object and puts it into the level-object-list. 
+     * Creates an object and puts it into the level-object-list (with the next
+     * call of "commitObjects()"). 
      * @param obj filename of the object (without file extension)
      * @param pos position of the object
      * @param layer layer of the object
@@ -110,19 +111,40 @@ public class Level {
     } 
 
     /**
-     * Removes a (dead/destroyed) object from the level's object-list.
+     * Removes a (dead/destroyed) object from the level's object-list (with the
+     * next call of "commitObjects()").
      * @param obj reference to the object
      */
-    public synchronized void removeObject (LevelObject obj) {
+    public void removeObject (LevelObject obj) {
         mObjects.remove(obj);
     }
 
     /**
-     * Clones the level's object-list threadsavely.
-     * @return reference to a copy of the level's object-list
+     * Applies all objects created or removed since the last call to the 
+     * level's object-list. Called by the PhysicsThread at the beginning of 
+     * each timestep. 
+     * @return "true" if the object-list has changed
      */
-    public synchronized LinkedList<LevelObject> getObjectList () {
-        return (LinkedList<LevelObject>) mObjects.clone();
+    public boolean commitObjects () {
+        return mObjects.commit();
+    }
+    
+    /**
+     * Gets the level's object-list threadsavely (as of the last call of 
+     * "commitObjects()"). The array must not be modified.
+     * @return array of all objects of the level
+     */
+    public LevelObject [] getObjects () {
+        return mObjects.getSnapshot();
+    }
+    
+    /**
+     * Gets the version of the level's object-list, which changes whenever 
+     * objects are created or removed.
+     * @return version number
+     */
+    public long getObjectsVersion () {
+        return mObjects.getVersion();
     }
     
     /**
@@ -252,16 +274,63 @@ public class Level {
      * @return the ground property for a specific point
      */
     public GroundProperty getGroundProperty (Vector2D pos, int layer) {
-        Tile vTile = getTile(pos, layer);
+        return getGroundProperty(pos.x, pos.y, layer);
+    }
+    
+    /**
+     * Finds the ground property at a particular point in the level. 
+     * @param x x-coordinate of the point (in textures)
+     * @param y y-coordinate of the point (in textures)
+     * @param layer map layer ("z-axis")
+     * @return the ground property for a specific point
+     */
+    public GroundProperty getGroundProperty (double x, double y, int layer) {
+        Tile vTile = getTile(x, y, layer);
         if (vTile != null)
-        {
-            pos.x = pos.x % 1.0;
-            pos.y = pos.y % 1.0;
-            return vTile.getGroundProperty(pos);
-        }
+            return vTile.getGroundProperty(x % 1.0, y % 1.0);
         return GroundProperty.WALL;
     }
     
+    /**
+     * Finds a lower bound of the distance from a particular point in the level 
+     * to the nearest wall. Since only the tile of the point is looked at, the 
+     * distance is limited by the distance to the border of the tile, but not 
+     * below one pixel, so points on the border between two tiles aren't taken
+     * for walls. Points inside of walls or outside of the level have a 
+     * distance &lt;= 0. 
+     * @param x x-coordinate of the point (in textures)
+     * @param y y-coordinate of the point (in textures)
+     * @param layer map layer ("z-axis")
+     * @return distance to the nearest wall (in textures)
+     */
+    public double getWallDistance (double x, double y, int layer) {
+        Tile vTile = getTile(x, y, layer);
+        if (vTile == null)
+            return 0.0;
+        double tx = x % 1.0;
+        double ty = y % 1.0;
+        double vDistance = vTile.getWallDistance(tx, ty);
+        if (vDistance <= 0.0)
+            return vDistance;
+        double vBorder = Math.min(Math.min(tx, 1.0 - tx), Math.min(ty, 1.0 - ty));
+        return Math.min(vDistance, Math.max(vBorder, 1.0 / GameConstants.TEXTURE_SIZE));
+    }
+    
+    /**
+     * Finds the direction pointing away from the nearest wall at a particular
+     * point in the level (e.g. the contact normal of a collision). 
+     * @param x x-coordinate of the point (in textures)
+     * @param y y-coordinate of the point (in textures)
+     * @param layer map layer ("z-axis")
+     * @return normalized direction (or null if unknown)
+     */
+    public Vector2D getWallNormal (double x, double y, int layer) {
+        Tile vTile = getTile(x, y, layer);
+        if (vTile == null)
+            return null;
+        return vTile.getWallNormal(x % 1.0, y % 1.0);
+    }
+    
     /**
      * Gets a list of all player of the level. 
      * @return reference player list
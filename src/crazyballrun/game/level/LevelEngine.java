@@ -148,15 +148,38 @@ public class LevelEngine {
     }
     
     /**
-     * Loads the specified level and starts the game.
+     * Parses the specified level without starting it (no rendering, no game
+     * state changes).
      * @param name level name (from level description)
+     * @return the parsed level
+     * @throws Exception parsing errors of the level file
      */
-    public synchronized void loadLevel (String name) {
+    public Level parseLevel (String name) throws Exception {
         String vFileName = GameConstants.LEVEL_RESOURCE_PATH + File.separator + name + GameConstants.LEVEL_FILE_EXTENSION;
         Level vLevel = new Level();
+        mLevelParser.parse(vFileName, vLevel);
+        return vLevel;
+    }
+    
+    /**
+     * Sets the current level (e.g. for a headless simulation, which doesn't
+     * use "loadLevel"). Level-specific GameFunctions-variables are set as well.
+     * @param level the level
+     */
+    public synchronized void setCurrentLevel (Level level) {
+        mCurrentLevel = level;
+        setGameFunctions();
+    }
+    
+    /**
+     * Loads the specified level and starts the game.
+     * @param name level name (from level description)
+     */
+    public synchronized void loadLevel (String name) {
+        Level vLevel = null;
         try 
         {
-            mLevelParser.parse(vFileName, vLevel);
+            vLevel = parseLevel(name);
         }
         catch (Exception e)
         {
@@ -12,17 +12,25 @@ import crazyballrun.game.GameLogger;
 import crazyballrun.game.graphics.Animation;
 import crazyballrun.game.graphics.GraphicsEngine;
 import crazyballrun.game.physics.CollisionTexture;
+import crazyballrun.game.physics.CollisionTextureCache;
 import crazyballrun.game.utilities.GraphGenerator;
 import crazyballrun.game.utilities.PathFinder;
 import crazyballrun.game.utilities.Position3D;
 import crazyballrun.game.utilities.QuadTree;
 import crazyballrun.game.utilities.Vector2D;
-import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.CRC32;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
@@ -179,100 +187,282 @@ public class LevelParser extends DefaultHandler
     }    
 
     /**
-     * Creates quadtrees and graphs for pathfinding.
+     * Computes a hash of the collision data of a layer: the size of the level
+     * and the content of the collision texture of each tile. A quadtree cache 
+     * is stale if the hash of its layer has changed.
+     * @param layer level layer
+     * @param minSize minimum node size of the quadtree
+     * @return hash of the collision data
      */
-    private void generateQuadtree () 
+    private long getLayerHash (int layer, long minSize)
     {
-        ArrayList<QuadTree<Integer>> vQuadTrees = new ArrayList<QuadTree<Integer>>();
-        LinkedList<Position3D> vTransitionPointsUp = new LinkedList<Position3D>();
-        LinkedList<Position3D> vTransitionPointsDown = new LinkedList<Position3D>();
-        
-        // Initialize Quadtree-List
-        vQuadTrees.clear();
-        long vDomainWidth = mLevel.getWidth() * GameConstants.TEXTURE_SIZE;
-        long vDomainHeight = mLevel.getHeight() * GameConstants.TEXTURE_SIZE;
+        CRC32 vCrc = new CRC32();
+        ByteBuffer vBuffer = ByteBuffer.allocate(8);
+        vBuffer.putInt(0, mLevel.getWidth()).putInt(4, mLevel.getHeight());
+        vCrc.update(vBuffer.array());
+        vBuffer.putInt(0, GameConstants.TEXTURE_SIZE).putInt(4, (int) minSize);
+        vCrc.update(vBuffer.array());
+        for (int x = 0; x < mLevel.getWidth(); x++)
+        {
+            for (int y = 0; y < mLevel.getHeight(); y++)
+            {
+                Tile vTile = mLevel.getTile(x, y, layer);
+                CollisionTexture vTexture = vTile != null ? vTile.getCollisionTexture() : null;
+                vBuffer.putLong(0, vTexture != null ? vTexture.getContentHash() : -1);
+                vCrc.update(vBuffer.array());
+            }
+        }
+        return vCrc.getValue();
+    }
+    
+    /**
+     * Gets the ground property of a pixel of a tile.
+     * @param tile reference to the tile
+     * @param ix x-coordinate of the pixel (in [0, GameConstants.TEXTURE_SIZE))
+     * @param iy y-coordinate of the pixel (in [0, GameConstants.TEXTURE_SIZE))
+     * @return ground property at the center of the pixel
+     */
+    private static CollisionTexture.GroundProperty getGroundProperty (Tile tile, long ix, long iy)
+    {
+        return tile.getGroundProperty((ix + 0.5) / GameConstants.TEXTURE_SIZE, (iy + 0.5) / GameConstants.TEXTURE_SIZE);
+    }
+    
+    /**
+     * Preprocessing of one layer for pathfinding: hash of the collision data,
+     * quadtree (loaded from the cache or built) and graph. The layers are
+     * independent of each other, so the tasks of all layers run in parallel.
+     * The transition points of a layer are only collected if its quadtree is
+     * built (the Transition.xml is written at the same time).
+     */
+    private class LayerTask implements Callable<LayerTask> {
 
-        final long vObjectSize = GameConstants.TEXTURE_SIZE / 5;
-        
-        for (int layer = 0; layer < mLevel.getLayers(); layer++)
+        /**
+         * Level layer.
+         */
+        private final int mLayer;
+
+        /**
+         * Minimum node size of the quadtree.
+         */
+        private final long mMinSize;
+
+        /**
+         * Points of the layer which lead to the next layer.
+         */
+        private final LinkedList<Position3D> mTransitionPointsUp = new LinkedList<Position3D>();
+
+        /**
+         * Points of the layer which lead to the previous layer.
+         */
+        private final LinkedList<Position3D> mTransitionPointsDown = new LinkedList<Position3D>();
+
+        /**
+         * Quadtree of the layer.
+         */
+        private QuadTree<Integer> mQuadTree = null;
+
+        /**
+         * Graph of the layer.
+         */
+        private GraphGenerator mGraph = null;
+
+        /**
+         * Origin of the quadtree ("cache" or "built").
+         */
+        private String mSource = null;
+
+        /**
+         * Durations of the stages in nanoseconds.
+         */
+        private long mHashTime = 0, mQuadTreeTime = 0, mGraphTime = 0;
+
+        /**
+         * Constructor of LayerTask.
+         * @param layer level layer
+         * @param minSize minimum node size of the quadtree
+         */
+        public LayerTask (int layer, long minSize)
+        {
+            mLayer = layer;
+            mMinSize = minSize;
+        }
+
+        @Override
+        public LayerTask call ()
+        {
+            long vStart = System.nanoTime();
+            long vHash = getLayerHash(mLayer, mMinSize);
+            long vEnd = System.nanoTime();
+            mHashTime = vEnd - vStart;
+
+            vStart = vEnd;
+            mQuadTree = createQuadTree(vHash);
+            vEnd = System.nanoTime();
+            mQuadTreeTime = vEnd - vStart;
+
+            vStart = vEnd;
+            mGraph = new GraphGenerator(mQuadTree);
+            mGraphTime = System.nanoTime() - vStart;
+            return this;
+        }
+
+        /**
+         * Loads the quadtree of the layer from its cache or builds it.
+         * @param hash hash of the collision data of the layer
+         * @return the quadtree
+         */
+        private QuadTree<Integer> createQuadTree (long hash)
         {
-            // Generate Quadtree for current layer
             QuadTree<Integer> vQuadTree = null;
 
-            // Check if QuadTree_[layer].xml exists
-            String vQuadTreeFileName = GameConstants.LEVEL_RESOURCE_PATH + File.separator + mLevel.getName() + File.separator + "Quadtree_" + layer + ".xml";
-            File vQuadTreeFile = new File(vQuadTreeFileName);
-            if (vQuadTreeFile.exists())
+            // Check if QuadTree_[layer].qtc exists and belongs to the 
+            // current collision textures (a former QuadTree_[layer].xml has 
+            // no source hash, so it is rebuilt)
+            String vQuadTreePath = GameConstants.LEVEL_RESOURCE_PATH + File.separator + mLevel.getName() + File.separator + "Quadtree_" + mLayer;
+            String vQuadTreeFileName = vQuadTreePath + GameConstants.QUADTREE_FILE_EXTENSION;
+            if (new File(vQuadTreeFileName).exists())
             {
                 try
                 {
-                    vQuadTree = new QuadTree<Integer>(vQuadTreeFileName);
+                    vQuadTree = QuadTree.load(vQuadTreeFileName, hash);
+                    mSource = "cache";
                 }
                 catch (Exception e)
                 {
+                    GameLogger.log(e);
                     vQuadTree = null;
                 }
-                if (vQuadTree != null)
-                {
-                    vQuadTrees.add(vQuadTree);
-                    continue;
-                }
             }
+            if (vQuadTree != null)
+                return vQuadTree;
 
-            vQuadTree = new QuadTree<Integer>(0, 0, vDomainWidth, vDomainHeight, vObjectSize);
-            vQuadTrees.add(vQuadTree);
-            
-            // Fill Quadtree with collision data of the ground
+            // Find tiles which are transitions between two layers
             for (int x = 0; x < mLevel.getWidth(); x++)
             {
                 for (int y = 0; y < mLevel.getHeight(); y++)
                 {
-                    Tile vTile = mLevel.getTile(x, y, layer);
+                    Tile vTile = mLevel.getTile(x, y, mLayer);
                     if (vTile == null) continue;
                     for (int ix = 0; ix < GameConstants.TEXTURE_SIZE; ix++)
                     {
                         for (int iy = 0; iy < GameConstants.TEXTURE_SIZE; iy++)
                         {
-                            Vector2D vPosition = new Vector2D(ix, iy);
-                            CollisionTexture.GroundProperty vGround = vTile.getGroundProperty(vPosition);
-                            
-                            // Store tiles which are transitions between two layers
+                            CollisionTexture.GroundProperty vGround = getGroundProperty(vTile, ix, iy);
                             if (vGround == CollisionTexture.GroundProperty.NEXT_LAYER)
                             {
                                 vTile.setNextLayer(true);
-                                vTransitionPointsUp.add(new Position3D( new Vector2D(x * GameConstants.TEXTURE_SIZE + ix, y * GameConstants.TEXTURE_SIZE + iy), layer));
+                                mTransitionPointsUp.add(new Position3D( new Vector2D(x * GameConstants.TEXTURE_SIZE + ix, y * GameConstants.TEXTURE_SIZE + iy), mLayer));
                             }
                             else if (vGround == CollisionTexture.GroundProperty.PREVIOUS_LAYER)
                             {
                                 vTile.setPreviousLayer(true);
-                                vTransitionPointsDown.add(new Position3D( new Vector2D(x * GameConstants.TEXTURE_SIZE + ix, y * GameConstants.TEXTURE_SIZE + iy), layer));
+                                mTransitionPointsDown.add(new Position3D( new Vector2D(x * GameConstants.TEXTURE_SIZE + ix, y * GameConstants.TEXTURE_SIZE + iy), mLayer));
                             }
-
-                            // Fill quadtree with wall/walkable ground
-                            if (vGround == CollisionTexture.GroundProperty.WALL)
-                                vQuadTree.insert(x * GameConstants.TEXTURE_SIZE + ix, y * GameConstants.TEXTURE_SIZE + iy, 1);
-                            else
-                                vQuadTree.insert(x * GameConstants.TEXTURE_SIZE + ix, y * GameConstants.TEXTURE_SIZE + iy, 0);
                         }
                     }
                 }
             }
+            
+            // Build Quadtree with wall (1) / walkable (0) ground at once
+            long vDomainWidth = mLevel.getWidth() * GameConstants.TEXTURE_SIZE;
+            long vDomainHeight = mLevel.getHeight() * GameConstants.TEXTURE_SIZE;
+            vQuadTree = new QuadTree<Integer>(0, 0, vDomainWidth, vDomainHeight, mMinSize, new QuadTree.Raster<Integer>() {
+                @Override
+                public Integer get (long x, long y) {
+                    Tile vTile = mLevel.getTile((int) (x / GameConstants.TEXTURE_SIZE), (int) (y / GameConstants.TEXTURE_SIZE), mLayer);
+                    if (vTile == null) 
+                        return null;
+                    return getGroundProperty(vTile, x % GameConstants.TEXTURE_SIZE, y % GameConstants.TEXTURE_SIZE) == CollisionTexture.GroundProperty.WALL ? 1 : 0;
+                }
+            });
+            mSource = "built";
 
             // Save QuadTree to avoid re-calculation of the tree
             try
             {
-                vQuadTree.save(vQuadTreeFileName);
+                vQuadTree.save(vQuadTreeFileName, hash);
             } 
             catch (Exception e) 
             {
                 GameLogger.log(e);
             }
+            return vQuadTree;
+        }
+    }
+    
+    /**
+     * Runs the preprocessing tasks of all layers (see LayerTask) in parallel
+     * on at most one thread per processor.
+     * @param minSize minimum node size of the quadtrees
+     * @return the finished tasks (ordered by layer)
+     */
+    private ArrayList<LayerTask> runLayerTasks (long minSize)
+    {
+        ArrayList<LayerTask> vTasks = new ArrayList<LayerTask>();
+        for (int layer = 0; layer < mLevel.getLayers(); layer++)
+            vTasks.add(new LayerTask(layer, minSize));
+        if (vTasks.isEmpty())
+            return vTasks;
+
+        int vThreads = Math.min(vTasks.size(), Runtime.getRuntime().availableProcessors());
+        ExecutorService vExecutor = Executors.newFixedThreadPool(vThreads, new ThreadFactory() {
+            private int mCount = 0;
+            @Override
+            public synchronized Thread newThread (Runnable r) {
+                Thread vThread = new Thread(r, "LevelPreprocessing-" + mCount++);
+                vThread.setDaemon(true);
+                return vThread;
+            }
+        });
+        try
+        {
+            for (Future<LayerTask> vFuture : vExecutor.invokeAll(vTasks))
+                vFuture.get();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Level preprocessing interrupted.", e);
+        }
+        catch (ExecutionException e)
+        {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new IllegalStateException("Level preprocessing failed.", e.getCause());
+        }
+        finally
+        {
+            vExecutor.shutdownNow();
         }
+        GameLogger.log("Level preprocessing: " + vTasks.size() + " layer(s) on " + vThreads + " thread(s).");
+        return vTasks;
+    }
+    
+    /**
+     * Creates quadtrees and graphs for pathfinding. The layers are processed
+     * in parallel (hash, quadtree and graph of each layer), the links between
+     * the layers are created afterwards. The durations of the stages are 
+     * logged.
+     */
+    private void generateQuadtree () 
+    {
+        LinkedList<Position3D> vTransitionPointsUp = new LinkedList<Position3D>();
+        LinkedList<Position3D> vTransitionPointsDown = new LinkedList<Position3D>();
+        final long vObjectSize = GameConstants.TEXTURE_SIZE / 5;
+        long vStart = System.nanoTime();
         
-        // Generate Graphs
+        // Generate Quadtrees and Graphs of all layers
         mGraphGenerators.clear();
-        for (int i = 0; i < mLevel.getLayers(); i++) 
-            mGraphGenerators.add(new GraphGenerator(vQuadTrees.get(i)));
+        for (LayerTask vTask : runLayerTasks(vObjectSize))
+        {
+            mGraphGenerators.add(vTask.mGraph);
+            vTransitionPointsUp.addAll(vTask.mTransitionPointsUp);
+            vTransitionPointsDown.addAll(vTask.mTransitionPointsDown);
+            GameLogger.log("Layer " + vTask.mLayer + ": hash " + toMillis(vTask.mHashTime) + " ms, " +
+                           "quadtree (" + vTask.mSource + ") " + toMillis(vTask.mQuadTreeTime) + " ms, " + 
+                           "graph " + toMillis(vTask.mGraphTime) + " ms (" + vTask.mGraph.getNodes().size() + " nodes).");
+        }
+        long vLayersEnd = System.nanoTime();
 
         String vTransitionFileName = GameConstants.LEVEL_RESOURCE_PATH + File.separator + mLevel.getName() + File.separator + "Transition.xml";
         File vTransitionFile = new File(vTransitionFileName);
@@ -356,10 +546,26 @@ public class LevelParser extends DefaultHandler
             }                
         }
         
+        long vTransitionsEnd = System.nanoTime();
+        
         // Fill level-graph
         mLevelGraph.clear();
         for (GraphGenerator vGraph : mGraphGenerators)
             mLevelGraph.addAll(vGraph.getNodes());
+        
+        GameLogger.log("Level preprocessing: layers " + toMillis(vLayersEnd - vStart) + " ms, " + 
+                       "transitions " + toMillis(vTransitionsEnd - vLayersEnd) + " ms, " +
+                       "total " + toMillis(System.nanoTime() - vStart) + " ms.");
+    }
+    
+    /**
+     * Converts a duration for the log.
+     * @param nanos duration in nanoseconds
+     * @return duration in milliseconds
+     */
+    private static long toMillis (long nanos)
+    {
+        return nanos / 1000000;
     }
     
     /**
@@ -433,17 +639,14 @@ public class LevelParser extends DefaultHandler
                     int vY = Integer.parseInt(attributes.getValue("y"));
                     int vLayer = Integer.parseInt(attributes.getValue("layer"));
 
-                    // Collision Texture
-                    BufferedImage vCollImg = (BufferedImage)GraphicsEngine.getInstance().getTexture(
+                    // Collision Texture (shared by all tiles using the same image)
+                    CollisionTexture vCollision = CollisionTextureCache.getInstance().get(
                             attributes.getValue("name") + GameConstants.COLLISION_EXTENSION + 
                             GameConstants.COLLISION_FILE_EXTENSION, mLevel.getName());
-                    if (vCollImg == null)
+                    if (vCollision == null)
                     {
                         GameLogger.log("Image not found: " + attributes.getValue("name") + GameConstants.COLLISION_EXTENSION + GameConstants.COLLISION_FILE_EXTENSION);
                     }
-
-                    CollisionTexture vCollision = new CollisionTexture();
-                    vCollision.setCollisionTexture(vCollImg);
                     
                     // Texture Animation
                     int vFrequency = Integer.parseInt(attributes.getValue("change"));
@@ -584,6 +787,7 @@ public class LevelParser extends DefaultHandler
             {
                 if (qName.equals("Textures"))
                 {
+                    GameLogger.log(CollisionTextureCache.getInstance().toString());
                     generateQuadtree();
                     mState = State.MAP;
                 }
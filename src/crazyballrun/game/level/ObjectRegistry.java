@@ -0,0 +1,144 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package crazyballrun.game.level;
+
+import crazyballrun.game.level.objects.LevelObject;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+
+/**
+ * The ObjectRegistry holds all objects of a level as versioned snapshots. A
+ * snapshot is an array which is never modified after it has been published,
+ * so any thread may iterate it without locking or allocating. Added and
+ * removed objects are collected and applied at once by "commit()", which the
+ * PhysicsThread calls at the beginning of each timestep. Every commit which
+ * changes the objects publishes a new snapshot with a new version. Each object
+ * gets a unique id when it's added, the snapshots are ordered by these ids. 
+ *
+ * @author Timm Hoffmeister
+ */
+public class ObjectRegistry {
+
+    /**
+     * Current snapshot of all objects.
+     */
+    private volatile LevelObject [] mSnapshot = new LevelObject[0];
+
+    /**
+     * Version of the current snapshot (increased with every change).
+     */
+    private volatile long mVersion = 0;
+
+    /**
+     * Objects added since the last commit.
+     */
+    private ArrayList<LevelObject> mAdded = new ArrayList<LevelObject>();
+
+    /**
+     * Objects removed since the last commit.
+     */
+    private ArrayList<LevelObject> mRemoved = new ArrayList<LevelObject>();
+
+    /**
+     * Lock for the pending changes.
+     */
+    private final Object mLockPending = new Object();
+    
+    /**
+     * Id of the last added object. 
+     */
+    private long mLastId = 0;
+
+    /**
+     * Constructor of ObjectRegistry.
+     */
+    public ObjectRegistry ()
+    {
+
+    }
+
+    /**
+     * Adds an object with the next commit and assigns the next id to it.
+     * @param obj reference to the object
+     */
+    public void add (LevelObject obj)
+    {
+        synchronized (mLockPending)
+        {
+            obj.setId(++mLastId);
+            mAdded.add(obj);
+        }
+    }
+
+    /**
+     * Removes an object with the next commit.
+     * @param obj reference to the object
+     */
+    public void remove (LevelObject obj)
+    {
+        synchronized (mLockPending)
+        {
+            mRemoved.add(obj);
+        }
+    }
+
+    /**
+     * Applies all pending changes and publishes a new snapshot if anything
+     * has changed. Objects added and removed in the same batch are dropped.
+     * @return "true" if a new snapshot has been published
+     */
+    public boolean commit ()
+    {
+        synchronized (mLockPending)
+        {
+            if (mAdded.isEmpty() && mRemoved.isEmpty())
+                return false;
+
+            IdentityHashMap<LevelObject, Boolean> vRemoved = new IdentityHashMap<LevelObject, Boolean>();
+            for (LevelObject vObject : mRemoved)
+                vRemoved.put(vObject, Boolean.TRUE);
+
+            LevelObject [] vOld = mSnapshot;
+            ArrayList<LevelObject> vObjects = new ArrayList<LevelObject>(vOld.length + mAdded.size());
+            for (LevelObject vObject : vOld)
+            {
+                if (!vRemoved.containsKey(vObject))
+                    vObjects.add(vObject);
+            }
+            // ids are assigned in the order of adding, so appending the added
+            // objects keeps the snapshot ordered by ids
+            for (LevelObject vObject : mAdded)
+            {
+                if (!vRemoved.containsKey(vObject))
+                    vObjects.add(vObject);
+            }
+            mAdded.clear();
+            mRemoved.clear();
+
+            mSnapshot = vObjects.toArray(new LevelObject[vObjects.size()]);
+            mVersion++;
+            return true;
+        }
+    }
+
+    /**
+     * Gets the current snapshot of all objects. The array must not be modified.
+     * @return array of all objects (as of the last commit)
+     */
+    public LevelObject [] getSnapshot ()
+    {
+        return mSnapshot;
+    }
+
+    /**
+     * Gets the version of the current snapshot.
+     * @return version number
+     */
+    public long getVersion ()
+    {
+        return mVersion;
+    }
+
+}
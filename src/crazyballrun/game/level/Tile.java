@@ -12,6 +12,7 @@ import crazyballrun.game.physics.bodies.PhysicalBody;
 import crazyballrun.game.utilities.Vector2D;
 import java.awt.Frame;
 import java.awt.Graphics2D;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.LinkedList;
 
@@ -95,6 +96,15 @@ public class Tile {
         this.mSoundFiles = music;
     }
     
+    /**
+     * Gets the collision texture of the tile.
+     * @return reference to the collision texture (null if there's none)
+     */
+    public CollisionTexture getCollisionTexture () 
+    {
+        return mCollisionTexture;
+    }
+    
     /**
      * Gets a reference to the tile's music playlist. 
      * @return tile's music playlist
@@ -140,6 +150,18 @@ public class Tile {
         }
     }
 
+    /**
+     * Copies the LevelObjects of the tile into a collection.
+     * @param result collection to which the objects are added
+     */
+    public void getRigidBodies (Collection<LevelObject> result) 
+    {
+        synchronized(mLockRigidBody)
+        {
+            result.addAll(mRigidBodyList);
+        }
+    }
+
     /**
      * Removes a LevelObject from the list of the tile.
      * @param body reference to the LevelObject
@@ -202,6 +224,47 @@ public class Tile {
         return CollisionTexture.GroundProperty.WALL;
     }
     
+    /**
+     * Gets the ground properties at a particular point of the tile. 
+     * @param x x-coordinate of the point (in [0,1])
+     * @param y y-coordinate of the point (in [0,1])
+     * @return the ground property
+     */
+    public CollisionTexture.GroundProperty getGroundProperty (double x, double y) 
+    {
+        if (mCollisionTexture != null)
+            return mCollisionTexture.getGroundProperty(x, y);
+        return CollisionTexture.GroundProperty.WALL;
+    }
+    
+    /**
+     * Gets the signed distance to the nearest wall of this tile at a particular
+     * point of the tile (negative inside of walls). 
+     * @param x x-coordinate of the point (in [0,1])
+     * @param y y-coordinate of the point (in [0,1])
+     * @return distance in texture-measurement ("0" if there's no collision texture)
+     */
+    public double getWallDistance (double x, double y) 
+    {
+        if (mCollisionTexture != null)
+            return mCollisionTexture.getWallDistance(x, y);
+        return 0.0;
+    }
+    
+    /**
+     * Gets the direction pointing away from the nearest wall of this tile at 
+     * a particular point of the tile. 
+     * @param x x-coordinate of the point (in [0,1])
+     * @param y y-coordinate of the point (in [0,1])
+     * @return normalized direction (or null if unknown)
+     */
+    public Vector2D getWallNormal (double x, double y) 
+    {
+        if (mCollisionTexture != null)
+            return mCollisionTexture.getWallNormal(x, y);
+        return null;
+    }
+    
     /**
      * Checks if any rigid body of this tile collides with the given rigid body.
      * @param body reference to the rigid body
@@ -165,6 +165,16 @@ public class Player extends ObjectController {
         mCamera.setCameraCenter(mPhysicalModel.getCenter(), mPhysicalModel.getLayer());
     }
 
+    /**
+     * Updates the camera position (in the level) according to the vehicle 
+     * position of the player, interpolated between the last two physics states. 
+     * @param alpha interpolation factor of the PhysicsThread
+     */
+    public void update (double alpha) 
+    {
+        mCamera.setCameraCenter(mPhysicalModel.getInterpolatedCenter(alpha), mPhysicalModel.getLayer());
+    }
+
     /**
      * Enumeration of all possible player-actions. 
      */
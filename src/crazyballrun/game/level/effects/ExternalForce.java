@@ -29,6 +29,11 @@ public class ExternalForce extends ObjectEffect {
      * Force is attached to the rigid body.
      */
     private boolean mAttached = false;
+    
+    /**
+     * Attached force-vector (removed from the rigid body again).
+     */
+    private double mAttachedX = 0.0, mAttachedY = 0.0;
 
     /**
      * Contructor of ExternalForce.
@@ -42,8 +47,7 @@ public class ExternalForce extends ObjectEffect {
      * @param vForce force-vector
      */
     public ExternalForce (int lifetime, Vector2D vForce) {
-        mLifeTime = lifetime;
-        mForce = vForce;
+        set(lifetime, vForce);
     }
 
     /**
@@ -52,8 +56,7 @@ public class ExternalForce extends ObjectEffect {
      * @param force force vector
      */
     public final void set(int lifetime, Vector2D force) {
-        mLifeTime = lifetime;
-        mForce = force;
+        set(lifetime, force.x, force.y);
     }
     
     /**
@@ -81,7 +84,9 @@ public class ExternalForce extends ObjectEffect {
     {
         if (!mAttached && mLifeTime > 0)
         {
-            obj.getObjectModel().attachAcceleration(mForce);
+            mAttachedX = mForce.x;
+            mAttachedY = mForce.y;
+            obj.getObjectModel().attachAcceleration(mAttachedX, mAttachedY);
             mAttached = true;
         }
         
@@ -89,7 +94,7 @@ public class ExternalForce extends ObjectEffect {
         
         if (mAttached && mLifeTime <= 0)
         {
-            obj.getObjectModel().detachAcceleration(mForce);
+            obj.getObjectModel().detachAcceleration(mAttachedX, mAttachedY);
             mAttached = false;
         }
     }
@@ -98,6 +103,11 @@ public class ExternalForce extends ObjectEffect {
     public int getLifeTime() {
         return mLifeTime;
     }
-    
-    
+
+    @Override
+    protected void reset() {
+        mLifeTime = 0;
+        mForce.x = mForce.y = 0.0;
+        mAttached = false;
+    }
 }
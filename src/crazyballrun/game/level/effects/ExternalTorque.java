@@ -5,7 +5,6 @@
 package crazyballrun.game.level.effects;
 
 import crazyballrun.game.level.objects.LevelObject;
-import crazyballrun.game.physics.bodies.PhysicalBody;
 
 /**
  * The ExternalTorque effect applies some rotation speed uppon an object for
@@ -23,12 +22,12 @@ public class ExternalTorque extends ObjectEffect {
     /**
      * Torque applied to the object.
      */
-    private Double mTorque;
+    private double mTorque = 0.0;
     
     /**
-     * Force is attached to the rigid body.
+     * Torque is attached to the rigid body.
      */
-    private boolean mAttached = true;
+    private boolean mAttached = false;
 
     /**
      * Contructor of ExternalTorque.
@@ -40,19 +39,34 @@ public class ExternalTorque extends ObjectEffect {
     /**
      * Contructor of ExternalTorque.
      * @param lifetime lifetime of the effect
-     * @param vTorque
-     * @param obj reference of the object uppon which to apply the effect
+     * @param vTorque torque applied to the object
      */
-    public ExternalTorque (int lifetime, Double vTorque, PhysicalBody obj) 
+    public ExternalTorque (int lifetime, double vTorque) 
+    {
+        set(lifetime, vTorque);
+    }
+    
+    /**
+     * Initializes the external-torque-effect (the torque is attached to the
+     * object with the next "effect"-call).
+     * @param lifetime lifetime of the effect
+     * @param torque torque applied to the object
+     */
+    public final void set (int lifetime, double torque) 
     {
         mLifeTime = lifetime;
-        mTorque = vTorque;
-        obj.attachRotation(mTorque);
+        mTorque = torque;
     }
 
     @Override
     public void effect(LevelObject obj, int dt) 
     {
+        if (!mAttached && mLifeTime > 0)
+        {
+            obj.getObjectModel().attachRotation(mTorque);
+            mAttached = true;
+        }
+        
         mLifeTime -= dt;
         if (mAttached && mLifeTime <= 0)
         {
@@ -66,5 +80,12 @@ public class ExternalTorque extends ObjectEffect {
     {
         return mLifeTime;
     }    
-    
+
+    @Override
+    protected void reset() 
+    {
+        mLifeTime = 0;
+        mTorque = 0.0;
+        mAttached = false;
+    }
 }
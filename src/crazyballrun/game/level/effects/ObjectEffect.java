@@ -14,6 +14,12 @@ import crazyballrun.game.level.objects.LevelObject;
  */
 public abstract class ObjectEffect {
 
+    /**
+     * "true" if the effect has been obtained from the ObjectEffectPool (it is
+     * returned to the pool when its lifetime is over).
+     */
+    private boolean mPooled = false;
+
     /**
      * Performs an effect uppon the object.
      * @param obj reference to the affecting object
@@ -27,5 +33,25 @@ public abstract class ObjectEffect {
      */
     public abstract int getLifeTime();
     
+    /**
+     * Resets the effect before it is reused by the ObjectEffectPool. The 
+     * effect must not be attached to a rigid body anymore.
+     */
+    protected abstract void reset();
+    
+    /**
+     * Checks if the effect has been obtained from the ObjectEffectPool.
+     * @return "true" for pooled effects
+     */
+    public final boolean isPooled () {
+        return mPooled;
+    }
     
+    /**
+     * Marks the effect as pooled (see "isPooled").
+     * @param pooled "true" for pooled effects
+     */
+    final void setPooled (boolean pooled) {
+        mPooled = pooled;
+    }
 }
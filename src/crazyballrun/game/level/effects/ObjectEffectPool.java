@@ -0,0 +1,106 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package crazyballrun.game.level.effects;
+
+import crazyballrun.game.GameConstants;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+
+/**
+ * The ObjectEffectPool keeps unused ObjectEffect-instances for reuse, so 
+ * effects created during the game (e.g. on each rocket hit) don't generate 
+ * garbage. Pooled effects are returned by LevelObject when their lifetime is
+ * over. Effects owned by an object (e.g. the counter force of SimpleCar) are
+ * created with the ObjectEffectFactory and are never pooled. The 
+ * ObjectEffectPool has a "getInstance"-method (singleton pattern).
+ * 
+ * @author Timm Hoffmeister
+ */
+public class ObjectEffectPool {
+    
+    /**
+     * Reference to the ObjectEffectPool.
+     */
+    private static ObjectEffectPool sInstance = null;
+    
+    /**
+     * Unused effects by their type (see ObjectEffectFactory).
+     */
+    private HashMap<String, ArrayDeque<ObjectEffect>> mFree = new HashMap<String, ArrayDeque<ObjectEffect>>();
+    
+    /**
+     * Number of effects created because the pool was empty.
+     */
+    private int mCreated = 0;
+    
+    /**
+     * Access method for the ObjectEffectPool (singleton-implementation).
+     * @return the only existing instance of ObjectEffectPool.
+     */
+    public static synchronized ObjectEffectPool getInstance () {
+        if (sInstance == null)
+            sInstance = new ObjectEffectPool();
+        return sInstance;
+    }
+    
+    /**
+     * Private constructor of ObjectEffectPool.
+     */
+    private ObjectEffectPool () {
+        
+    }
+    
+    /**
+     * Gets an unused effect of a particular type (a new one is created if 
+     * there's none). The effect has to be initialized by its "set"-method. 
+     * @param type type of effect (see ObjectEffectFactory)
+     * @return reference to the ObjectEffect (null for unknown types)
+     */
+    public synchronized ObjectEffect obtain (String type) {
+        ArrayDeque<ObjectEffect> vFree = mFree.get(type);
+        if (vFree != null && !vFree.isEmpty())
+            return vFree.pop();
+        
+        ObjectEffect vEffect = ObjectEffectFactory.create(type);
+        if (vEffect != null)
+        {
+            vEffect.setPooled(true);
+            mCreated++;
+        }
+        return vEffect;
+    }
+    
+    /**
+     * Returns a pooled effect whose lifetime is over. The effect is reset and
+     * kept for reuse (at most GameConstants.EFFECT_POOL_SIZE effects of each
+     * type). Effects which haven't been obtained from the pool are ignored.
+     * @param fx reference to the effect
+     */
+    public synchronized void release (ObjectEffect fx) {
+        if (!fx.isPooled())
+            return;
+        
+        String vType = fx.getClass().getSimpleName();
+        ArrayDeque<ObjectEffect> vFree = mFree.get(vType);
+        if (vFree == null)
+        {
+            vFree = new ArrayDeque<ObjectEffect>();
+            mFree.put(vType, vFree);
+        }
+        if (vFree.size() < GameConstants.EFFECT_POOL_SIZE)
+        {
+            fx.reset();
+            vFree.push(fx);
+        }
+    }
+    
+    /**
+     * Gets the number of effects created by the pool so far.
+     * @return number of created effects
+     */
+    public synchronized int getCreated () {
+        return mCreated;
+    }
+}
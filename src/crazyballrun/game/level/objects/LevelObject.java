@@ -5,6 +5,7 @@
 package crazyballrun.game.level.objects;
 
 import crazyballrun.game.level.effects.ObjectEffect;
+import crazyballrun.game.level.effects.ObjectEffectPool;
 import crazyballrun.game.level.controllers.ObjectController;
 import crazyballrun.game.graphics.Animation;
 import crazyballrun.game.level.Level;
@@ -70,6 +71,11 @@ public abstract class LevelObject {
      */
     private String mObjectType = null;
     
+    /**
+     * Unique id of the object in its level (0 if not added to a level yet).
+     */
+    private long mId = 0;
+    
     /**
      * Current state of the object. Do not change the state of the object in
      * subclasses (just if you really know what you're doing, which is probably
@@ -113,6 +119,38 @@ public abstract class LevelObject {
         {
             mAttachedEffects.add(fx);
         }
+        if (mObjectModel != null)
+            mObjectModel.wakeUp();
+    }
+    
+    /**
+     * Checks if there are effects attached to the object.
+     * @return "true" if at least one effect is attached
+     */
+    public final boolean hasEffects () {
+        synchronized(mLockEffects)
+        {
+            return !mAttachedEffects.isEmpty();
+        }
+    }
+    
+    /**
+     * Sets the id of the object (assigned by the ObjectRegistry of the level).
+     * @param id unique id
+     */
+    public final void setId (long id)
+    {
+        mId = id;
+    }
+    
+    /**
+     * Gets the id of the object. Objects added later to a level have higher 
+     * ids, the PhysicsThread processes the objects in the order of their ids.
+     * @return unique id (0 if not added to a level yet)
+     */
+    public final long getId ()
+    {
+        return mId;
     }
     
     /**
@@ -197,6 +235,8 @@ public abstract class LevelObject {
                 if (vEffect.getLifeTime() <= 0)
                 {
                     vIter.remove();
+                    if (vEffect.isPooled())
+                        ObjectEffectPool.getInstance().release(vEffect);
                 }
             }
         }
@@ -217,8 +257,11 @@ public abstract class LevelObject {
         // destroy object
         if (mState == ObjectState.DIEING)
         {
-            mLevelTile.delRigidBody(this);
-            mLevelTile.delAnimation(vAnimation);
+            if (mLevelTile != null)
+            {
+                mLevelTile.delRigidBody(this);
+                mLevelTile.delAnimation(vAnimation);
+            }
             return;
         }
         
@@ -247,6 +290,7 @@ public abstract class LevelObject {
         // updates painting position/layer/rotation
         vAnimation.setPosition(mObjectModel.getPosition());
         vAnimation.setRotation(mObjectModel.getRotation());
+        vAnimation.setPreviousState(mObjectModel.getPreviousPosition(), mObjectModel.getPreviousRotation());
         
         // move object to fitting Tile
         Tile vLevelTile = mLevel.getTile(mObjectModel.getCenter(), mObjectModel.getLayer());
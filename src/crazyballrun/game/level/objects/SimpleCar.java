@@ -9,7 +9,6 @@ import crazyballrun.game.graphics.Animation;
 import crazyballrun.game.graphics.GraphicsEngine;
 import crazyballrun.game.level.effects.ExternalForce;
 import crazyballrun.game.physics.bodies.PhysicalBody;
-import crazyballrun.game.utilities.Vector2D;
 
 /**
  * SimpleCar is a LevelObject-implementation of a simple car (like the name says). 
@@ -113,11 +112,12 @@ public class SimpleCar extends LevelObject {
         {
             if (!mCounterForce.isAttached())
             {
-                Vector2D vCounterForce = new Vector2D (mObjectModel.getVelocity());
-                if (vCounterForce.length() > 0.001)
+                double vX = mObjectModel.getVelocityX();
+                double vY = mObjectModel.getVelocityY();
+                double vLength = Math.sqrt(vX * vX + vY * vY);
+                if (vLength > 0.001)
                 {
-                    vCounterForce.normalize();
-                    mCounterForce.set(100, vCounterForce);
+                    mCounterForce.set(100, vX / vLength, vY / vLength);
                     obj.attachEffect(mCounterForce);
                 }
             }
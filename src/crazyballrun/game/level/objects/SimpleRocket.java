@@ -12,6 +12,7 @@ import crazyballrun.game.level.Statistics;
 import crazyballrun.game.level.Tile;
 import crazyballrun.game.level.controllers.Player;
 import crazyballrun.game.level.effects.ExternalTorque;
+import crazyballrun.game.level.effects.ObjectEffectPool;
 
 /**
  * The SimpleRocket is an easy implementation of LevelObject that produces a 
@@ -157,7 +158,9 @@ public class SimpleRocket extends LevelObject {
 
         // apply rocket-effect to the object
         obj.getObjectModel().setVelocity(0, 0);
-        obj.attachEffect(new ExternalTorque(2000, 15.0, obj.mObjectModel));
+        ExternalTorque vTorque = (ExternalTorque) ObjectEffectPool.getInstance().obtain("ExternalTorque");
+        vTorque.set(2000, 15.0);
+        obj.attachEffect(vTorque);
         
         // update statistics
         if (obj.getController() instanceof Player)
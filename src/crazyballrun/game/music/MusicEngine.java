@@ -76,6 +76,10 @@ public class MusicEngine {
     public void initialize () {
         try
         {
+            // Create the music threads (started by "start")
+            mMusicThread = new MusicThread();
+            mSoundEffectThread = new SoundThread();
+            
             // load all music files in the resources/sounds folder
             File folder = new File(GameConstants.SOUND_RESOURCE_PATH);
             String vFilePath = null;
@@ -88,10 +92,6 @@ public class MusicEngine {
                     mSongFiles.put(file.getName(), vFilePath);
                 }
             }
-
-            // Create and start the music thread
-            mMusicThread = new MusicThread();
-            mSoundEffectThread = new SoundThread();
         } 
         catch (Exception e) 
         {
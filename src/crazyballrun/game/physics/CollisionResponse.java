@@ -0,0 +1,82 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package crazyballrun.game.physics;
+
+import crazyballrun.game.GameConstants;
+import crazyballrun.game.physics.bodies.PhysicalBody;
+
+/**
+ * The CollisionResponse separates colliding bodies by impulses. The velocity
+ * along the contact normal is changed due to the masses and the restitution of
+ * the bodies, tangential velocities are kept. Additionally, the bodies are
+ * moved apart by the penetration depth (positional correction), so they do not
+ * collide again in the next timestep.
+ *
+ * @author Timm Hoffmeister
+ */
+public class CollisionResponse {
+
+    /**
+     * Constructor of CollisionResponse (not used, all methods are static).
+     */
+    private CollisionResponse ()
+    {
+
+    }
+
+    /**
+     * Resolves the collision of two bodies. The contact normal has to point
+     * from the first to the second body. If both bodies are immovable (mass
+     * "0"), nothing is done.
+     * @param a first body
+     * @param b second body
+     * @param contact contact of both bodies
+     */
+    public static void resolve (PhysicalBody a, PhysicalBody b, Contact contact)
+    {
+        double wa = a.getInverseMass();
+        double wb = b.getInverseMass();
+        double w = wa + wb;
+        if (w <= 0.0)
+            return;
+
+        // relative velocity along the normal (negative if approaching)
+        double vn = (b.getVelocityX() - a.getVelocityX()) * contact.nx
+                  + (b.getVelocityY() - a.getVelocityY()) * contact.ny;
+        if (vn < 0.0)
+        {
+            double e = Math.max(a.getRestitution(), b.getRestitution());
+            double j = -(1.0 + e) * vn / w;
+            a.applyImpulse(-j * contact.nx, -j * contact.ny);
+            b.applyImpulse(j * contact.nx, j * contact.ny);
+        }
+
+        // positional correction (split due to the masses)
+        double vCorrection = (contact.depth + GameConstants.CONTACT_SEPARATION) / w;
+        a.applyOffset(-vCorrection * wa * contact.nx, -vCorrection * wa * contact.ny);
+        b.applyOffset(vCorrection * wb * contact.nx, vCorrection * wb * contact.ny);
+    }
+
+    /**
+     * Resolves the collision of a body with a wall. The wall is immovable,
+     * consequently the mass of the body doesn't matter. The contact normal
+     * has to point away from the wall.
+     * @param body colliding body
+     * @param contact contact of body and wall
+     */
+    public static void resolveWall (PhysicalBody body, Contact contact)
+    {
+        // velocity along the normal (negative if moving into the wall)
+        double vn = body.getVelocityX() * contact.nx + body.getVelocityY() * contact.ny;
+        if (vn < 0.0)
+        {
+            double dv = -(1.0 + body.getRestitution()) * vn;
+            body.setVelocity(body.getVelocityX() + dv * contact.nx, body.getVelocityY() + dv * contact.ny);
+        }
+
+        double vCorrection = contact.depth + GameConstants.CONTACT_SEPARATION;
+        body.applyOffset(vCorrection * contact.nx, vCorrection * contact.ny);
+    }
+}
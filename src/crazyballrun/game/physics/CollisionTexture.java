@@ -7,7 +7,9 @@ package crazyballrun.game.physics;
 import crazyballrun.game.utilities.Vector2D;
 import java.awt.Color;
 import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
 import java.util.HashMap;
+import java.util.zip.CRC32;
 
 /**
  * The CollisionMap represents the collision data of a texture. 
@@ -113,15 +115,48 @@ public class CollisionTexture {
         }
     }
     
+    /**
+     * All ground properties indexed by their ordinal. 
+     */
+    private static final GroundProperty [] sGroundProperties = GroundProperty.values();
+    
     /**
      * Maps RGB-Color-Values to GroundProperties. 
      */
     private HashMap<Integer, GroundProperty> mCollisionColorMap = null;
         
     /**
-     * Image containing the collision data of the texture. 
+     * Ordinal of the ground property of each pixel of the collision texture
+     * (row by row). 
+     */
+    private byte [] mGround = null;
+    
+    /**
+     * Width of the collision texture in pixels.
      */
-    private BufferedImage mCollisionTexture = null;
+    private int mWidth = 0;
+    
+    /**
+     * Height of the collision texture in pixels.
+     */
+    private int mHeight = 0;
+    
+    /**
+     * Signed distance of each pixel (row by row) to the nearest WALL pixel in 
+     * pixels. Positive outside of walls, negative inside of walls.
+     */
+    private float [] mDistance = null;
+    
+    /**
+     * Size of one pixel in texture-measurement (the smaller one if the pixels
+     * are not square, so that distances are never overestimated).
+     */
+    private double mPixelSize = 0.0;
+    
+    /**
+     * CRC32 of the baked ground properties and the size of the texture.
+     */
+    private long mContentHash = 0;
         
     /**
      * Constructor of CollisionMap. Creates the color-ground-mapping.
@@ -139,41 +174,146 @@ public class CollisionTexture {
     }
 
     /**
-     * Compares two color-values. 
-     * @param c1 first color
-     * @param c2 second color
-     * @return "true" if the colors are equal
+     * Constructor of CollisionMap. Creates the color-ground-mapping and bakes
+     * the collision texture image. 
+     * @param image BufferedImage representing the collision data
      */
-    private boolean equalColor (Color c1, Color c2)
-    {
-        return (c1.getRed() == c2.getRed() &&
-                c1.getGreen() == c2.getGreen() &&
-                c1.getBlue() == c2.getBlue());
+    public CollisionTexture (BufferedImage image) {
+        this();
+        setCollisionTexture(image);
     }
-    
+
     /**
-     * Sets the collision texture image for the collision map.
+     * Sets the collision texture image for the collision map. The image is 
+     * baked into one ground property per pixel, unknown colors are treated 
+     * like black (DEFAULT). The image itself is not referenced afterwards. 
+     * A collision texture is baked once only, because it may be shared by 
+     * several tiles (see CollisionTextureCache). 
      * @param image BufferedImage representing the collision data
      */
-    public void setCollisionTexture (BufferedImage image) {
-        mCollisionTexture = image;
-        for (int x = 0; x < image.getWidth(); x++) {
-            for (int y = 0; y < image.getHeight(); y++) {
-                int vColorRGB = image.getRGB(x,y);
-                Color vColor = new Color(vColorRGB, true);
-                if (!equalColor(vColor, Color.BLACK) &&
-                    !equalColor(vColor, Color.RED) && 
-                    !equalColor(vColor, Color.GREEN) &&
-                    !equalColor(vColor, Color.GRAY) &&
-                    !equalColor(vColor, Color.WHITE) &&
-                    !equalColor(vColor, Color.BLUE) &&
-                    !equalColor(vColor, Color.YELLOW) &&
-                    !equalColor(vColor, Color.PINK))
-                {
-                    mCollisionTexture.setRGB(x, y, Color.BLACK.getRGB());
-                }
+    public final void setCollisionTexture (BufferedImage image) {
+        if (mGround != null)
+            throw new IllegalStateException("The collision texture has been baked already.");
+        
+        mWidth = image.getWidth();
+        mHeight = image.getHeight();
+        mGround = new byte[mWidth * mHeight];
+        
+        int [] vRow = new int[mWidth];
+        for (int y = 0; y < mHeight; y++) {
+            image.getRGB(0, y, mWidth, 1, vRow, 0, mWidth);
+            for (int x = 0; x < mWidth; x++) {
+                GroundProperty vGround = mCollisionColorMap.get(vRow[x] | 0xFF000000);
+                if (vGround == null)
+                    vGround = GroundProperty.DEFAULT;
+                mGround[y * mWidth + x] = (byte) vGround.ordinal();
             }
         }
+        
+        mPixelSize = 1.0 / Math.max(mWidth, mHeight);
+        bakeDistanceField();
+        
+        CRC32 vCrc = new CRC32();
+        vCrc.update(mGround);
+        vCrc.update(ByteBuffer.allocate(8).putInt(mWidth).putInt(mHeight).array());
+        mContentHash = vCrc.getValue();
+    }
+    
+    /**
+     * Bakes the signed distance field of the collision texture. The exact 
+     * euclidean distance transform (Felzenszwalb and Huttenlocher) is applied
+     * twice: once for the distance of free pixels to the nearest wall pixel 
+     * and once for the distance of wall pixels to the nearest free pixel. Half 
+     * a pixel is subtracted from both, so the value approximates the distance 
+     * to the border of the wall and the sign tells if a pixel is a wall. 
+     */
+    private void bakeDistanceField () {
+        int vSize = mWidth * mHeight;
+        double [] vOutside = new double[vSize];
+        double [] vInside = new double[vSize];
+        byte vWall = (byte) GroundProperty.WALL.ordinal();
+        
+        for (int i = 0; i < vSize; i++) {
+            boolean wall = mGround[i] == vWall;
+            vOutside[i] = wall ? 0.0 : sInfinity;
+            vInside[i] = wall ? sInfinity : 0.0;
+        }
+        distanceTransform(vOutside, mWidth, mHeight);
+        distanceTransform(vInside, mWidth, mHeight);
+
+        mDistance = new float[vSize];
+        for (int i = 0; i < vSize; i++) {
+            if (mGround[i] == vWall)
+                mDistance[i] = (float) -(Math.sqrt(vInside[i]) - 0.5);
+            else
+                mDistance[i] = (float) (Math.sqrt(vOutside[i]) - 0.5);
+        }
+    }
+    
+    /**
+     * Squared distance used for pixels without any feature pixel. 
+     */
+    private static final double sInfinity = 1e20;
+    
+    /**
+     * Transforms a 2D-grid of "0 (feature) / infinity" values into squared 
+     * euclidean distances to the nearest feature (columns first, then rows). 
+     * @param grid values row by row (input and output)
+     * @param width width of the grid
+     * @param height height of the grid
+     */
+    private static void distanceTransform (double [] grid, int width, int height) {
+        int n = Math.max(width, height);
+        double [] f = new double[n];
+        double [] d = new double[n];
+        double [] z = new double[n + 1];
+        int [] v = new int[n];
+        
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++)
+                f[y] = grid[y * width + x];
+            distanceTransform(f, height, d, v, z);
+            for (int y = 0; y < height; y++)
+                grid[y * width + x] = d[y];
+        }
+        for (int y = 0; y < height; y++) {
+            System.arraycopy(grid, y * width, f, 0, width);
+            distanceTransform(f, width, d, v, z);
+            System.arraycopy(d, 0, grid, y * width, width);
+        }
+    }
+    
+    /**
+     * One-dimensional squared distance transform by the lower envelope of 
+     * parabolas.
+     * @param f sampled function (input)
+     * @param n number of samples
+     * @param d squared distances (output)
+     * @param v locations of the parabolas of the envelope (work array)
+     * @param z boundaries between the parabolas (work array)
+     */
+    private static void distanceTransform (double [] f, int n, double [] d, int [] v, double [] z) {
+        int k = 0;
+        v[0] = 0;
+        z[0] = Double.NEGATIVE_INFINITY;
+        z[1] = Double.POSITIVE_INFINITY;
+        for (int q = 1; q < n; q++) {
+            double s = ((f[q] + q * q) - (f[v[k]] + v[k] * v[k])) / (2 * q - 2 * v[k]);
+            while (s <= z[k]) {
+                k--;
+                s = ((f[q] + q * q) - (f[v[k]] + v[k] * v[k])) / (2 * q - 2 * v[k]);
+            }
+            k++;
+            v[k] = q;
+            z[k] = s;
+            z[k + 1] = Double.POSITIVE_INFINITY;
+        }
+        k = 0;
+        for (int q = 0; q < n; q++) {
+            while (z[k + 1] < q)
+                k++;
+            d[q] = (q - v[k]) * (q - v[k]) + f[v[k]];
+        }
     }
     
     /**
@@ -182,8 +322,91 @@ public class CollisionTexture {
      * @return the ground property of the texture at the specified point. 
      */ 
     public GroundProperty getGroundProperty (Vector2D point) {
-        return mCollisionColorMap.get(mCollisionTexture.getRGB((int)(point.x * mCollisionTexture.getWidth()), 
-                                                               (int)(point.y * mCollisionTexture.getHeight())));
+        return getGroundProperty(point.x, point.y);
+    }
+    
+    /**
+     * Gets the ground property of a particular point on the texture.
+     * @param x x-coordinate of the point on the texture (in [0,1])
+     * @param y y-coordinate of the point on the texture (in [0,1])
+     * @return the ground property of the texture at the specified point. 
+     */ 
+    public GroundProperty getGroundProperty (double x, double y) {
+        return sGroundProperties[mGround[(int)(y * mHeight) * mWidth + (int)(x * mWidth)]];
+    }
+    
+    /**
+     * Gets the signed distance of a particular point on the texture to the 
+     * nearest wall (negative inside of walls). The distance refers to the 
+     * pixel containing the point, i.e. it may be off by the size of one pixel. 
+     * Walls of neighbour tiles are not considered. 
+     * @param x x-coordinate of the point on the texture (in [0,1])
+     * @param y y-coordinate of the point on the texture (in [0,1])
+     * @return signed distance to the nearest wall in texture-measurement
+     */
+    public double getWallDistance (double x, double y) {
+        return mDistance[(int)(y * mHeight) * mWidth + (int)(x * mWidth)] * mPixelSize;
+    }
+    
+    /**
+     * Gets the direction pointing away from the nearest wall at a particular 
+     * point on the texture (gradient of the distance field).
+     * @param x x-coordinate of the point on the texture (in [0,1])
+     * @param y y-coordinate of the point on the texture (in [0,1])
+     * @return normalized direction or null if there's no gradient
+     */
+    public Vector2D getWallNormal (double x, double y) {
+        int px = (int)(x * mWidth);
+        int py = (int)(y * mHeight);
+        int x0 = Math.max(px - 1, 0);
+        int x1 = Math.min(px + 1, mWidth - 1);
+        int y0 = Math.max(py - 1, 0);
+        int y1 = Math.min(py + 1, mHeight - 1);
+        
+        Vector2D vNormal = new Vector2D(
+                mDistance[py * mWidth + x1] - mDistance[py * mWidth + x0],
+                mDistance[y1 * mWidth + px] - mDistance[y0 * mWidth + px]);
+        if (vNormal.length() == 0.0)
+            return null;
+        vNormal.normalize();
+        return vNormal;
+    }
+    
+    /**
+     * Gets the memory used by the baked collision data (ground properties and 
+     * distance field).
+     * @return memory usage in bytes
+     */
+    public long getMemoryUsage () {
+        long vMemory = mGround != null ? mGround.length : 0;
+        if (mDistance != null)
+            vMemory += 4L * mDistance.length;
+        return vMemory;
+    }
+    
+    /**
+     * Gets the width of the collision texture.
+     * @return width in pixels
+     */
+    public int getWidth () {
+        return mWidth;
+    }
+    
+    /**
+     * Gets the height of the collision texture.
+     * @return height in pixels
+     */
+    public int getHeight () {
+        return mHeight;
+    }
+    
+    /**
+     * Gets a hash of the baked ground properties. Data derived from the 
+     * collision texture (e.g. cached quadtrees) is stale if the hash changes.
+     * @return CRC32 of the ground properties and the size
+     */
+    public long getContentHash () {
+        return mContentHash;
     }
     
 }
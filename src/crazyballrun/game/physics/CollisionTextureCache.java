@@ -0,0 +1,151 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package crazyballrun.game.physics;
+
+import crazyballrun.game.graphics.GraphicsEngine;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+
+/**
+ * The CollisionTextureCache shares baked collision textures between all tiles
+ * using the same collision image. Each image is baked once only (by its 
+ * filename). Afterwards the image is released from the GraphicsEngine, because 
+ * the collision data is just accessed through the baked CollisionTexture. 
+ * 
+ * @author Timm Hoffmeister
+ */
+public class CollisionTextureCache {
+    
+    /**
+     * Reference to the CollisionTextureCache.
+     */
+    private static CollisionTextureCache sInstance = null;
+    
+    /**
+     * Baked collision textures by their filename.
+     */
+    private HashMap<String, CollisionTexture> mTextures = null;
+    
+    /**
+     * Number of requests answered by an already baked texture.
+     */
+    private int mHits = 0;
+    
+    /**
+     * Number of requests which required baking a texture.
+     */
+    private int mMisses = 0;
+    
+    /**
+     * Memory of the released images (in bytes, estimated as 4 bytes per pixel).
+     */
+    private long mReleasedMemory = 0;
+    
+    /**
+     * Access method for the CollisionTextureCache (singleton-implementation).
+     * @return the only existing instance of CollisionTextureCache.
+     */
+    public static synchronized CollisionTextureCache getInstance () {
+        if (sInstance == null)
+            sInstance = new CollisionTextureCache();
+        return sInstance;
+    }
+    
+    /**
+     * Private constructor of CollisionTextureCache.
+     */
+    private CollisionTextureCache () {
+        mTextures = new HashMap<String, CollisionTexture>();
+    }
+    
+    /**
+     * Gets the baked collision texture of a collision image. The image is 
+     * loaded through the GraphicsEngine (local level folder first) and baked
+     * if it is requested the first time. 
+     * @param filename filename of the collision image
+     * @param levelname level name
+     * @return shared collision texture or null if the image does not exist
+     */
+    public synchronized CollisionTexture get (String filename, String levelname) {
+        CollisionTexture vTexture = mTextures.get(filename);
+        if (vTexture != null)
+        {
+            mHits++;
+            return vTexture;
+        }
+        
+        BufferedImage vImage = GraphicsEngine.getInstance().getTexture(filename, levelname);
+        if (vImage == null)
+            return null;
+        
+        mMisses++;
+        vTexture = new CollisionTexture(vImage);
+        mTextures.put(filename, vTexture);
+        
+        // the image is not needed anymore
+        GraphicsEngine.getInstance().releaseTexture(filename);
+        mReleasedMemory += 4L * vImage.getWidth() * vImage.getHeight();
+        return vTexture;
+    }
+    
+    /**
+     * Removes all baked textures from the cache.
+     */
+    public synchronized void clear () {
+        mTextures.clear();
+    }
+    
+    /**
+     * Gets the number of baked textures.
+     * @return number of textures in the cache
+     */
+    public synchronized int getTextureCount () {
+        return mTextures.size();
+    }
+    
+    /**
+     * Gets the number of requests answered by an already baked texture.
+     * @return number of cache hits
+     */
+    public synchronized int getHits () {
+        return mHits;
+    }
+    
+    /**
+     * Gets the number of requests which required baking a texture.
+     * @return number of cache misses
+     */
+    public synchronized int getMisses () {
+        return mMisses;
+    }
+    
+    /**
+     * Gets the memory used by all baked textures.
+     * @return memory usage in bytes
+     */
+    public synchronized long getMemoryUsage () {
+        long vMemory = 0;
+        for (CollisionTexture vTexture : mTextures.values())
+            vMemory += vTexture.getMemoryUsage();
+        return vMemory;
+    }
+    
+    /**
+     * Gets the memory of all images released after baking (estimated as 4 bytes
+     * per pixel).
+     * @return released memory in bytes
+     */
+    public synchronized long getReleasedMemory () {
+        return mReleasedMemory;
+    }
+    
+    @Override
+    public synchronized String toString () {
+        return "CollisionTextureCache: " + getTextureCount() + " textures, " + 
+               mHits + " hits, " + mMisses + " misses, " + 
+               (getMemoryUsage() / 1024) + " KB baked, " + 
+               (mReleasedMemory / 1024) + " KB images released";
+    }
+}
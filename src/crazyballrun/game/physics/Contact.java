@@ -0,0 +1,58 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package crazyballrun.game.physics;
+
+/**
+ * The Contact describes the touching of two bodies (or of a body and a wall):
+ * contact point, contact normal and penetration depth. The normal points from
+ * the first body to the second one, for wall contacts it points away from the
+ * wall. All values are in texture-coordinates. A Contact is filled by
+ * "PhysicalBody.getContact" or "PhysicalBody.getWallContact" and used by the
+ * CollisionResponse.
+ *
+ * @author Timm Hoffmeister
+ */
+public class Contact {
+
+    /**
+     * contact point (x, y)
+     */
+    public double x, y;
+
+    /**
+     * normalized contact normal (x, y)
+     */
+    public double nx, ny;
+
+    /**
+     * penetration depth along the normal
+     */
+    public double depth;
+
+    /**
+     * Constructor of Contact.
+     */
+    public Contact ()
+    {
+
+    }
+
+    /**
+     * Sets all values of the contact.
+     * @param x x-coordinate of the contact point
+     * @param y y-coordinate of the contact point
+     * @param nx x-coordinate of the normalized contact normal
+     * @param ny y-coordinate of the normalized contact normal
+     * @param depth penetration depth
+     */
+    public void set (double x, double y, double nx, double ny, double depth)
+    {
+        this.x = x;
+        this.y = y;
+        this.nx = nx;
+        this.ny = ny;
+        this.depth = depth;
+    }
+}
@@ -4,7 +4,13 @@
  */
 package crazyballrun.game.physics;
 
+import crazyballrun.game.GameConstants;
+import crazyballrun.game.GameLogger;
+import crazyballrun.game.GameSettings;
 import crazyballrun.game.level.Level;
+import crazyballrun.game.physics.bodies.BodyStore;
+import crazyballrun.game.physics.broadphase.Broadphase;
+import crazyballrun.game.physics.broadphase.BroadphaseFactory;
 
 /**
  * The PhysicsEngine is responsible of creating, initializing and starting the
@@ -45,7 +51,39 @@ public class PhysicsEngine {
      * Initializes the PhysicsEngine. 
      */
     public void initialize() {
+        GameSettings vSettings = GameSettings.getInstance();
+        String  vTimestep = (String) vSettings.getValue("PhysicsTimestep");
+        Integer vStepRate = (Integer) vSettings.getValue("PhysicsStepRate");
+        Integer vMaxSteps = (Integer) vSettings.getValue("PhysicsMaxSteps");
+        mPhysicsThread.setTimestep("fixed".equals(vTimestep), 
+                vStepRate != null ? vStepRate.intValue() : GameConstants.MAX_FPS,
+                vMaxSteps != null ? vMaxSteps.intValue() : GameConstants.MAX_PHYSICS_STEPS);
         
+        String vBroadphaseType = (String) vSettings.getValue("PhysicsBroadphase");
+        if (vBroadphaseType != null)
+        {
+            Broadphase vBroadphase = BroadphaseFactory.create(vBroadphaseType);
+            if (vBroadphase != null)
+                mPhysicsThread.setBroadphase(vBroadphase);
+            else
+                GameLogger.log("Unknown broadphase: " + vBroadphaseType);
+        }
+        
+        boolean vContinuous = "true".equals(vSettings.getValue("PhysicsCCD"));
+        boolean vImpulse = "impulse".equals(vSettings.getValue("PhysicsResponse"));
+        if (vContinuous && !vImpulse)
+            GameLogger.log("Continuous collision detection requires the impulse response, it's disabled.");
+        mPhysicsThread.setContinuousCollision(vContinuous);
+        mPhysicsThread.setImpulseResponse(vImpulse);
+        mPhysicsThread.setSleeping("true".equals(vSettings.getValue("PhysicsSleep")));
+        mPhysicsThread.setDeterministic("true".equals(vSettings.getValue("PhysicsDeterministic")));
+        
+        Integer vThreads = (Integer) vSettings.getValue("PhysicsThreads");
+        mPhysicsThread.setThreads(vThreads != null ? vThreads.intValue() : 1);
+        
+        if ("shared".equals(vSettings.getValue("PhysicsBodyStore")))
+            mPhysicsThread.setBodyStore(new BodyStore(GameConstants.BODY_STORE_CAPACITY));
+        BodyStore.setBatchKernel("batch".equals(vSettings.getValue("PhysicsKernel")));
     }
 
     /**
@@ -88,6 +126,34 @@ public class PhysicsEngine {
         mPhysicsThread.doContinue();
     }
     
+    /**
+     * Gets the interpolation factor between the last two physics states, which
+     * is used for rendering moving objects. 
+     * @return interpolation factor in [0, 1]
+     */
+    public double getInterpolationAlpha() {
+        return mPhysicsThread.getInterpolationAlpha();
+    }
+    
+    /**
+     * Gets the hashes of the body states of the last timesteps (computed in 
+     * the deterministic mode only). Hashes of another simulation may be 
+     * checked by "StateHash.verify" to detect desyncs. 
+     * @return reference to the state hashes
+     */
+    public StateHash getStateHash() {
+        return mPhysicsThread.getStateHash();
+    }
+    
+    /**
+     * Performs the given number of fixed timesteps in the calling thread 
+     * (headless simulation, the PhysicsEngine must not be started). 
+     * @param steps number of timesteps
+     */
+    public void simulate(int steps) {
+        mPhysicsThread.simulate(steps);
+    }
+    
     /**
      * Sets the level-reference for the PhysicsThread. 
      * @param level reference to the level
@@ -4,45 +4,169 @@
  */
 package crazyballrun.game.physics;
 
+import crazyballrun.game.FrameProfiler;
 import crazyballrun.game.GameConstants;
 import crazyballrun.game.GameLogger;
+import crazyballrun.game.ThreadLifecycle;
 import crazyballrun.game.level.Level;
 import crazyballrun.game.level.objects.LevelObject;
-import crazyballrun.game.level.Tile;
+import crazyballrun.game.physics.bodies.BodyStore;
+import crazyballrun.game.physics.bodies.PhysicalBody;
+import crazyballrun.game.physics.broadphase.Broadphase;
+import crazyballrun.game.physics.broadphase.GridBroadphase;
 import crazyballrun.game.utilities.Vector2D;
-import java.util.Iterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * The PhysicsThread handles all kind of matters related to phyics, like collision
  * detection of objects with textures and objects with other objects. Additionally,
  * it updates speed, position and orientation of rigid (and soft) bodies.
  * 
+ * A timestep is performed in one of two orders. In the object order (default,
+ * used with a Broadphase which supports object queries like GridBroadphase)
+ * each object is moved, tested for collisions and reacts before the next 
+ * object is moved, so it collides with the objects before it at their new and
+ * with the objects after it at their old positions. In the phased order (other
+ * Broadphase-implementations, several threads, a shared BodyStore or the 
+ * deterministic mode) all 
+ * objects are moved first, then the candidate pairs of the Broadphase are 
+ * tested and the collision reactions are applied, so every object collides 
+ * with the others at their new positions. 
+ * 
  * @author Timm Hoffmeister
  */
 public class PhysicsThread extends Thread {
     
     /**
-     * If 'true' the PhysicsThread waits for a notification. Initially the 
-     * physics thread is not needed until the first level has started, consequently
-     * it's paused. 
+     * State of the PhysicsThread (running, paused, ample or stopping). 
+     * Initially the physics thread is not needed until the first level has 
+     * started, consequently it's paused. As long as the ample is active, no 
+     * object may move. 
      */
-    private boolean mIsPaused = true;
+    private final ThreadLifecycle mLifecycle = new ThreadLifecycle(this, ThreadLifecycle.State.PAUSED);
     
     /**
-     * If 'true' the PhysicsThread is running otherwise it is closed soon.
+     * Reference to the level.
      */
-    private boolean mIsRunning = true;
+    private Level mLevel = null;
     
     /**
-     * Defines the state of the ample. As long as the ample is active, no object
-     * may move. 
+     * Broadphase of the collision detection (finds candidate pairs).
      */
-    private boolean mAmpleActive = false;
+    private Broadphase mBroadphase = new GridBroadphase(GameConstants.BROADPHASE_CELL_SIZE);
     
     /**
-     * Reference to the level.
+     * Living objects of the current timestep.
      */
-    private Level mLevel = null;
+    private LevelObject [] mStepObjects = new LevelObject[0];
+    
+    /**
+     * Shared store holding the state of all bodies of the level (null if each
+     * body keeps its state in a private store). 
+     */
+    private BodyStore mBodyStore = null;
+    
+    /**
+     * First colliding object of each object of the current timestep.
+     */
+    private LevelObject [] mCollisions = new LevelObject[0];
+    
+    /**
+     * Index (in mStepObjects) of the first colliding object of each object. 
+     */
+    private int [] mCollisionIndices = new int[0];
+    
+    /**
+     * Specifies for each object if its object collision has already been 
+     * resolved together with the colliding object in the current timestep.
+     */
+    private boolean [] mResolved = new boolean[0];
+    
+    /**
+     * Specifies if collisions are resolved by impulses and positional 
+     * correction (see CollisionResponse) instead of setting back the bodies. 
+     */
+    private boolean mImpulseResponse = false;
+    
+    /**
+     * Contact of the collision which is resolved currently. 
+     */
+    private Contact mContact = new Contact();
+    
+    /**
+     * Specifies if idle bodies are put to sleep (see PhysicalBody.updateSleep).
+     */
+    private boolean mSleeping = false;
+    
+    /**
+     * Specifies if the simulation is deterministic (lockstep mode). 
+     */
+    private boolean mDeterministic = false;
+    
+    /**
+     * Number of the next timestep. 
+     */
+    private long mStep = 0;
+    
+    /**
+     * Hashes of the body states of the last timesteps (deterministic mode). 
+     */
+    private StateHash mStateHash = new StateHash();
+    
+    /**
+     * Narrowphase result of each broadphase pair in the parallel step mode 
+     * (bit 0: first object hits second, bit 1: second object hits first).
+     */
+    private byte [] mPairResults = new byte[0];
+    
+    /**
+     * Specifies if texture collisions of fast bodies are checked along their 
+     * movement (see PhysicalBody.isCollidingContinuous). 
+     */
+    private boolean mContinuousCollision = false;
+    
+    /**
+     * Worker threads of the parallel step mode (null for the serial mode).
+     */
+    private ForkJoinPool mPool = null;
+    
+    /**
+     * Number of threads of the parallel step mode. 
+     */
+    private int mThreads = 1;
+    
+    /**
+     * Timestep size in seconds of the current timestep (for the StepTasks). 
+     */
+    private double mStepDt = 0.0;
+    
+    /**
+     * Timestep size in miliseconds of the current timestep (for the StepTasks). 
+     */
+    private int mStepMillis = 0;
+    
+    /**
+     * Reference to the FrameProfiler. 
+     */
+    private FrameProfiler mProfiler = FrameProfiler.getInstance();
+    
+    /**
+     * "true" if the phases of the current timestep are profiled. 
+     */
+    private boolean mProfiling = false;
+    
+    /**
+     * Start of the current phase in nanoseconds (while profiling). 
+     */
+    private long mPhaseStart = 0;
+    
+    /**
+     * Time spent in the controllers of the objects during the current 
+     * timestep (summed over all threads, while profiling). 
+     */
+    private final AtomicLong mControlNanos = new AtomicLong();
     
     /**
      * Constructor of PhysicsThread. 
@@ -57,6 +181,7 @@ public class PhysicsThread extends Thread {
      */
     public void setLevel (Level level) {
         mLevel = level;
+        mBroadphase.setLevel(level);
     }
     
     ////////////////////////////////////////////////////////////////////////////
@@ -152,6 +277,199 @@ public class PhysicsThread extends Thread {
         mLastFrame = mCurrentFrame;
     }
     
+    ////////////////////////////////////////////////////////////////////////////
+    // Fixed timestep
+    ////////////////////////////////////////////////////////////////////////////
+    
+    /**
+     * If 'true' the physics is integrated with a fixed timestep, independent
+     * of the frame-rate of the physics and render thread. 
+     */
+    private boolean mFixedTimestep = false;
+    
+    /**
+     * Size of the fixed timestep in seconds. 
+     */
+    private double mStepSize = 1.0 / GameConstants.MAX_FPS;
+    
+    /**
+     * Size of the fixed timestep in nanoseconds.
+     */
+    private long mStepNanos = 1000000000L / GameConstants.MAX_FPS;
+    
+    /**
+     * Maximum number of fixed timesteps performed at once. 
+     */
+    private int mMaxSteps = GameConstants.MAX_PHYSICS_STEPS;
+    
+    /**
+     * Wall-clock time (nanoseconds) which has not been simulated yet. 
+     */
+    private long mAccumulator = 0;
+    
+    /**
+     * Timestamp (nanoseconds) of the last accumulation.
+     */
+    private long mLastTime = 0;
+    
+    /**
+     * Interpolation factor between the state before and after the last 
+     * timestep, which corresponds to the time not simulated yet. 
+     */
+    private volatile double mInterpolationAlpha = 1.0;
+    
+    /**
+     * Configures the timestep of the PhysicsThread. Has to be called before
+     * the thread is started. 
+     * @param fixed 'true' for a fixed timestep, 'false' for a timestep derived
+     * from the frame-rate
+     * @param rate number of fixed timesteps per second
+     * @param maxSteps maximum number of fixed timesteps performed at once
+     */
+    public void setTimestep (boolean fixed, int rate, int maxSteps)
+    {
+        mFixedTimestep = fixed;
+        mStepSize = 1.0 / (double) rate;
+        mStepNanos = 1000000000L / rate;
+        mMaxSteps = maxSteps;
+        mInterpolationAlpha = 1.0;
+    }
+    
+    /**
+     * Sets the broadphase used for object-collisions. Broadphases without 
+     * object queries (see Broadphase.hasObjectQueries) need the phased order
+     * of the timestep. Has to be called before the thread is started. 
+     * @param broadphase reference to the broadphase
+     */
+    public void setBroadphase (Broadphase broadphase)
+    {
+        mBroadphase = broadphase;
+        mBroadphase.setLevel(mLevel);
+    }
+    
+    /**
+     * Sets a shared store for the state of all bodies. The bodies are then 
+     * integrated in one loop over the store after all of them have been
+     * controlled. Has to be called before the thread is started. 
+     * @param store reference to the shared store (or null)
+     */
+    public void setBodyStore (BodyStore store)
+    {
+        mBodyStore = store;
+    }
+    
+    /**
+     * Enables or disables the continuous collision detection of fast bodies
+     * against textures. It's only used with the impulse response (see 
+     * "setImpulseResponse"), because the classic reaction sets back a body 
+     * by a whole timestep, which is wrong for the intermediate pose of a 
+     * continuous collision. Has to be called before the thread is started. 
+     * @param enabled "true" to enable continuous collision detection
+     */
+    public void setContinuousCollision (boolean enabled)
+    {
+        mContinuousCollision = enabled;
+    }
+    
+    /**
+     * Enables or disables the impulse based collision response (response=
+     * "impulse" in the game settings). By default, colliding bodies are set 
+     * back by their last movement ("PhysicalBody.collisionReaction"). Has to 
+     * be called before the thread is started. 
+     * @param enabled "true" to resolve collisions by impulses
+     */
+    public void setImpulseResponse (boolean enabled)
+    {
+        mImpulseResponse = enabled;
+    }
+    
+    /**
+     * Enables or disables sleeping of idle bodies. Sleeping bodies are skipped
+     * by integration and collision detection until they are touched or a force
+     * is applied. Has to be called before the thread is started. 
+     * @param enabled "true" to let idle bodies sleep
+     */
+    public void setSleeping (boolean enabled)
+    {
+        mSleeping = enabled;
+    }
+    
+    /**
+     * Enables or disables the deterministic (lockstep) mode. The same inputs 
+     * then give the same results on every run and every platform: the fixed
+     * timestep is used regardless of the timestep setting, the timesteps are 
+     * performed in the phased order (see class description) with the 
+     * candidate pairs sorted by the object ids and the bodies use StrictMath.
+     * After each timestep a hash of all body states is stored 
+     * (see "getStateHash"). Has to be called before the thread is started. 
+     * @param enabled "true" to enable the deterministic mode
+     */
+    public void setDeterministic (boolean enabled)
+    {
+        mDeterministic = enabled;
+        BodyStore.setStrictMath(enabled);
+    }
+    
+    /**
+     * Gets the hashes of the body states of the last timesteps. Hashes are 
+     * only computed in the deterministic mode. 
+     * @return reference to the state hashes
+     */
+    public StateHash getStateHash ()
+    {
+        return mStateHash;
+    }
+    
+    /**
+     * Performs the given number of fixed timesteps (see "setTimestep") in the
+     * calling thread, as fast as possible and without waiting for wall-clock
+     * time (e.g. for a headless simulation). A level has to be set. Must not 
+     * be used while the thread is running. 
+     * @param steps number of timesteps
+     */
+    public void simulate (int steps)
+    {
+        double dt = mStepSize;
+        int stepsize = (int) (dt * 1000.0);
+        for (int i = 0; i < steps; i++)
+            step(dt, stepsize, false);
+    }
+    
+    /**
+     * Sets the number of threads used for a timestep. With more than one 
+     * thread, the integration of the objects and the narrowphase are split 
+     * into chunks which are processed by a ForkJoinPool. Collision reactions 
+     * and object updates are always applied serially. Has to be called before 
+     * the thread is started. 
+     * @param threads number of threads (all processors if &lt;= 0)
+     */
+    public void setThreads (int threads)
+    {
+        if (threads <= 0)
+            threads = Runtime.getRuntime().availableProcessors();
+        mThreads = threads;
+        mPool = threads > 1 ? new ForkJoinPool(threads) : null;
+    }
+    
+    /**
+     * Gets the interpolation factor between the state before (0.0) and after 
+     * (1.0) the last timestep. 
+     * @return interpolation factor for rendering
+     */
+    public double getInterpolationAlpha ()
+    {
+        return mInterpolationAlpha;
+    }
+    
+    /**
+     * Resets the accumulated time (e.g. after pausing the thread).
+     */
+    private void initializeAccumulator ()
+    {
+        mAccumulator = 0;
+        mLastTime = System.nanoTime();
+    }
+    
     ////////////////////////////////////////////////////////////////////////////
     // Thread access methods
     ////////////////////////////////////////////////////////////////////////////    
@@ -159,98 +477,729 @@ public class PhysicsThread extends Thread {
     /**
      * Pauses the PhysicsThread.
      */
-    public synchronized void doPause() {
-        mIsPaused = true;
+    public void doPause() {
+        mLifecycle.pause();
     }
 
     /**
      * Finds out if the PhysicsThread is paused or not. 
      * @return if the PhysicsThread is paused or not. 
      */
-    public synchronized boolean isPaused () {
-        return mIsPaused;
+    public boolean isPaused () {
+        return mLifecycle.isPaused();
     }
 
     /**
      * Continues the PhysicsThread after pausing. 
      */
-    public synchronized void doContinue() {
-        mIsPaused = false;
-        this.notify();
+    public void doContinue() {
+        mLifecycle.resume();
     }
 
     /**
      * Exits the PhysicsThread. 
      */
-    public synchronized void doExit() {
-        mIsRunning = false;
+    public void doExit() {
+        mLifecycle.stop();
     }
     
     /**
      * Finds out if the PhysicsThread is still running.
      * @return if the PhysicsThread is still runnning or not. 
      */
-    public synchronized boolean isRunning () {
-        return mIsRunning;
+    public boolean isRunning () {
+        return mLifecycle.isRunning();
     }
     
     /**
-     * Activates or deactivates the ample mode. 
+     * Activates or deactivates the ample mode (has no effect while the thread
+     * is paused). 
      * @param state state of the ample
      */
-    public synchronized void setAmple (boolean state)
+    public void setAmple (boolean state)
     {
-        mAmpleActive = state;
+        mLifecycle.setAmple(state);
     }
-
+        
+    /**
+     * Makes sure the per-timestep arrays can hold the given number of objects.
+     * @param count number of objects
+     */
+    private void ensureCapacity (int count)
+    {
+        if (mStepObjects.length < count)
+        {
+            int vSize = Math.max(count, mStepObjects.length * 2);
+            mStepObjects = new LevelObject[vSize];
+            mCollisions = new LevelObject[vSize];
+            mCollisionIndices = new int[vSize];
+            mResolved = new boolean[vSize];
+        }
+    }
+    
     /**
-     * Gets the state of the ample
-     * @return ample state
+     * Checks if the timestep is performed in the object order (see class 
+     * description). 
+     * @return 'true' for the object order, 'false' for the phased order
      */
-    private synchronized boolean getAmple ()
+    private boolean isObjectOrder ()
     {
-        return mAmpleActive;
+        return mBroadphase.hasObjectQueries() && mPool == null && mBodyStore == null && !mDeterministic;
     }
+    
+    /**
+     * Phases of a timestep which may be split across several threads.
+     */
+    private enum Phase {
+        /**
+         * control and integration of objects (see integrateObjects)
+         */
+        INTEGRATE, 
+        /**
+         * integration of slots of the shared body store
+         */
+        INTEGRATE_STORE, 
+        /**
+         * collision data update of objects
+         */
+        UPDATE_DATA, 
+        /**
+         * narrowphase of broadphase pairs (see narrowphase)
+         */
+        NARROWPHASE
+    };
+    
+    /**
+     * The StepTask processes a range of objects (or pairs) in one phase of the
+     * timestep. Ranges larger than the chunk size are split in halves. 
+     */
+    private class StepTask extends RecursiveAction {
+        
+        /**
+         * Serialization version of the task.
+         */
+        private static final long serialVersionUID = 1L;
+        
+        /**
+         * Phase of the timestep. 
+         */
+        private final Phase mPhase;
         
+        /**
+         * First index of the range.
+         */
+        private final int mFrom;
+        
+        /**
+         * Index after the last index of the range.
+         */
+        private final int mTo;
+        
+        /**
+         * Minimal number of indices of a task which may be split. 
+         */
+        private final int mChunk;
+        
+        /**
+         * Constructor of StepTask.
+         * @param phase phase of the timestep
+         * @param from first index of the range
+         * @param to index after the last index of the range
+         * @param chunk minimal number of indices of a task which may be split
+         */
+        StepTask (Phase phase, int from, int to, int chunk)
+        {
+            mPhase = phase;
+            mFrom = from;
+            mTo = to;
+            mChunk = chunk;
+        }
+        
+        @Override
+        protected void compute ()
+        {
+            if (mTo - mFrom > mChunk)
+            {
+                int vMiddle = (mFrom + mTo) >>> 1;
+                invokeAll(new StepTask(mPhase, mFrom, vMiddle, mChunk), 
+                          new StepTask(mPhase, vMiddle, mTo, mChunk));
+                return;
+            }
+            runRange(mPhase, mFrom, mTo);
+        }
+    }
+    
     /**
-     * Checks for collision of the object with another object in the level. The
-     * method checks each tile around the tile the object is placed on (also one
-     * layer above and under the object, if there's a layer-transition).
-     * @param obj reference to the object
-     * @return reference to the colliding object
+     * Processes a range of objects (or pairs) in one phase of the timestep.
+     * @param phase phase of the timestep
+     * @param from first index of the range
+     * @param to index after the last index of the range
      */
-    private LevelObject collisionWithObject (LevelObject obj) 
+    private void runRange (Phase phase, int from, int to)
     {
-        Vector2D vPosition = obj.getObjectModel().getCenter();
-        int vLayer = obj.getObjectModel().getLayer();
+        switch (phase)
+        {
+            case INTEGRATE:
+                integrateObjects(from, to, mStepDt, mStepMillis);
+                break;
+            case INTEGRATE_STORE:
+                mBodyStore.integrate(mStepDt, from, to);
+                break;
+            case UPDATE_DATA:
+                for (int i = from; i < to; i++)
+                    mStepObjects[i].getObjectModel().updateData();
+                break;
+            case NARROWPHASE:
+                narrowphase(from, to);
+                break;
+        }
+    }
+    
+    /**
+     * Runs one phase of the timestep: on the ForkJoinPool in the parallel 
+     * mode, otherwise on the calling thread. 
+     * @param phase phase of the timestep
+     * @param count number of objects (or pairs)
+     */
+    private void runPhase (Phase phase, int count)
+    {
+        int vChunk = Math.max(GameConstants.PHYSICS_MIN_CHUNK, count / (4 * mThreads));
+        if (mPool != null && count > vChunk)
+            mPool.invoke(new StepTask(phase, 0, count, vChunk));
+        else
+            runRange(phase, 0, count);
+    }
+    
+    /**
+     * Tests a candidate pair for object collisions. Soft bodies may not be hit
+     * (see PhysicalBody.isRigidBody()) and sleeping bodies cannot collide with
+     * each other. The collision test of two rigid bodies is symmetric, so it's
+     * performed once for both directions. 
+     * @param first index of the first object
+     * @param second index of the second object
+     * @return bit 0: first object hits second, bit 1: second object hits first
+     */
+    private int testPair (int first, int second)
+    {
+        LevelObject vObject = mStepObjects[first];
+        LevelObject vOther = mStepObjects[second];
+        PhysicalBody vBody = vObject.getObjectModel();
+        PhysicalBody vOtherBody = vOther.getObjectModel();
+        if (vBody.isSleeping() && vOtherBody.isSleeping())
+            return 0;
         
-        // possible collision on layer-transitions
-        for (int l = -1; l < 2; l++)
+        boolean vForward = vOtherBody.isRigidBody() && mBroadphase.isReachable(vObject, vOther);
+        boolean vBackward = vBody.isRigidBody() && mBroadphase.isReachable(vOther, vObject);
+        if (vForward && vBackward)
+            return vBody.isColliding(vOtherBody) ? 3 : 0;
+        if (vForward && vBody.isColliding(vOtherBody))
+            return 1;
+        if (vBackward && vOtherBody.isColliding(vBody))
+            return 2;
+        return 0;
+    }
+    
+    /**
+     * Checks all candidate pairs of the broadphase for object collisions. Each
+     * pair is visited once (see "testPair"), an object may hit another object 
+     * without being hit itself (e.g. soft bodies). The first colliding object
+     * of each object is stored in mCollisions.
+     * @param count number of objects
+     */
+    private void collisionWithObjects (int count)
+    {
+        for (int i = 0; i < count; i++)
+            mCollisions[i] = null;
+        
+        mBroadphase.update(mStepObjects, count);
+        if (mDeterministic)
+            mBroadphase.sortPairs();
+        endPhase(FrameProfiler.Phase.BROADPHASE);
+        
+        // Parallel narrowphase and serial merge in pair order (gives the 
+        // same first colliding objects as the serial loop)
+        if (mPool != null)
         {
-            // possible collision 1 texture in all directions
-            for (int x = -1; x < 2; x++) 
+            int vPairs = mBroadphase.getPairCount();
+            if (mPairResults.length < vPairs)
+                mPairResults = new byte[Math.max(vPairs, 2 * mPairResults.length)];
+            runPhase(Phase.NARROWPHASE, vPairs);
+            
+            for (int p = 0; p < vPairs; p++)
             {
-                for (int y = -1; y < 2; y++)
-                {
-                    // get tile for collision detection
-                    Tile vTile = mLevel.getTile(vPosition.x + x, vPosition.y + y, vLayer + l);
-                    
-                    // skip impossible collisions
-                    if ( (vTile != null) && (l == 0 ||  
-                         (l < 0 && vTile.hasNextLayer()) ||
-                         (l > 0 && vTile.hasPreviousLayer()) ))
-                    {
-                        // detect possible object-object collisions on the selected tile
-                        LevelObject vCollisionObject = vTile.collision(obj.getObjectModel());
+                int vFirst = mBroadphase.getFirst(p);
+                int vSecond = mBroadphase.getSecond(p);
+                if (mCollisions[vFirst] == null && (mPairResults[p] & 1) != 0)
+                    setCollision(vFirst, vSecond);
+                if (mCollisions[vSecond] == null && (mPairResults[p] & 2) != 0)
+                    setCollision(vSecond, vFirst);
+            }
+            return;
+        }
+        
+        for (int p = 0; p < mBroadphase.getPairCount(); p++)
+        {
+            int vFirst = mBroadphase.getFirst(p);
+            int vSecond = mBroadphase.getSecond(p);
+            if (mCollisions[vFirst] != null && mCollisions[vSecond] != null)
+                continue;
+            
+            int vResult = testPair(vFirst, vSecond);
+            if (mCollisions[vFirst] == null && (vResult & 1) != 0)
+                setCollision(vFirst, vSecond);
+            if (mCollisions[vSecond] == null && (vResult & 2) != 0)
+                setCollision(vSecond, vFirst);
+        }
+    }
+    
+    /**
+     * Stores the first colliding object of an object. 
+     * @param object index of the object
+     * @param other index of the colliding object
+     */
+    private void setCollision (int object, int other)
+    {
+        mCollisions[object] = mStepObjects[other];
+        mCollisionIndices[object] = other;
+    }
+    
+    /**
+     * Resolves the object collision of an object by impulses (see 
+     * CollisionResponse). If the colliding object has hit this object, too,
+     * the collision is resolved for both of them at once (phased order only, 
+     * in the object order the index of the colliding object is -1). 
+     * @param index index of the object
+     */
+    private void resolveObjectCollision (int index)
+    {
+        if (mResolved[index])
+            return;
+        
+        int vIndex = mCollisionIndices[index];
+        if (vIndex >= 0 && mCollisions[vIndex] == mStepObjects[index])
+            mResolved[vIndex] = true;
+        resolveObjectCollision(mStepObjects[index].getObjectModel(), mCollisions[index].getObjectModel());
+    }
+    
+    /**
+     * Resolves the collision of two bodies by impulses (see CollisionResponse).
+     * Collisions with soft bodies do not have any physical effect. 
+     * @param body body of the object
+     * @param other body of the colliding object
+     */
+    private void resolveObjectCollision (PhysicalBody body, PhysicalBody other)
+    {
+        if (body.isRigidBody() && other.isRigidBody() && body.getContact(other, mContact))
+        {
+            CollisionResponse.resolve(body, other, mContact);
+            other.updateData();
+        }
+    }
+    
+    /**
+     * Applies the reaction of an object to its object collision (stored in 
+     * mCollisions). 
+     * @param index index of the object
+     * @param dt timestep size in seconds
+     */
+    private void reactToObjectCollision (int index, double dt)
+    {
+        LevelObject vObject = mStepObjects[index];
+        LevelObject vCollisionObject = mCollisions[index];
+        vObject.getObjectModel().wakeUp();
+        vCollisionObject.getObjectModel().wakeUp();
+        vObject.onCollision(vCollisionObject);
+        if (mImpulseResponse)
+            resolveObjectCollision(index);
+        else
+            vObject.getObjectModel().collisionReactionObject(dt);
+        vObject.getObjectModel().updateData();
+    }
+    
+    /**
+     * Checks an object for a texture collision and applies the reaction.
+     * @param obj the object
+     * @param dt timestep size in seconds
+     */
+    private void collisionWithTexture (LevelObject obj, double dt)
+    {
+        Vector2D vCollisionPoint = mContinuousCollision && mImpulseResponse ? 
+                obj.getObjectModel().isCollidingContinuous(mLevel) :
+                obj.getObjectModel().isColliding(mLevel);
+        if (vCollisionPoint != null)
+        {
+            obj.onCollision(null);
+            if (mImpulseResponse)
+                resolveTextureCollision(obj.getObjectModel(), vCollisionPoint);
+            else
+                obj.getObjectModel().collisionReaction(dt, vCollisionPoint);
+            obj.getObjectModel().updateData();
+        }
+    }
+    
+    /**
+     * Resolves the texture collision of an object by an impulse (see 
+     * CollisionResponse). 
+     * @param body body of the object
+     * @param point collision point
+     */
+    private void resolveTextureCollision (PhysicalBody body, Vector2D point)
+    {
+        if (body.isRigidBody() && body.getWallContact(mLevel, point, mContact))
+            CollisionResponse.resolveWall(body, mContact);
+    }
+    
+    /**
+     * Tests a range of broadphase pairs (see "testPair") and stores the 
+     * results in mPairResults. 
+     * @param from first pair
+     * @param to pair after the last one
+     */
+    private void narrowphase (int from, int to)
+    {
+        for (int p = from; p < to; p++)
+            mPairResults[p] = (byte) testPair(mBroadphase.getFirst(p), mBroadphase.getSecond(p));
+    }
+    
+    /**
+     * Moves a range of objects of the current timestep (see "moveObject"). 
+     * @param from first object
+     * @param to object after the last one
+     * @param dt timestep size in seconds
+     * @param stepsize timestep size in miliseconds
+     */
+    private void integrateObjects (int from, int to, double dt, int stepsize)
+    {
+        long vControlNanos = 0;
+        for (int i = from; i < to; i++)
+            vControlNanos += Math.max(0, moveObject(mStepObjects[i], dt, stepsize));
+        if (vControlNanos != 0)
+            mControlNanos.addAndGet(vControlNanos);
+    }
+    
+    /**
+     * Moves an object: applies internal forces/torques and effects, ground 
+     * properties and layer changes and integrates the object's body (only 
+     * prepares the integration if the bodies are kept in the shared store). 
+     * Sleeping objects only ask their controller (input wakes them up). 
+     * @param obj the object
+     * @param dt timestep size in seconds
+     * @param stepsize timestep size in miliseconds
+     * @return time spent in the controller in nanoseconds (0 if the timestep 
+     * isn't profiled, -1 if the object is still sleeping and hasn't moved)
+     */
+    private long moveObject (LevelObject obj, double dt, int stepsize)
+    {
+        PhysicalBody vBody = obj.getObjectModel();
+        long vControlNanos = 0;
 
-                        if (vCollisionObject != null)
-                            return vCollisionObject;
+        boolean vControlled = false;
+        if (vBody.isSleeping())
+        {
+            if (obj.getController() == null)
+                return -1;
+            vControlNanos += control(obj, stepsize, dt);
+            if (vBody.isSleeping())
+                return -1;
+            vControlled = true;
+        }
 
-                    }
-                }
-            }        
+        // Remember state for render-interpolation
+        vBody.storeState();
+
+        // Apply internal forces/torques and effects
+        if (!vControlled)
+            vControlNanos += control(obj, stepsize, dt);
+
+        // Get ground-properties due to the object's position
+        CollisionTexture.GroundProperty vGround = mLevel.getGroundProperty(vBody.getCenterX(), vBody.getCenterY(), vBody.getLayer());
+        double friction =       vBody.isRigidBody() ? CollisionTexture.getFriction(vGround)    : 0.0;
+        double centrifugal =    vBody.isRigidBody() ? CollisionTexture.getCentrifugal(vGround) : 1.0;
+
+        // Layer-change of object (up/down in z-direction)
+        if (vGround == CollisionTexture.GroundProperty.NEXT_LAYER)
+            vBody.nextLayer();
+        if (vGround == CollisionTexture.GroundProperty.PREVIOUS_LAYER)
+            vBody.previousLayer();
+
+        // Update velocity, position and orientation of the physical model
+        if (mBodyStore != null)
+        {
+            vBody.prepareUpdate(friction, centrifugal);
+        }
+        else
+        {
+            vBody.update(dt, friction, centrifugal);
+            vBody.updateData();
+        }
+        return vControlNanos;
+    }
+    
+    /**
+     * Applies the internal forces/torques and effects of an object (see 
+     * LevelObject.control). 
+     * @param obj the object
+     * @param stepsize timestep size in miliseconds
+     * @param dt timestep size in seconds
+     * @return time spent in nanoseconds (0 if the timestep isn't profiled)
+     */
+    private long control (LevelObject obj, int stepsize, double dt)
+    {
+        if (!mProfiling)
+        {
+            obj.control(stepsize, dt);
+            return 0;
+        }
+        long vStart = System.nanoTime();
+        obj.control(stepsize, dt);
+        return System.nanoTime() - vStart;
+    }
+    
+    /**
+     * Ends a profiled phase of the current timestep and starts the next one. 
+     * @param phase the ended phase
+     */
+    private void endPhase (FrameProfiler.Phase phase)
+    {
+        if (!mProfiling)
+            return;
+        long vNow = System.nanoTime();
+        mProfiler.record(phase, vNow - mPhaseStart);
+        mPhaseStart = vNow;
+    }
+    
+    /**
+     * Performs the movement and collision handling of a timestep in the object
+     * order: each object is moved, tested for collisions with the other 
+     * objects (see Broadphase.collision) and textures, reacts and updates its
+     * status (e.g. moves to the next tile) before the next object is moved. 
+     * @param count number of objects
+     * @param dt timestep size in seconds
+     * @param stepsize timestep size in miliseconds
+     */
+    private void stepObjects (int count, double dt, int stepsize)
+    {
+        long vControl = 0, vIntegrate = 0, vQueries = 0, vResponse = 0;
+        long vBegin = mProfiling ? System.nanoTime() : 0;
+        mBroadphase.beginQueries(mStepObjects, count);
+        if (mProfiling)
+            vQueries = System.nanoTime() - vBegin;
+        for (int i = 0; i < count; i++)
+        {
+            LevelObject vObject = mStepObjects[i];
+            long vStart = mProfiling ? System.nanoTime() : 0;
+            
+            // Move the object (sleeping objects haven't moved)
+            long vControlNanos = moveObject(vObject, dt, stepsize);
+            if (vControlNanos < 0)
+                continue;
+            long vMoved = mProfiling ? System.nanoTime() : 0;
+            
+            // Object collisions
+            mCollisions[i] = mBroadphase.collision(vObject);
+            mCollisionIndices[i] = -1;
+            long vTested = mProfiling ? System.nanoTime() : 0;
+            
+            if (mCollisions[i] != null)
+                reactToObjectCollision(i, dt);
+            // Texture collisions
+            else
+                collisionWithTexture(vObject, dt);
+            
+            // Update the object-status (e.g. move to next tile)
+            vObject.update();
+            
+            if (mProfiling)
+            {
+                vControl += vControlNanos;
+                vIntegrate += vMoved - vStart - vControlNanos;
+                vQueries += vTested - vMoved;
+                vResponse += System.nanoTime() - vTested;
+            }
+        }
+        
+        if (mProfiling)
+        {
+            mProfiler.record(FrameProfiler.Phase.CONTROL, vControl);
+            mProfiler.record(FrameProfiler.Phase.INTEGRATE, vIntegrate);
+            mProfiler.record(FrameProfiler.Phase.BROADPHASE, vQueries);
+            mProfiler.record(FrameProfiler.Phase.RESPONSE, vResponse);
+            mPhaseStart = System.nanoTime();
+        }
+    }
+    
+    /**
+     * Performs the movement and collision handling of a timestep in the phased 
+     * order: all objects are moved (in chunks in the parallel mode), then the
+     * candidate pairs of the broadphase are tested and finally the collision 
+     * reactions are applied. 
+     * @param count number of objects
+     * @param dt timestep size in seconds
+     * @param stepsize timestep size in miliseconds
+     */
+    private void stepPhased (int count, double dt, int stepsize)
+    {
+        // Move all objects (in chunks in the parallel mode)
+        mStepDt = dt;
+        mStepMillis = stepsize;
+        runPhase(Phase.INTEGRATE, count);
+        
+        // Update all bodies of the shared store at once
+        if (mBodyStore != null)
+        {
+            runPhase(Phase.INTEGRATE_STORE, mBodyStore.size());
+            runPhase(Phase.UPDATE_DATA, count);
+        }
+        
+        // The controllers are timed within the integration (the sum of 
+        // all threads is subtracted from the integration phase)
+        if (mProfiling)
+        {
+            long vNow = System.nanoTime();
+            long vControl = mControlNanos.get();
+            mProfiler.record(FrameProfiler.Phase.CONTROL, vControl);
+            mProfiler.record(FrameProfiler.Phase.INTEGRATE, Math.max(0, vNow - mPhaseStart - vControl));
+            mPhaseStart = vNow;
+        }
+        
+        // Object collisions (broadphase + narrowphase)
+        collisionWithObjects(count);
+        endPhase(FrameProfiler.Phase.NARROWPHASE);
+
+        // Collision reactions
+        for (int i = 0; i < count; i++)
+        {
+            if (mCollisions[i] != null)
+                reactToObjectCollision(i, dt);
+            // Texture collisions (sleeping objects haven't moved)
+            else if (!mStepObjects[i].getObjectModel().isSleeping())
+                collisionWithTexture(mStepObjects[i], dt);
+        }
+        endPhase(FrameProfiler.Phase.RESPONSE);
+    }
+    
+    /**
+     * Performs one physics timestep for all objects of the level: applies the
+     * internal and external forces, integrates velocity, position and orientation
+     * of every object and handles object- and texture-collisions (in the 
+     * object order or in the phased order, see class description). 
+     * @param dt timestep size in seconds
+     * @param stepsize timestep size in miliseconds
+     * @param ample 'true' if the ample is active (no object may move)
+     */
+    private void step (double dt, int stepsize, boolean ample)
+    {
+        // Collect living objects, dead ones are removed from their tile and 
+        // from the level (with the next commit)
+        mLevel.commitObjects();
+        LevelObject [] vObjects = mLevel.getObjects();
+        ensureCapacity(vObjects.length);
+        int vCount = 0;
+        for (LevelObject vObject : vObjects)
+        {
+            if (vObject.isAlive())
+            {
+                mStepObjects[vCount++] = vObject;
+            }
+            else
+            {
+                vObject.update();
+                mLevel.removeObject(vObject);
+            }
+        }
+        
+        // Keep the state of the living objects in the shared store only
+        if (mBodyStore != null)
+        {
+            for (int i = 0; i < vCount; i++)
+                mBodyStore.retain(mStepObjects[i].getObjectModel());
+            mBodyStore.removeUnretained();
+        }
+        
+        // Profile the phases of timesteps in which objects move
+        mProfiling = !ample && mProfiler.isEnabled();
+        if (mProfiling)
+        {
+            mControlNanos.set(0);
+            mPhaseStart = System.nanoTime();
+        }
+        
+        boolean vObjectOrder = isObjectOrder();
+        if (!ample)
+        {
+            if (vObjectOrder)
+                stepObjects(vCount, dt, stepsize);
+            else
+                stepPhased(vCount, dt, stepsize);
+        }
+
+        if (mDeterministic)
+            hashState(vCount);
+        
+        // Update the object-status (e.g. move to next tile, done by 
+        // "stepObjects" in the object order), sleeping objects haven't 
+        // changed. Objects without movement, forces, effects and collisions 
+        // fall asleep after a while. 
+        for (int i = 0; i < vCount; i++)
+        {
+            LevelObject vObject = mStepObjects[i];
+            PhysicalBody vBody = vObject.getObjectModel();
+            if (!vBody.isSleeping())
+            {
+                if (ample || !vObjectOrder)
+                    vObject.update();
+                if (mSleeping && !ample)
+                    vBody.updateSleep(vBody.isIdle() && !vObject.hasEffects() && mCollisions[i] == null);
+            }
+            mStepObjects[i] = null;
+            mCollisions[i] = null;
+            mResolved[i] = false;
+        }
+        endPhase(FrameProfiler.Phase.OBJECT_UPDATE);
+        mProfiling = false;
+        mStep++;
+    }
+    
+    /**
+     * Computes the hash of the state of all bodies after the current timestep
+     * (in the order of the object ids). 
+     * @param count number of objects
+     */
+    private void hashState (int count)
+    {
+        mStateHash.begin();
+        for (int i = 0; i < count; i++)
+        {
+            PhysicalBody vBody = mStepObjects[i].getObjectModel();
+            mStateHash.add(mStepObjects[i].getId());
+            mStateHash.add(vBody.getPositionX());
+            mStateHash.add(vBody.getPositionY());
+            mStateHash.add(vBody.getVelocityX());
+            mStateHash.add(vBody.getVelocityY());
+            mStateHash.add(vBody.getRotation());
+            mStateHash.add(vBody.getAngularVelocity());
+            mStateHash.add(vBody.getLayer());
+        }
+        mStateHash.end(mStep);
+    }
+    
+    /**
+     * Sleeps until the accumulated time reaches the next fixed timestep.
+     */
+    private void sleepUntilNextStep ()
+    {
+        long vRemaining = mStepNanos - (mAccumulator + System.nanoTime() - mLastTime);
+        if (vRemaining <= 0)
+            return;
+        
+        try
+        {
+            Thread.sleep(vRemaining / 1000000L, (int)(vRemaining % 1000000L));
+        }
+        catch (InterruptedException e)
+        {
+            GameLogger.log(e);
         }
-        return null;
     }
     
     @Override
@@ -261,6 +1210,7 @@ public class PhysicsThread extends Thread {
         boolean ample       = false;
         
         initializeFPS();
+        initializeAccumulator();
         
         // Main Physics Loop
         while (isRunning()) 
@@ -274,19 +1224,12 @@ public class PhysicsThread extends Thread {
                 }
 
                 // wait for resume
-                boolean vWait = false;
-                while (!vWait) {
-                    try {
-                        synchronized (this) {
-                            this.wait();
-                        }
-                        vWait = true;
-                    } catch (InterruptedException e) {
-                        vWait = false;
-                    }
-                }
+                mLifecycle.awaitResume();
+                if (!isRunning())
+                    break;
 
                 initializeFPS();
+                initializeAccumulator();
 
                 // resume game
                 if (mLevel != null) {
@@ -295,103 +1238,76 @@ public class PhysicsThread extends Thread {
             }
 
             // check ample state
-            ample = getAmple(); 
+            ample = mLifecycle.isAmple(); 
             
-            // Calculate timestep-size dt
-            calcuateFPS();
-                        
-            dt = 1.0 / (double) mFPS;
-            stepsize = (int) (dt * 1000.0);
-            
-            // this avoids problems at the beginning of the game
-            if (dt > 1.0) continue;
+            // no level loaded yet
+            if (mLevel == null)
+            {
+                try
+                {
+                    sleep(200);
+                }
+                catch (InterruptedException e)
+                {
+                    return;
+                }
+                initializeAccumulator();
+                continue;
+            }
             
-            // perform PhysicsThread-Tasks
-            if (mLevel != null)
+            if (mFixedTimestep || mDeterministic)
             {
+                // Accumulate passed wall-clock time (drop what exceeds the 
+                // maximum number of steps to avoid a "spiral of death")
+                long vNow = System.nanoTime();
+                mAccumulator = Math.min(mAccumulator + vNow - mLastTime, mMaxSteps * mStepNanos);
+                mLastTime = vNow;
+                
+                dt = mStepSize;
+                stepsize = (int) (dt * 1000.0);
+                
                 // update game-time
-                mLevel.getStatistics().update();
-
-                // check is game has finished (player reached goal)
-                if (mLevel.getStatistics().finished())
+                if (mAccumulator >= mStepNanos)
+                    mLevel.getStatistics().update();
+                
+                // perform as many whole timesteps as time has passed
+                while (mAccumulator >= mStepNanos)
                 {
-                    // TODO: change to GUI -> show statistics-GUIFrame
+                    step(dt, stepsize, ample);
+                    mAccumulator -= mStepNanos;
                 }
                 
-                // Clone current object-list
-                Iterator<LevelObject> vIter = mLevel.getObjectList().iterator();
-                LevelObject vObject;
+                // remaining fraction of a timestep for render-interpolation
+                mInterpolationAlpha = ample ? 1.0 : (double) mAccumulator / (double) mStepNanos;
                 
-                // Iterate through all objects
-                while (vIter.hasNext())
-                {
-                    vObject = vIter.next();
-                    
-                    // Remove dead objects
-                    if (!vObject.isAlive())
-                    {
-                        vIter.remove();
-                        continue;
-                    }
-                    
-                    if (!ample)
-                    {
-                        // Apply internal forces/torques and effects
-                        vObject.control(stepsize, dt);
+                sleepUntilNextStep();
+            }
+            else
+            {
+                // Calculate timestep-size dt
+                calcuateFPS();
 
-                        // Get ground-properties due to the object's position
-                        Vector2D vPosition = vObject.getObjectModel().getCenter();
-                        int vLayer = vObject.getObjectModel().getLayer();
-                        CollisionTexture.GroundProperty vGround = mLevel.getGroundProperty(vPosition, vLayer);
-                        double friction =       vObject.getObjectModel().isRigidBody() ? CollisionTexture.getFriction(vGround)    : 0.0;
-                        double centrifugal =    vObject.getObjectModel().isRigidBody() ? CollisionTexture.getCentrifugal(vGround) : 1.0;
+                dt = 1.0 / (double) mFPS;
+                stepsize = (int) (dt * 1000.0);
 
-                        // Layer-change of object (up/down in z-direction)
-                        if (vGround == CollisionTexture.GroundProperty.NEXT_LAYER)
-                            vObject.getObjectModel().nextLayer();
-                        if (vGround == CollisionTexture.GroundProperty.PREVIOUS_LAYER)
-                            vObject.getObjectModel().previousLayer();
+                // this avoids problems at the beginning of the game
+                if (dt > 1.0) continue;
 
-                        // Update velocity, position and orientation of the physical model
-                        vObject.getObjectModel().update(dt, friction, centrifugal);
-                        vObject.getObjectModel().updateData();
+                // update game-time
+                mLevel.getStatistics().update();
 
-                        // Object collisions
-                        LevelObject vCollisionObject = collisionWithObject(vObject);
-                        if (vCollisionObject != null) {
-                            vObject.onCollision(vCollisionObject);
-                            vObject.getObjectModel().collisionReactionObject(dt);
-                            vObject.getObjectModel().updateData();
-                        }
-                        // Texture collisions
-                        else
-                        {
-                            Vector2D vCollisionPoint = vObject.getObjectModel().isColliding(mLevel);
-                            if (vCollisionPoint != null)
-                            {
-                                vObject.onCollision(null);
-                                vObject.getObjectModel().collisionReaction(dt, vCollisionPoint);
-                                vObject.getObjectModel().updateData();
-                            }
-                        }
-                    }
-                    
-                    // Update the object-status (e.g. move to next tile)
-                    vObject.update();
-                }
-            }
-            else
-            {
-                try
-                {
-                    sleep(200);
-                }
-                catch (InterruptedException e)
+                // check is game has finished (player reached goal)
+                if (mLevel.getStatistics().finished())
                 {
-                    return;
+                    // TODO: change to GUI -> show statistics-GUIFrame
                 }
+                
+                step(dt, stepsize, ample);
             }
-        }        
+        }
+        
+        if (mPool != null)
+            mPool.shutdown();
     }    
     
 }
@@ -0,0 +1,143 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package crazyballrun.game.physics;
+
+import crazyballrun.game.GameConstants;
+import crazyballrun.game.GameLogger;
+import java.util.Arrays;
+
+/**
+ * The StateHash computes a 64-bit hash (FNV-1a over the bit patterns of the
+ * values) of the simulation state after each timestep and keeps the hashes of
+ * the last GameConstants.STATE_HASH_HISTORY timesteps. Hashes received from
+ * another simulation of the same inputs (e.g. a replay or a peer) can be
+ * compared by "verify": any difference means the simulations have diverged.
+ *
+ * @author Timm Hoffmeister
+ */
+public class StateHash {
+
+    /**
+     * FNV-1a offset basis (64 bit).
+     */
+    private static final long sOffsetBasis = 0xcbf29ce484222325L;
+
+    /**
+     * FNV-1a prime (64 bit).
+     */
+    private static final long sPrime = 0x100000001b3L;
+
+    /**
+     * Hash of the current timestep (while it is computed).
+     */
+    private long mHash = sOffsetBasis;
+
+    /**
+     * Hashes of the last timesteps (indexed by step modulo history size).
+     */
+    private long [] mHistory = new long[GameConstants.STATE_HASH_HISTORY];
+
+    /**
+     * Timestep of each entry of the history (-1 if empty).
+     */
+    private long [] mHistorySteps = new long[GameConstants.STATE_HASH_HISTORY];
+
+    /**
+     * Last finished timestep (-1 if there is none).
+     */
+    private long mLastStep = -1;
+
+    /**
+     * Constructor of StateHash.
+     */
+    public StateHash ()
+    {
+        Arrays.fill(mHistorySteps, -1);
+    }
+
+    /**
+     * Starts the hash of a new timestep.
+     */
+    public void begin ()
+    {
+        mHash = sOffsetBasis;
+    }
+
+    /**
+     * Adds a value to the hash of the current timestep.
+     * @param value value to add
+     */
+    public void add (long value)
+    {
+        long h = mHash;
+        for (int i = 0; i < 8; i++)
+        {
+            h ^= (value >>> (i * 8)) & 0xff;
+            h *= sPrime;
+        }
+        mHash = h;
+    }
+
+    /**
+     * Adds a value to the hash of the current timestep (its exact bit pattern,
+     * so "-0.0" and "0.0" differ).
+     * @param value value to add
+     */
+    public void add (double value)
+    {
+        add(Double.doubleToRawLongBits(value));
+    }
+
+    /**
+     * Finishes the hash of a timestep and stores it in the history.
+     * @param step number of the timestep
+     */
+    public synchronized void end (long step)
+    {
+        int vIndex = (int) (step % mHistory.length);
+        mHistory[vIndex] = mHash;
+        mHistorySteps[vIndex] = step;
+        mLastStep = step;
+    }
+
+    /**
+     * Gets the number of the last finished timestep.
+     * @return number of the timestep (-1 if there is none)
+     */
+    public synchronized long getLastStep ()
+    {
+        return mLastStep;
+    }
+
+    /**
+     * Gets the hash of the last finished timestep.
+     * @return hash of the last timestep (0 if there is none)
+     */
+    public synchronized long getLastHash ()
+    {
+        return mLastStep < 0 ? 0 : mHistory[(int) (mLastStep % mHistory.length)];
+    }
+
+    /**
+     * Compares the hash of a timestep with a hash computed elsewhere. A
+     * difference is logged as desync.
+     * @param step number of the timestep
+     * @param hash hash to compare with
+     * @return "false" if the hashes differ, "true" if they are equal or the
+     * timestep is not in the history (anymore or yet)
+     */
+    public synchronized boolean verify (long step, long hash)
+    {
+        int vIndex = (int) (step % mHistory.length);
+        if (step < 0 || mHistorySteps[vIndex] != step)
+            return true;
+        if (mHistory[vIndex] == hash)
+            return true;
+
+        GameLogger.log("Physics desync at step " + step + ": local hash "
+                + Long.toHexString(mHistory[vIndex]) + ", remote hash " + Long.toHexString(hash));
+        return false;
+    }
+}
@@ -0,0 +1,563 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package crazyballrun.game.physics.bodies;
+
+/**
+ * The BodyStore holds the state of physical bodies as structure of arrays:
+ * positions, velocities, rotations and the per-body constants are stored in
+ * parallel arrays, one slot per body. PhysicalBody-instances are views onto
+ * one slot of a store. By default a body keeps its state in a store of its 
+ * own with a single slot, adding bodies to a shared store allows integrating
+ * all of them in one tight loop ("integrate(double)"). Accessing and 
+ * integrating the state works the same way in both cases.
+ *
+ * The inputs of the integration which depend on the environment (ground and
+ * external forces) are written by "PhysicalBody.prepareUpdate" before.
+ *
+ * There are two kernels for the integration: the scalar loop (one body after
+ * another) and the batch kernel, which splits the integration into passes
+ * over blocks of bodies. The passes without trigonometric functions have no
+ * branches, so the JIT compiler can keep several bodies in the lanes of its
+ * SIMD registers. Both kernels compute exactly the same results. The scalar
+ * loop is the default, because the trigonometric functions dominate the 
+ * integration and the batch kernel hasn't been faster so far (see 
+ * BodyStoreKernelBenchmark), the batch kernel is chosen by kernel="batch". 
+ *
+ * @author Timm Hoffmeister
+ */
+public class BodyStore {
+
+    /**
+     * Column indices of the arrays.
+     */
+    private static final int P_X = 0, P_Y = 1, V_X = 2, V_Y = 3, V_R = 4, R_C = 5,
+            P_X_PREV = 6, P_Y_PREV = 7, R_C_PREV = 8, D_X = 9, D_Y = 10, A_C = 11,
+            V_ROT = 12, A_BR_C = 13, V_MAX = 14, C_AER = 15, C_RG = 16, A_BR = 17,
+            A_IN = 18, A_IN_R = 19, R_IN = 20, C_W = 21, C_C = 22, R_EX = 23,
+            A_EX_X = 24, A_EX_Y = 25, M_INV = 26, C_RES = 27, S_COS = 28, S_SIN = 29,
+            COLUMNS = 30;
+
+    /**
+     * Number of bodies processed by each pass of the batch kernel (the data
+     * of a block stays in the first level cache between the passes).
+     */
+    private static final int BLOCK = 256;
+
+    /**
+     * Minimal number of bodies integrated by the batch kernel (doubles in a
+     * 256 bit SIMD register), smaller ranges, e.g. single bodies with a 
+     * private store, are integrated by the scalar loop.
+     */
+    private static final int LANES = 4;
+
+    /**
+     * Specifies if the trigonometric functions of StrictMath are used instead
+     * of those of Math (same results on every platform). 
+     */
+    private static boolean sStrictMath = false;
+    
+    /**
+     * Specifies if ranges of bodies are integrated by the batch kernel.
+     */
+    private static boolean sBatchKernel = false;
+    
+    /**
+     * Selects the kernel for the integration of all stores. 
+     * @param batch "true" for the batch kernel, "false" for the scalar loop
+     */
+    public static void setBatchKernel (boolean batch)
+    {
+        sBatchKernel = batch;
+    }
+    
+    /**
+     * Selects the trigonometric functions of all physical bodies. Has to be 
+     * called before the simulation starts. 
+     * @param strict "true" for StrictMath, "false" for Math
+     */
+    public static void setStrictMath (boolean strict)
+    {
+        sStrictMath = strict;
+    }
+    
+    /**
+     * Sine of an angle (see "setStrictMath").
+     * @param angle angle in radians
+     * @return sine of the angle
+     */
+    static double sin (double angle)
+    {
+        return sStrictMath ? StrictMath.sin(angle) : Math.sin(angle);
+    }
+    
+    /**
+     * Cosine of an angle (see "setStrictMath").
+     * @param angle angle in radians
+     * @return cosine of the angle
+     */
+    static double cos (double angle)
+    {
+        return sStrictMath ? StrictMath.cos(angle) : Math.cos(angle);
+    }
+    
+    /**
+     * All arrays of the store (indexed by column).
+     */
+    private double [][] mColumns = new double[COLUMNS][];
+
+    /**
+     * position (x, y)
+     */
+    double [] p_x, p_y;
+
+    /**
+     * velocity (x, y)
+     */
+    double [] v_x, v_y;
+
+    /**
+     * angular rotation speed
+     */
+    double [] v_r;
+
+    /**
+     * current rotation
+     */
+    double [] r_c;
+
+    /**
+     * position and rotation at the beginning of the current timestep
+     */
+    double [] p_x_prev, p_y_prev, r_c_prev;
+
+    /**
+     * orientation (x, y)
+     */
+    double [] d_x, d_y;
+
+    /**
+     * currently invoked acceleration, rotation velocity and brake force
+     */
+    double [] a_c, v_rot, a_br_c;
+
+    /**
+     * constants of the body: maximum velocity, aerodynamics, road grip, brake
+     * force, acceleration, backward acceleration and rotation speed
+     */
+    double [] v_max, c_aer, c_rg, a_br, a_in, a_in_r, r_in;
+
+    /**
+     * inputs of the next integration: air resistance and centripetal force
+     * constant of the ground, sum of the external rotations and accelerations
+     */
+    double [] c_w, c_c, r_ex, a_ex_x, a_ex_y;
+    
+    /**
+     * constants of the collision response: inverse mass and restitution
+     */
+    double [] m_inv, c_res;
+    
+    /**
+     * intermediate results of the batch kernel: cosine and sine of the 
+     * pseudo-torque step
+     */
+    double [] s_cos, s_sin;
+
+    /**
+     * Bodies of the store (indexed by slot).
+     */
+    private PhysicalBody [] mBodies = null;
+
+    /**
+     * Stamp of each slot (see "retain").
+     */
+    private int [] mStamps = null;
+
+    /**
+     * Current stamp (see "retain").
+     */
+    private int mStamp = 1;
+
+    /**
+     * Number of used slots.
+     */
+    private int mSize = 0;
+
+    /**
+     * Constructor of BodyStore.
+     * @param capacity initial number of slots
+     */
+    public BodyStore (int capacity)
+    {
+        capacity = Math.max(capacity, 1);
+        for (int c = 0; c < COLUMNS; c++)
+            mColumns[c] = new double[capacity];
+        mBodies = new PhysicalBody[capacity];
+        mStamps = new int[capacity];
+        bindColumns();
+    }
+
+    /**
+     * Assigns the named arrays to the columns.
+     */
+    private void bindColumns ()
+    {
+        p_x = mColumns[P_X];
+        p_y = mColumns[P_Y];
+        v_x = mColumns[V_X];
+        v_y = mColumns[V_Y];
+        v_r = mColumns[V_R];
+        r_c = mColumns[R_C];
+        p_x_prev = mColumns[P_X_PREV];
+        p_y_prev = mColumns[P_Y_PREV];
+        r_c_prev = mColumns[R_C_PREV];
+        d_x = mColumns[D_X];
+        d_y = mColumns[D_Y];
+        a_c = mColumns[A_C];
+        v_rot = mColumns[V_ROT];
+        a_br_c = mColumns[A_BR_C];
+        v_max = mColumns[V_MAX];
+        c_aer = mColumns[C_AER];
+        c_rg = mColumns[C_RG];
+        a_br = mColumns[A_BR];
+        a_in = mColumns[A_IN];
+        a_in_r = mColumns[A_IN_R];
+        r_in = mColumns[R_IN];
+        c_w = mColumns[C_W];
+        c_c = mColumns[C_C];
+        r_ex = mColumns[R_EX];
+        a_ex_x = mColumns[A_EX_X];
+        a_ex_y = mColumns[A_EX_Y];
+        m_inv = mColumns[M_INV];
+        c_res = mColumns[C_RES];
+        s_cos = mColumns[S_COS];
+        s_sin = mColumns[S_SIN];
+    }
+
+    /**
+     * Makes sure the store can hold a number of bodies.
+     * @param capacity number of bodies
+     */
+    private void ensureCapacity (int capacity)
+    {
+        if (capacity > mBodies.length)
+        {
+            int vCapacity = Math.max(capacity, 2 * mBodies.length);
+            for (int c = 0; c < COLUMNS; c++)
+            {
+                double [] vColumn = new double[vCapacity];
+                System.arraycopy(mColumns[c], 0, vColumn, 0, mSize);
+                mColumns[c] = vColumn;
+            }
+            PhysicalBody [] vBodies = new PhysicalBody[vCapacity];
+            System.arraycopy(mBodies, 0, vBodies, 0, mSize);
+            mBodies = vBodies;
+            int [] vStamps = new int[vCapacity];
+            System.arraycopy(mStamps, 0, vStamps, 0, mSize);
+            mStamps = vStamps;
+            bindColumns();
+        }
+    }
+
+    /**
+     * Adds a body to the store. The body's state is moved from its former
+     * store into the new slot, a new body gets the default state.
+     * @param body reference to the body
+     */
+    public void add (PhysicalBody body)
+    {
+        ensureCapacity(mSize + 1);
+        int vSlot = mSize++;
+        BodyStore vStore = body.getStore();
+        if (vStore != null)
+        {
+            for (int c = 0; c < COLUMNS; c++)
+                mColumns[c][vSlot] = vStore.mColumns[c][body.getSlot()];
+        }
+        else
+            setDefaults(vSlot);
+        mBodies[vSlot] = body;
+        mStamps[vSlot] = mStamp;
+        if (vStore != null)
+            vStore.removeSlot(body.getSlot());
+        body.setStore(this, vSlot);
+    }
+
+    /**
+     * Removes a body from the store. The body's state is moved into a new 
+     * store of its own, so the body stays valid.
+     * @param body reference to the body
+     */
+    public void remove (PhysicalBody body)
+    {
+        if (body.getStore() == this)
+            new BodyStore(1).add(body);
+    }
+    
+    /**
+     * Sets the default state of a new body. 
+     * @param slot slot of the body
+     */
+    private void setDefaults (int slot)
+    {
+        d_y[slot] = -1.0;
+        a_br_c[slot] = 1.0;
+        v_max[slot] = 1.0;
+        c_aer[slot] = 0.1;
+        c_rg[slot] = 0.1;
+        a_br[slot] = 0.2;
+        a_in[slot] = 0.1;
+        a_in_r[slot] = 0.1;
+        r_in[slot] = 0.1;
+        m_inv[slot] = 1.0;
+        c_res[slot] = 0.2;
+    }
+
+    /**
+     * Removes a slot by moving the last slot into it.
+     * @param slot slot to remove
+     */
+    private void removeSlot (int slot)
+    {
+        int vLast = --mSize;
+        if (slot != vLast)
+        {
+            for (int c = 0; c < COLUMNS; c++)
+                mColumns[c][slot] = mColumns[c][vLast];
+            mBodies[slot] = mBodies[vLast];
+            mStamps[slot] = mStamps[vLast];
+            mBodies[slot].setStore(this, slot);
+        }
+        mBodies[vLast] = null;
+    }
+
+    /**
+     * Marks a body to be kept by the next "removeUnretained()", the body is
+     * added to the store if necessary.
+     * @param body reference to the body
+     */
+    public void retain (PhysicalBody body)
+    {
+        if (body.getStore() != this)
+            add(body);
+        mStamps[body.getSlot()] = mStamp;
+    }
+
+    /**
+     * Removes all bodies which haven't been retained since the last call.
+     */
+    public void removeUnretained ()
+    {
+        for (int i = mSize - 1; i >= 0; i--)
+        {
+            if (mStamps[i] != mStamp)
+                remove(mBodies[i]);
+        }
+        mStamp++;
+    }
+
+    /**
+     * Gets the number of bodies in the store.
+     * @return number of bodies
+     */
+    public int size ()
+    {
+        return mSize;
+    }
+
+    /**
+     * Gets the body of a slot.
+     * @param slot slot of the body
+     * @return reference to the body
+     */
+    public PhysicalBody getBody (int slot)
+    {
+        return mBodies[slot];
+    }
+
+    /**
+     * Updates velocity, orientation and position of all bodies of the store
+     * (see "integrate(double, int, int)").
+     * @param dt timestep size
+     */
+    public void integrate (double dt)
+    {
+        integrate(dt, 0, mSize);
+    }
+
+    /**
+     * Updates velocity, orientation and position of a range of bodies due to
+     * internal and external forces by performing the explicit euler method
+     * (for integration of velocity and position in time). Uses the selected 
+     * kernel (see "setBatchKernel"), ranges with less than LANES bodies are 
+     * always integrated by the scalar loop.
+     * @param dt timestep size
+     * @param from first slot
+     * @param to slot after the last one
+     */
+    public void integrate (double dt, int from, int to)
+    {
+        if (sBatchKernel && to - from >= LANES)
+        {
+            for (int b = from; b < to; b += BLOCK)
+                integrateBlock(dt, b, Math.min(b + BLOCK, to));
+        }
+        else
+            integrateScalar(dt, from, to);
+    }
+
+    /**
+     * Integrates a block of bodies in three passes (batch kernel): rotation,
+     * trigonometric functions and velocity/position. Same arithmetic as 
+     * "integrateScalar", the conditions of the speed limit are replaced by 
+     * selects.
+     * @param dt timestep size
+     * @param from first slot
+     * @param to slot after the last one
+     */
+    private void integrateBlock (double dt, int from, int to)
+    {
+        double [] p_x = this.p_x, p_y = this.p_y, v_x = this.v_x, v_y = this.v_y;
+        double [] v_r = this.v_r, r_c = this.r_c, d_x = this.d_x, d_y = this.d_y;
+        double [] a_c = this.a_c, v_rot = this.v_rot, a_br_c = this.a_br_c;
+        double [] v_max = this.v_max, c_aer = this.c_aer, c_rg = this.c_rg, a_in_r = this.a_in_r;
+        double [] c_w = this.c_w, c_c = this.c_c, r_ex = this.r_ex, a_ex_x = this.a_ex_x, a_ex_y = this.a_ex_y;
+        double [] s_cos = this.s_cos, s_sin = this.s_sin;
+
+        // rotation speed and rotation update (explicit euler)
+        for (int i = from; i < to; i++)
+        {
+            double vr = v_rot[i] + r_ex[i];
+            v_r[i] = vr;
+            r_c[i] = r_c[i] + dt * vr;
+        }
+
+        // orientation and pseudo-torque for velocity-orientation-correction
+        for (int i = from; i < to; i++)
+        {
+            double rc = r_c[i];
+            d_x[i] = -sin(rc);
+            d_y[i] = -cos(rc);
+            double vr_step = -v_r[i] * dt * c_c[i] * c_rg[i];
+            s_cos[i] = cos(vr_step);
+            s_sin[i] = sin(vr_step);
+        }
+
+        // velocity and position update (explicit euler)
+        for (int i = from; i < to; i++)
+        {
+            double vx = v_x[i];
+            double vy = v_y[i];
+            double a_x = a_c[i] * d_x[i] - c_w[i] * c_aer[i] * vx;
+            double a_y = a_c[i] * d_y[i] - c_w[i] * c_aer[i] * vy;
+
+            double vx_rot = vx * s_cos[i] - vy * s_sin[i];
+            double vy_rot = vx * s_sin[i] + vy * s_cos[i];
+
+            a_x += a_ex_x[i];
+            a_y += a_ex_y[i];
+
+            vx = vx_rot + dt * a_x;
+            vy = vy_rot + dt * a_y;
+
+            // maximum velocity, too slow bodies stop
+            double v = Math.sqrt(vx * vx + vy * vy);
+            boolean vClamp = v > v_max[i];
+            boolean vStop = !vClamp & v < a_in_r[i] * dt;
+            double vx_max = vx * v_max[i] / v;
+            double vy_max = vy * v_max[i] / v;
+            vx = vClamp ? vx_max : vx;
+            vy = vClamp ? vy_max : vy;
+
+            // Apply pseudo-brake-force
+            vx = vStop ? 0.0 : vx * a_br_c[i];
+            vy = vStop ? 0.0 : vy * a_br_c[i];
+            v_x[i] = vx;
+            v_y[i] = vy;
+
+            double px = p_x[i] + dt * vx;
+            double py = p_y[i] + dt * vy;
+            p_x[i] = vStop ? p_x[i] : px;
+            p_y[i] = vStop ? p_y[i] : py;
+        }
+    }
+
+    /**
+     * Integrates a range of bodies one after another (scalar kernel).
+     * @param dt timestep size
+     * @param from first slot
+     * @param to slot after the last one
+     */
+    private void integrateScalar (double dt, int from, int to)
+    {
+        double [] p_x = this.p_x, p_y = this.p_y, v_x = this.v_x, v_y = this.v_y;
+        double [] v_r = this.v_r, r_c = this.r_c, d_x = this.d_x, d_y = this.d_y;
+        double [] a_c = this.a_c, v_rot = this.v_rot, a_br_c = this.a_br_c;
+        double [] v_max = this.v_max, c_aer = this.c_aer, c_rg = this.c_rg, a_in_r = this.a_in_r;
+        double [] c_w = this.c_w, c_c = this.c_c, r_ex = this.r_ex, a_ex_x = this.a_ex_x, a_ex_y = this.a_ex_y;
+
+        for (int i = from; i < to; i++)
+        {
+            // rotation speed (angular velocity)
+            double vr = v_rot[i] + r_ex[i];
+            v_r[i] = vr;
+
+            // rotation update (explicit euler)
+            double rc = r_c[i] + dt * vr;
+            r_c[i] = rc;
+
+            // update orientation
+            double dx = -sin(rc);
+            double dy = -cos(rc);
+            d_x[i] = dx;
+            d_y[i] = dy;
+
+            // acceleration = internal acceleration - air resistance
+            double vx = v_x[i];
+            double vy = v_y[i];
+            double a_x = a_c[i] * dx - c_w[i] * c_aer[i] * vx;
+            double a_y = a_c[i] * dy - c_w[i] * c_aer[i] * vy;
+
+            // pseudo-torque for velocity-orientation-correction
+            double vr_step = -vr * dt * c_c[i] * c_rg[i];
+            double cos = cos(vr_step);
+            double sin = sin(vr_step);
+            double vx_rot = vx * cos - vy * sin;
+            double vy_rot = vx * sin + vy * cos;
+
+            // acceleration + external acceleration forces
+            a_x += a_ex_x[i];
+            a_y += a_ex_y[i];
+
+            // velocity update (explicit euler)
+            vx = vx_rot + dt * a_x;
+            vy = vy_rot + dt * a_y;
+
+            // maximum velocity
+            double v = Math.sqrt(vx * vx + vy * vy);
+            if (v > v_max[i])
+            {
+                vx = vx * v_max[i] / v;
+                vy = vy * v_max[i] / v;
+            }
+            else if (v < a_in_r[i] * dt)
+            {
+                v_x[i] = v_y[i] = 0.0;
+                continue;
+            }
+
+            // Apply pseudo-brake-force
+            vx = vx * a_br_c[i];
+            vy = vy * a_br_c[i];
+            v_x[i] = vx;
+            v_y[i] = vy;
+
+            // position update (explicit euler)
+            p_x[i] = p_x[i] + dt * vx;
+            p_y[i] = p_y[i] + dt * vy;
+        }
+    }
+
+}
@@ -7,9 +7,9 @@ package crazyballrun.game.physics.bodies;
 import crazyballrun.game.GameConstants;
 import crazyballrun.game.level.Level;
 import crazyballrun.game.level.objects.LevelObject;
+import crazyballrun.game.physics.Contact;
 import crazyballrun.game.utilities.Vector2D;
 import java.util.ArrayList;
-import java.util.LinkedList;
 
 /**
  * The PhysicalBody offers an interface for physical objects in the world. This 
@@ -22,109 +22,74 @@ import java.util.LinkedList;
 public abstract class PhysicalBody {
     
     /**
-     * x-coordinate of position
+     * Store holding the state of the rigid body: a store of its own or a 
+     * shared one (see BodyStore). 
      */
-    protected double p_x = 0.0;
-
-    /**
-     * y-coordinate of position
-     */
-    protected double p_y = 0.0;
-
-    /**
-     * velocity in x-direction
-     */
-    protected double v_x = 0.0;
+    private volatile BodyStore mStore = null;
     
     /**
-     * velocity in y-direction
+     * Slot of the rigid body in its store. 
      */
-    protected double v_y = 0.0;
+    private int mSlot = 0;
     
     /**
-     * angular rotation speed
-     */
-    protected double v_r = 0.0;
-
-    /**
-     * current rotation
-     */
-    protected double r_c = 0.0;
-
-    /**
-     * x-component of orientation
-     */
-    protected double d_x = 0.0;
-
-    /**
-     * y-component of orientation
-     */
-    protected double d_y = -1.0;
-
-    /**
-     * currently invoked acceleration by player
-     */
-    protected double a_c = 0.0;
-
-    /**
-     * currently rotation velocity (angle) invoked by player
-     */
-    protected double v_rot = 0.0;
-
-    /**
-     * currently applied brake force
-     */
-    protected double a_br_c = 1.0;
-
-    /**
-     * maximum velocity
-     */
-    protected double v_max = 1.0;
-
-    /**
-     * constant for aerodynamics of the rigid body
+     * Constructor of PhysicalBody. The state is held by a store of its own 
+     * until the body is added to a shared store. 
      */
-    protected double c_aer = 0.1;
+    public PhysicalBody ()
+    {
+        new BodyStore(1).add(this);
+    }
     
     /**
-     * constant for road grip of the rigid body
-     */
-    protected double c_rg = 0.1;
-
-    /**
-     * brake force player may invoke
+     * Gets the store holding the state of the rigid body. 
+     * @return reference to the store
      */
-    protected double a_br = 0.2;
+    public BodyStore getStore ()
+    {
+        return mStore;
+    }
     
     /**
-     * acceleration player may invoke
+     * Gets the slot of the rigid body in its store. 
+     * @return slot index
      */
-    protected double a_in = 0.1;
-
-    /**
-     * backward acceleration the player may invoke
-     */
-    protected double a_in_r = 0.1;
-
+    public int getSlot ()
+    {
+        return mSlot;
+    }
+    
     /**
-     * rotation speed player may invoke
+     * Sets store and slot of the rigid body (used by the BodyStore when moving 
+     * the state of the body). 
+     * @param store new store
+     * @param slot slot in the new store
      */
-    protected double r_in = 0.1;
-
+    void setStore (BodyStore store, int slot)
+    {
+        mStore = store;
+        mSlot = slot;
+    }
+    
     /**
      * offset to the center
      */
     protected Vector2D p_off = new Vector2D();
     
     /**
-     * List of externally forced rotations for the next timestep.
+     * Sum of the externally forced rotations for the next timestep.
      */
-    private LinkedList<Double> r_ex_list = new LinkedList<Double>();
+    private double r_ex_sum = 0.0;
 
     /**
-     * List of externally forced accelerations for the next timestep.
+     * Sum of the externally forced accelerations (x, y) for the next timestep.
+     */
+    private double a_ex_x_sum = 0.0, a_ex_y_sum = 0.0;
+    
+    /**
+     * Number of attached external rotations and accelerations.
      */
-    private LinkedList<Vector2D> a_ex_list = new LinkedList<Vector2D>();
+    private int mExternalCount = 0;
 
     /**
      * List of all properties of the object.
@@ -171,12 +136,69 @@ public abstract class PhysicalBody {
         setProperty(property, value);
     }
     
+    /**
+     * Specifies if the rigid body is sleeping (see "updateSleep").
+     */
+    private volatile boolean mSleeping = false;
+    
+    /**
+     * Number of consecutive idle timesteps of the rigid body.
+     */
+    private int mIdleSteps = 0;
+    
+    /**
+     * Checks if the rigid body is sleeping. Sleeping bodies are neither 
+     * integrated nor checked for collisions by the PhysicsThread until they 
+     * are woken up. 
+     * @return "true" if sleeping
+     */
+    public boolean isSleeping ()
+    {
+        return mSleeping;
+    }
+    
+    /**
+     * Wakes up the rigid body (e.g. if it's touched or a force is attached).
+     */
+    public void wakeUp ()
+    {
+        mSleeping = false;
+        mIdleSteps = 0;
+    }
+    
+    /**
+     * Checks if the rigid body is idle, i.e. it's not moving and there are 
+     * neither internal nor external forces or torques. 
+     * @return "true" if idle
+     */
+    public boolean isIdle ()
+    {
+        BodyStore s = mStore;
+        int i = mSlot;
+        return s.v_x[i] == 0 && s.v_y[i] == 0 && s.v_rot[i] == 0 && s.a_c[i] == 0 &&
+               mExternalCount == 0;
+    }
+    
+    /**
+     * Counts the idle timesteps of the rigid body. After 
+     * GameConstants.SLEEP_STEPS idle timesteps in a row the body falls asleep.
+     * @param idle "true" if the body has been idle in the last timestep
+     */
+    public void updateSleep (boolean idle)
+    {
+        if (!idle)
+            wakeUp();
+        else if (++mIdleSteps >= GameConstants.SLEEP_STEPS)
+            mSleeping = true;
+    }
+    
     /**
      * Stops internal rotation of the rigid body. 
      */
     public void detachRotation () 
     {
-        v_rot = 0;
+        BodyStore s = mStore;
+        s.v_rot[mSlot] = 0;
     }
     
     /**
@@ -185,7 +207,9 @@ public abstract class PhysicalBody {
      */
     public void applyRotation (boolean left) 
     {
-        v_rot = left ? r_in : -r_in;
+        wakeUp();
+        BodyStore s = mStore;
+        s.v_rot[mSlot] = left ? s.r_in[mSlot] : -s.r_in[mSlot];
     }
     
     /**
@@ -193,7 +217,8 @@ public abstract class PhysicalBody {
      */
     public void detachAcceleration () 
     {
-        a_c = 0;
+        BodyStore s = mStore;
+        s.a_c[mSlot] = 0;
     }
     
     /**
@@ -202,45 +227,70 @@ public abstract class PhysicalBody {
      */
     public void applyAcceleration (boolean forward) 
     {
-        a_c = forward ? a_in : -a_in_r;
+        wakeUp();
+        BodyStore s = mStore;
+        s.a_c[mSlot] = forward ? s.a_in[mSlot] : -s.a_in_r[mSlot];
     }
     
     /**
      * Removes a rotation-value from the external rotations influencing the rigid
-     * bodies' orientation. 
+     * bodies' orientation. The value has to be attached before.
      * @param rotation external rotation
      */
-    public void detachRotation (Double rotation) 
+    public void detachRotation (double rotation) 
     {
-        r_ex_list.remove(rotation);
+        r_ex_sum -= rotation;
+        detachExternal();
     }
 
     /**
      * Adds a rotation-force to the rigid body.
      * @param rotation external rotation
      */
-    public void attachRotation (Double rotation) 
+    public void attachRotation (double rotation) 
     {
-        r_ex_list.add(rotation);
+        wakeUp();
+        r_ex_sum += rotation;
+        mExternalCount++;
     }
     
     /**
      * Removes a acceleration-vector from the external accelerations influencing 
-     * the rigid body. 
-     * @param force external acceleration vector
+     * the rigid body. The vector has to be attached before.
+     * @param x x-component of the external acceleration
+     * @param y y-component of the external acceleration
      */
-    public void detachAcceleration (Vector2D force) 
+    public void detachAcceleration (double x, double y) 
     {
-        a_ex_list.remove(force);
+        a_ex_x_sum -= x;
+        a_ex_y_sum -= y;
+        detachExternal();
     }
 
     /**
      * Attaches an external acceleration to the rigid body. 
-     * @param force external acceleration vector
+     * @param x x-component of the external acceleration
+     * @param y y-component of the external acceleration
      */
-    public void attachAcceleration (Vector2D force) 
+    public void attachAcceleration (double x, double y) 
     {
-        a_ex_list.add(force);
+        wakeUp();
+        a_ex_x_sum += x;
+        a_ex_y_sum += y;
+        mExternalCount++;
+    }
+    
+    /**
+     * Counts a detached external rotation or acceleration. If none is left, 
+     * the sums are reset (no rounding errors of the subtractions remain).
+     */
+    private void detachExternal ()
+    {
+        if (--mExternalCount <= 0)
+        {
+            mExternalCount = 0;
+            r_ex_sum = a_ex_x_sum = a_ex_y_sum = 0.0;
+        }
     }
 
     /**
@@ -248,7 +298,8 @@ public abstract class PhysicalBody {
      */
     public void applyBrakeForce () 
     {
-        a_br_c = a_br;
+        BodyStore s = mStore;
+        s.a_br_c[mSlot] = s.a_br[mSlot];
     }
 
     /**
@@ -256,7 +307,8 @@ public abstract class PhysicalBody {
      */
     public void detachBrakeForce () 
     {
-        a_br_c = 1.0;
+        BodyStore s = mStore;
+        s.a_br_c[mSlot] = 1.0;
     }
     
     /**
@@ -267,11 +319,13 @@ public abstract class PhysicalBody {
     {
         if (isRigidBody())
         {
-            p_x = p_x - 1.1 * dt * v_x;
-            p_y = p_y - 1.1 * dt * v_y;
-            v_x = -v_x;
-            v_y = -v_y;
-            r_c = r_c - dt * v_r;    
+            BodyStore s = mStore;
+            int i = mSlot;
+            s.p_x[i] = s.p_x[i] - 1.1 * dt * s.v_x[i];
+            s.p_y[i] = s.p_y[i] - 1.1 * dt * s.v_y[i];
+            s.v_x[i] = -s.v_x[i];
+            s.v_y[i] = -s.v_y[i];
+            s.r_c[i] = s.r_c[i] - dt * s.v_r[i];    
         }
     }
     
@@ -284,14 +338,52 @@ public abstract class PhysicalBody {
     {
         if (isRigidBody())
         {
-            p_x = p_x - dt * v_x;
-            p_y = p_y - dt * v_y;
-            v_x = -v_x / 2;
-            v_y = -v_y / 2;
-            r_c = r_c - dt * v_r;
+            BodyStore s = mStore;
+            int i = mSlot;
+            s.p_x[i] = s.p_x[i] - dt * s.v_x[i];
+            s.p_y[i] = s.p_y[i] - dt * s.v_y[i];
+            s.v_x[i] = -s.v_x[i] / 2;
+            s.v_y[i] = -s.v_y[i] / 2;
+            s.r_c[i] = s.r_c[i] - dt * s.v_r[i];
         }
     }
 
+    /**
+     * Applies an impulse to the rigid body, i.e. changes its velocity by the 
+     * impulse divided by its mass (used for collision reaction). 
+     * @param x x-coordinate of the impulse
+     * @param y y-coordinate of the impulse
+     */
+    public void applyImpulse (double x, double y)
+    {
+        wakeUp();
+        BodyStore s = mStore;
+        int i = mSlot;
+        s.v_x[i] += x * s.m_inv[i];
+        s.v_y[i] += y * s.m_inv[i];
+    }
+    
+    /**
+     * Gets the inverse mass of the rigid body ("0" for immovable bodies). 
+     * @return inverse mass
+     */
+    public double getInverseMass ()
+    {
+        BodyStore s = mStore;
+        return s.m_inv[mSlot];
+    }
+    
+    /**
+     * Gets the restitution of the rigid body, i.e. the part of the velocity 
+     * along the contact normal which is kept (reversed) after a collision.
+     * @return restitution between 0.0 and 1.0
+     */
+    public double getRestitution ()
+    {
+        BodyStore s = mStore;
+        return s.c_res[mSlot];
+    }
+
     /**
      * Updates velocity, orientation and position of the rigid body due to internal 
      * and external forces by performing the explicit euler method (for integration  
@@ -301,62 +393,41 @@ public abstract class PhysicalBody {
      * @param c_c centripital force constant (location dependend)
      */
     public void update (double dt, double c_w, double c_c) {
-
-        // rotation speed (angular velocity)
-        v_r = v_rot;
-        for (Double r_ex : r_ex_list)
-            v_r += r_ex;
-
-        // rotation update (explicit euler)
-        r_c = r_c + dt * v_r;
-
-        // update orientation
-        d_x = -Math.sin(r_c);
-        d_y = -Math.cos(r_c);        
-        
-        // acceleration = internal acceleration - air resistance
-        double a_x = a_c * d_x - c_w * c_aer * v_x;
-        double a_y = a_c * d_y - c_w * c_aer * v_y;
-        
-        // pseudo-torque for velocity-orientation-correction
-        double vr_step = -v_r * dt * c_c * c_rg;
-        double vx_old = v_x;
-        double vy_old = v_y;
-        
-        v_x = vx_old * Math.cos(vr_step) - vy_old * Math.sin(vr_step);
-        v_y = vx_old * Math.sin(vr_step) + vy_old * Math.cos(vr_step);
-
-        // acceleration + external acceleration forces
-        for (Vector2D a_ex : a_ex_list)
-        {
-            a_x += a_ex.x;
-            a_y += a_ex.y;
-        }
-        
-        // velocity update (explicit euler)
-        v_x = v_x + dt * a_x;
-        v_y = v_y + dt * a_y;
-        
-        // maximum velocity
-        double v = Math.sqrt(v_x * v_x + v_y * v_y);
-        if (v > v_max)
-        {
-            v_x = v_x * v_max / v; 
-            v_y = v_y * v_max / v; 
-        }
-        else if (v < a_in_r * dt)
-        {
-            v_x = v_y = 0.0;
-            return;
-        }
-        
-        // Apply pseudo-brake-force
-        v_x = v_x * a_br_c;
-        v_y = v_y * a_br_c;
-        
-        // position update (explicit euler)
-        p_x = p_x + dt * v_x;
-        p_y = p_y + dt * v_y;
+        prepareUpdate(c_w, c_c);
+        BodyStore s = mStore;
+        s.integrate(dt, mSlot, mSlot + 1);
+    }
+    
+    /**
+     * Writes the inputs of the next integration into the store: the ground 
+     * dependent values and the sums of the external rotations and 
+     * accelerations.
+     * The integration is done by "update(double, double, double)" for this 
+     * body only or by "BodyStore.integrate(double)" for all bodies of a store. 
+     * @param c_w air resistance value (location dependend)
+     * @param c_c centripital force constant (location dependend)
+     */
+    public void prepareUpdate (double c_w, double c_c) {
+        BodyStore s = mStore;
+        s.c_w[mSlot] = c_w;
+        s.c_c[mSlot] = c_c;
+        s.r_ex[mSlot] = r_ex_sum;
+        s.a_ex_x[mSlot] = a_ex_x_sum;
+        s.a_ex_y[mSlot] = a_ex_y_sum;
+    }
+    
+    /**
+     * Remembers the current position and rotation as the state at the beginning
+     * of the next timestep. The renderer interpolates between this state and 
+     * the state after the timestep. 
+     */
+    public void storeState ()
+    {
+        BodyStore s = mStore;
+        int i = mSlot;
+        s.p_x_prev[i] = s.p_x[i];
+        s.p_y_prev[i] = s.p_y[i];
+        s.r_c_prev[i] = s.r_c[i];
     }
     
     /**
@@ -366,8 +437,10 @@ public abstract class PhysicalBody {
      */
     public void applyOffset (double x, double y)
     {
-        p_x += x;
-        p_y += y;
+        wakeUp();
+        BodyStore s = mStore;
+        s.p_x[mSlot] += x;
+        s.p_y[mSlot] += y;
     }
             
     /**
@@ -377,8 +450,10 @@ public abstract class PhysicalBody {
      */
     public void setPosition(double x, double y) 
     {
-        p_x = x;
-        p_y = y;
+        wakeUp();
+        BodyStore s = mStore;
+        s.p_x[mSlot] = s.p_x_prev[mSlot] = x;
+        s.p_y[mSlot] = s.p_y_prev[mSlot] = y;
     }
     
     /**
@@ -388,8 +463,10 @@ public abstract class PhysicalBody {
      */
     public void setVelocity(double x, double y) 
     {
-        v_x = x;
-        v_y = y;
+        wakeUp();
+        BodyStore s = mStore;
+        s.v_x[mSlot] = x;
+        s.v_y[mSlot] = y;
     }
 
     /**
@@ -398,9 +475,11 @@ public abstract class PhysicalBody {
      */
     public void setRotation (double angle) 
     {
-        r_c = angle;
-        d_x = -Math.sin(r_c);
-        d_y = -Math.cos(r_c);        
+        wakeUp();
+        BodyStore s = mStore;
+        s.r_c[mSlot] = s.r_c_prev[mSlot] = angle;
+        s.d_x[mSlot] = -BodyStore.sin(angle);
+        s.d_y[mSlot] = -BodyStore.cos(angle);        
     }
     
     /**
@@ -409,7 +488,28 @@ public abstract class PhysicalBody {
      */
     public Vector2D getVelocity () 
     {
-        return new Vector2D(v_x, v_y);
+        BodyStore s = mStore;
+        return new Vector2D(s.v_x[mSlot], s.v_y[mSlot]);
+    }
+    
+    /**
+     * Gets the x-coordinate of the velocity of the rigid body. 
+     * @return x-coordinate of the velocity
+     */
+    public double getVelocityX () 
+    {
+        BodyStore s = mStore;
+        return s.v_x[mSlot];
+    }
+    
+    /**
+     * Gets the y-coordinate of the velocity of the rigid body. 
+     * @return y-coordinate of the velocity
+     */
+    public double getVelocityY () 
+    {
+        BodyStore s = mStore;
+        return s.v_y[mSlot];
     }
     
     /**
@@ -418,7 +518,28 @@ public abstract class PhysicalBody {
      */
     public Vector2D getPosition () 
     {
-        return new Vector2D(p_x, p_y);
+        BodyStore s = mStore;
+        return new Vector2D(s.p_x[mSlot], s.p_y[mSlot]);
+    }
+    
+    /**
+     * Gets the x-coordinate of the position (upper left) of the rigid body. 
+     * @return x-coordinate of the position
+     */
+    public double getPositionX () 
+    {
+        BodyStore s = mStore;
+        return s.p_x[mSlot];
+    }
+    
+    /**
+     * Gets the y-coordinate of the position (upper left) of the rigid body. 
+     * @return y-coordinate of the position
+     */
+    public double getPositionY () 
+    {
+        BodyStore s = mStore;
+        return s.p_y[mSlot];
     }
     
     /**
@@ -429,7 +550,50 @@ public abstract class PhysicalBody {
      */
     public Vector2D getCenter () 
     {
-        return new Vector2D(p_x + p_off.x, p_y + p_off.y);
+        return new Vector2D(getPositionX() + p_off.x, getPositionY() + p_off.y);
+    }
+    
+    /**
+     * Gets the x-coordinate of the center point of the rigid body.
+     * @return x-coordinate of the center point
+     */
+    public double getCenterX () 
+    {
+        return getPositionX() + p_off.x;
+    }
+    
+    /**
+     * Gets the y-coordinate of the center point of the rigid body.
+     * @return y-coordinate of the center point
+     */
+    public double getCenterY () 
+    {
+        return getPositionY() + p_off.y;
+    }
+    
+    /**
+     * Gets the position (upper left) of the rigid body at the beginning of the
+     * last timestep. 
+     * @return previous position of the rigid body
+     */
+    public Vector2D getPreviousPosition () 
+    {
+        BodyStore s = mStore;
+        return new Vector2D(s.p_x_prev[mSlot], s.p_y_prev[mSlot]);
+    }
+    
+    /**
+     * Interpolates the center point of the rigid body between the state at the
+     * beginning and the state at the end of the last timestep. 
+     * @param alpha interpolation factor (0.0 = previous state, 1.0 = current state)
+     * @return interpolated center point of the rigid body
+     */
+    public Vector2D getInterpolatedCenter (double alpha) 
+    {
+        BodyStore s = mStore;
+        int i = mSlot;
+        return new Vector2D(s.p_x_prev[i] + alpha * (s.p_x[i] - s.p_x_prev[i]) + p_off.x, 
+                            s.p_y_prev[i] + alpha * (s.p_y[i] - s.p_y_prev[i]) + p_off.y);
     }
     
     /**
@@ -486,7 +650,8 @@ public abstract class PhysicalBody {
      */
     public Vector2D getDirection () 
     {
-        return new Vector2D(d_x, d_y);
+        BodyStore s = mStore;
+        return new Vector2D(s.d_x[mSlot], s.d_y[mSlot]);
     }    
     
     /**
@@ -495,7 +660,28 @@ public abstract class PhysicalBody {
      */
     public double getRotation () 
     {
-        return r_c;
+        BodyStore s = mStore;
+        return s.r_c[mSlot];
+    }
+    
+    /**
+     * Current angular velocity of the rigid body.
+     * @return angular velocity
+     */
+    public double getAngularVelocity () 
+    {
+        BodyStore s = mStore;
+        return s.v_r[mSlot];
+    }
+    
+    /**
+     * Rotation angle of the rigid body at the beginning of the last timestep. 
+     * @return previous rotation angle
+     */
+    public double getPreviousRotation () 
+    {
+        BodyStore s = mStore;
+        return s.r_c_prev[mSlot];
     }
     
     /**
@@ -518,7 +704,9 @@ public abstract class PhysicalBody {
      */
     public double getSpeed () 
     {
-        return Math.sqrt(v_x * v_x + v_y * v_y);
+        double vx = getVelocityX();
+        double vy = getVelocityY();
+        return Math.sqrt(vx * vx + vy * vy);
     }
     
     /**
@@ -527,7 +715,7 @@ public abstract class PhysicalBody {
      */
     public boolean hasSpeed () 
     {
-        return (v_x != 0 || v_y != 0);
+        return (getVelocityX() != 0 || getVelocityY() != 0);
     }
 
     /**
@@ -577,6 +765,16 @@ public abstract class PhysicalBody {
      */
     public final static String P_BRAKE_FORCE = "BrakeForce";
     
+    /**
+     * Physical property name for mass of the body ("0" for immovable bodies).
+     */
+    public final static String P_MASS = "Mass";
+    
+    /**
+     * Physical property name for restitution (bounciness) of the body.
+     */
+    public final static String P_RESTITUTION = "Restitution";
+    
     /**
      * Gets the value of a physical property of the rigid body. 
      * @param property name of the property
@@ -584,29 +782,31 @@ public abstract class PhysicalBody {
      */
     public double getPhysicalProperty (String property) 
     {
+        BodyStore s = mStore;
+        int i = mSlot;
         if (property.equals(P_MAXIMUM_SPEED))
         {
-            return v_max;
+            return s.v_max[i];
         }
         else if (property.equals(P_AERODYNAMICS))
         {
-            return c_aer;
+            return s.c_aer[i];
         }
         else if (property.equals(P_ROAD_GRIP))
         {
-            return c_rg;
+            return s.c_rg[i];
         }
         else if (property.equals(P_ACCELERATION))
         {
-            return a_in;
+            return s.a_in[i];
         }
         else if (property.equals(P_BACKWARDS_ACCELERATION))
         {
-            return a_in_r;
+            return s.a_in_r[i];
         }
         else if (property.equals(P_ROTATION))
         {
-            return r_in;
+            return s.r_in[i];
         }
         else if (property.equals(P_CENTER_OFFSET_X))
         {
@@ -618,7 +818,16 @@ public abstract class PhysicalBody {
         }  
         else if (property.equals(P_BRAKE_FORCE))
         {
-            return a_br;
+            return s.a_br[i];
+        }
+        else if (property.equals(P_MASS))
+        {
+            double vInverse = s.m_inv[i];
+            return vInverse > 0.0 ? 1.0 / vInverse : 0.0;
+        }
+        else if (property.equals(P_RESTITUTION))
+        {
+            return s.c_res[i];
         }
         
         throw new IllegalArgumentException("Illegal property: " + property);
@@ -633,29 +842,31 @@ public abstract class PhysicalBody {
      */
     public void setPhysicalProperty (String property, double value) 
     {
+        BodyStore s = mStore;
+        int i = mSlot;
         if (property.equals(P_MAXIMUM_SPEED))
         {
-            v_max = value;
+            s.v_max[i] = value;
         }
         else if (property.equals(P_AERODYNAMICS))
         {
-            c_aer = 1 - value;
+            s.c_aer[i] = 1 - value;
         }
         else if (property.equals(P_ROAD_GRIP))
         {
-            c_rg = value;
+            s.c_rg[i] = value;
         }
         else if (property.equals(P_ACCELERATION))
         {
-            a_in = value;
+            s.a_in[i] = value;
         }
         else if (property.equals(P_BACKWARDS_ACCELERATION))
         {
-            a_in_r = value;
+            s.a_in_r[i] = value;
         }
         else if (property.equals(P_ROTATION))
         {
-            r_in = value;
+            s.r_in[i] = value;
         }
         else if (property.equals(P_CENTER_OFFSET_X))
         {
@@ -667,7 +878,15 @@ public abstract class PhysicalBody {
         }
         else if (property.equals(P_BRAKE_FORCE))
         {
-            a_br = 1 - value;
+            s.a_br[i] = 1 - value;
+        }
+        else if (property.equals(P_MASS))
+        {
+            s.m_inv[i] = value > 0.0 ? 1.0 / value : 0.0;
+        }
+        else if (property.equals(P_RESTITUTION))
+        {
+            s.c_res[i] = value;
         }
     }
     
@@ -739,6 +958,151 @@ public abstract class PhysicalBody {
      */
     public abstract Vector2D isColliding (Level map);
 
+    /**
+     * Direction pointing away from the wall of the last texture collision. 
+     */
+    protected Vector2D mContactNormal = null;
+    
+    /**
+     * Gets the contact normal of the last texture collision found by 
+     * "isColliding(Level)", i.e. the direction pointing away from the wall. 
+     * @return normalized direction (or null if unknown)
+     */
+    public Vector2D getContactNormal ()
+    {
+        return mContactNormal;
+    }
+    
+    /**
+     * Calculates the contact with another rigid body which is colliding with 
+     * this one. This implementation uses the bounding spheres of both bodies,
+     * bodies with a more exact shape should override it. 
+     * @param obj reference to the other rigid body
+     * @param contact contact to fill (normal points from this body to the other)
+     * @return "true" if the bodies are penetrating each other
+     */
+    public boolean getContact (PhysicalBody obj, Contact contact)
+    {
+        double dx = obj.getCenterX() - getCenterX();
+        double dy = obj.getCenterY() - getCenterY();
+        double vDistance = Math.sqrt(dx * dx + dy * dy);
+        double vDepth = getBoundingSphere() + obj.getBoundingSphere() - vDistance;
+        if (vDepth <= 0.0)
+            return false;
+        
+        // bodies at the same position are pushed apart along this body's direction
+        Vector2D vDirection = vDistance > 0.0 ? null : getDirection();
+        double nx = vDistance > 0.0 ? dx / vDistance : vDirection.x;
+        double ny = vDistance > 0.0 ? dy / vDistance : vDirection.y;
+        contact.set(getCenterX() + nx * getBoundingSphere(), getCenterY() + ny * getBoundingSphere(), nx, ny, vDepth);
+        return true;
+    }
+    
+    /**
+     * Calculates the contact with a wall found by "isColliding(Level)". The 
+     * normal is the contact normal of the distance field (or the opposite of 
+     * the movement if there's none), the depth is the distance of the 
+     * collision point to free space. 
+     * @param map reference to the level
+     * @param point collision point
+     * @param contact contact to fill (normal points away from the wall)
+     * @return "true" if a contact normal could be found
+     */
+    public boolean getWallContact (Level map, Vector2D point, Contact contact)
+    {
+        double nx, ny;
+        if (mContactNormal != null)
+        {
+            nx = mContactNormal.x;
+            ny = mContactNormal.y;
+        }
+        else
+        {
+            double v = getSpeed();
+            if (v == 0.0)
+                return false;
+            nx = -getVelocityX() / v;
+            ny = -getVelocityY() / v;
+        }
+        double vDepth = Math.max(0.0, -map.getWallDistance(point.x, point.y, getLayer()));
+        contact.set(point.x, point.y, nx, ny, vDepth);
+        return true;
+    }
+    
+    /**
+     * Checks for a collision with a texture along the movement of the last 
+     * timestep (continuous collision detection). If no point of the body has 
+     * moved further than GameConstants.CCD_THRESHOLD, only the current pose is 
+     * checked ("isColliding(Level)"). Otherwise the poses between the previous
+     * and the current one are checked by conservative advancement: the body
+     * may move as far as the distance field allows in free space, and 
+     * GameConstants.CCD_SUBSTEP near walls. The polygon is only updated and 
+     * checked at poses where the bounding sphere touches a wall. If a 
+     * collision is found, the body is left at the first colliding pose 
+     * (including its orientation), otherwise at the current pose. 
+     * @param map reference to the level
+     * @return collision point (or null if no collision)
+     */
+    public Vector2D isCollidingContinuous (Level map)
+    {
+        BodyStore s = mStore;
+        int i = mSlot;
+        double x0 = s.p_x_prev[i], y0 = s.p_y_prev[i], r0 = s.r_c_prev[i];
+        double x1 = s.p_x[i], y1 = s.p_y[i], r1 = s.r_c[i];
+        double dx = x1 - x0;
+        double dy = y1 - y0;
+        double dr = r1 - r0;
+        double vRadius = getBoundingSphere();
+        double vMotion = Math.sqrt(dx * dx + dy * dy) + Math.abs(dr) * vRadius;
+        if (vMotion <= GameConstants.CCD_THRESHOLD)
+            return isColliding(map);
+        
+        // free distance around the bounding sphere at the previous pose
+        double vClearance = map.getWallDistance(x0 + p_off.x, y0 + p_off.y, getLayer()) - vRadius;
+        double t = 0.0;
+        boolean vMoved = false;
+        while (true)
+        {
+            t = Math.min(1.0, t + Math.max(vClearance, GameConstants.CCD_SUBSTEP) / vMotion);
+            if (t >= 1.0)
+                break;
+            
+            vClearance = map.getWallDistance(x0 + t * dx + p_off.x, y0 + t * dy + p_off.y, getLayer()) - vRadius;
+            if (vClearance > 0.0)
+                continue;
+            setPose(x0 + t * dx, y0 + t * dy, r0 + t * dr);
+            updateData();
+            vMoved = true;
+            Vector2D vPoint = isColliding(map);
+            if (vPoint != null)
+                return vPoint;
+        }
+        
+        if (vMoved)
+        {
+            setPose(x1, y1, r1);
+            updateData();
+        }
+        return isColliding(map);
+    }
+
+    /**
+     * Moves the rigid body to a pose of the current timestep and updates its
+     * orientation (the state at the beginning of the timestep is kept). 
+     * @param x x-coordinate of position
+     * @param y y-coordinate of position
+     * @param angle rotation angle
+     */
+    private void setPose (double x, double y, double angle)
+    {
+        BodyStore s = mStore;
+        s.p_x[mSlot] = x;
+        s.p_y[mSlot] = y;
+        s.r_c[mSlot] = angle;
+        s.d_x[mSlot] = -BodyStore.sin(angle);
+        s.d_y[mSlot] = -BodyStore.cos(angle);
+    }
+
     /**
      * Updates the collision data of the rigid body due to the new position and
      * orientation. 
@@ -60,6 +60,13 @@ public class SoftBody extends PhysicalBody {
         return null;
     }
 
+    @Override
+    public Vector2D isCollidingContinuous(Level map) 
+    {
+        // No texture collisions.
+        return null;
+    }
+
     @Override
     public void updateData() 
     {
@@ -6,12 +6,12 @@ package crazyballrun.game.physics.bodies;
 
 import crazyballrun.game.GameConstants;
 import crazyballrun.game.level.Level;
-import crazyballrun.game.physics.CollisionTexture;
+import crazyballrun.game.physics.Contact;
 import crazyballrun.game.utilities.Vector2D;
 import java.awt.Color;
 import java.awt.Polygon;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
-import java.util.LinkedList;
 
 /**
  * The Vehicle class extens the RigidBody class by specifying collision and 
@@ -49,9 +49,38 @@ public class Vehicle extends PhysicalBody {
     private Polygon mCurrentPolygon = new Polygon();
     
     /**
-     * List of collision points. This list is recreated after each update. 
+     * Rotation angle the current polygon has been created for (NaN if the 
+     * polygon has to be recreated).
      */
-    private LinkedList<Vector2D> mCollisionPoints = new LinkedList<Vector2D>();
+    private double mPolygonAngle = Double.NaN;
+    
+    /**
+     * Bounding box of the current polygon (in vehicle-pixels). 
+     */
+    private int mMinX, mMinY, mMaxX, mMaxY;
+    
+    /**
+     * x-coordinates of the collision points (in texture-measurement). The 
+     * arrays are allocated once in "initialize()" with the capacity needed
+     * for any rotation of the polygon. 
+     */
+    private double [] mPointsX = new double[0];
+    
+    /**
+     * y-coordinates of the collision points (in texture-measurement). 
+     */
+    private double [] mPointsY = new double[0];
+    
+    /**
+     * Number of valid collision points. 
+     */
+    private int mPointCount = 0;
+    
+    /**
+     * Position the collision points have been created for (NaN if the 
+     * collision points have to be recreated).
+     */
+    private double mPointsPositionX = Double.NaN, mPointsPositionY = Double.NaN;
     
     /**
      * Radius of the bounding sphere. 
@@ -74,10 +103,10 @@ public class Vehicle extends PhysicalBody {
         if (output != null)
         {
             int x, y;
-            for (Vector2D vPoint : mCollisionPoints)
+            for (int i = 0; i < mPointCount; i++)
             {
-                x = (int)vPoint.getX();
-                y = (int)vPoint.getY();
+                x = (int)mPointsX[i];
+                y = (int)mPointsY[i];
                 if (x >= 0 && x < output.getWidth() && y >= 0 && y < output.getHeight())
                 {
                     output.setRGB(x, y, color.getRGB());
@@ -93,87 +122,386 @@ public class Vehicle extends PhysicalBody {
     protected void updatePolygon (double angle) {
         int offsetx = (int) p_off.getX();
         int offsety = (int) p_off.getY();
+        double cos = BodyStore.cos(-angle);
+        double sin = BodyStore.sin(-angle);
         
         // Apply rotation to polygon data
-        for (int i = 0; i < mOriginalPolygon.npoints; i++) {
+        int n = mOriginalPolygon.npoints;
+        mMinX = mMinY = Integer.MAX_VALUE;
+        mMaxX = mMaxY = Integer.MIN_VALUE;
+        for (int i = 0; i < n; i++) {
             int x = mOriginalPolygon.xpoints[i] - offsetx;
             int y = mOriginalPolygon.ypoints[i] - offsety;
-            mCurrentPolygon.xpoints[i] = (int)(x * Math.cos(-angle) - y * Math.sin(-angle));
-            mCurrentPolygon.ypoints[i] = (int)(x * Math.sin(-angle) + y * Math.cos(-angle));
-            mCurrentPolygon.xpoints[i] += offsetx;
-            mCurrentPolygon.ypoints[i] += offsety;
+            int cx = (int)(x * cos - y * sin) + offsetx;
+            int cy = (int)(x * sin + y * cos) + offsety;
+            mCurrentPolygon.xpoints[i] = cx;
+            mCurrentPolygon.ypoints[i] = cy;
+            mMinX = Math.min(mMinX, cx);
+            mMinY = Math.min(mMinY, cy);
+            mMaxX = Math.max(mMaxX, cx);
+            mMaxY = Math.max(mMaxY, cy);
+        }
+        mCurrentPolygon.npoints = n;
+        mPolygonAngle = angle;
+        mPointsPositionX = Double.NaN;
+    }
+    
+    /**
+     * Checks if a point (in vehicle-pixels) is inside of the current polygon
+     * (same insideness-rules as Polygon.contains, but without creating the 
+     * bounding box object of the polygon).
+     * @param x x-coordinate of the point
+     * @param y y-coordinate of the point
+     * @return "true" if the point is inside of the polygon
+     */
+    private boolean containsPoint (double x, double y) {
+        int n = mCurrentPolygon.npoints;
+        if (n <= 2 || x < mMinX || y < mMinY || x >= mMaxX || y >= mMaxY)
+            return false;
+        
+        int [] xpoints = mCurrentPolygon.xpoints;
+        int [] ypoints = mCurrentPolygon.ypoints;
+        int hits = 0;
+        int lastx = xpoints[n - 1];
+        int lasty = ypoints[n - 1];
+        int curx, cury;
+        for (int i = 0; i < n; lastx = curx, lasty = cury, i++) {
+            curx = xpoints[i];
+            cury = ypoints[i];
+            if (cury == lasty)
+                continue;
+            
+            int leftx;
+            if (curx < lastx) {
+                if (x >= lastx)
+                    continue;
+                leftx = curx;
+            } else {
+                if (x >= curx)
+                    continue;
+                leftx = lastx;
+            }
+
+            double test1, test2;
+            if (cury < lasty) {
+                if (y < cury || y >= lasty)
+                    continue;
+                if (x < leftx) {
+                    hits++;
+                    continue;
+                }
+                test1 = x - curx;
+                test2 = y - cury;
+            } else {
+                if (y < lasty || y >= cury)
+                    continue;
+                if (x < leftx) {
+                    hits++;
+                    continue;
+                }
+                test1 = x - lastx;
+                test2 = y - lasty;
+            }
+
+            if (test1 < (test2 / (lasty - cury) * (lastx - curx)))
+                hits++;
         }
-        mCurrentPolygon.reset();
-        mCurrentPolygon.npoints = mOriginalPolygon.npoints;        
+        return (hits & 1) != 0;
     }
     
     @Override
     public boolean isColliding(double px, double py) {
-        double x = (px - p_x) * sTextureSize;
-        double y = (py - p_y) * sTextureSize;
-        return mCurrentPolygon.contains(x, y);
+        double x = (px - getPositionX()) * sTextureSize;
+        double y = (py - getPositionY()) * sTextureSize;
+        return containsPoint(x, y);
     }
 
     /**
-     * Creates a list of all collision points of the vehicle. 
+     * Creates all collision points of the vehicle (one per pixel of the 
+     * perimeter of the current polygon). 
      */
     protected void createCollisionPoints () {
-        mCollisionPoints.clear();
+        int n = mCurrentPolygon.npoints;
+        int [] xpoints = mCurrentPolygon.xpoints;
+        int [] ypoints = mCurrentPolygon.ypoints;
+        double p_x = getPositionX();
+        double p_y = getPositionY();
+        mPointCount = 0;
         
         // Go through all polygon points of the vehicle
-        for (int i = 0; i < mCurrentPolygon.npoints; i++) {
+        for (int i = 0; i < n; i++) {
+            int j = (i + 1) % n;
 
             // transformation from vehicle-pixel-coordinates into world-texture-coordinates
-            double px = p_x + mCurrentPolygon.xpoints[i] * sPixelInTexture;
-            double py = p_y + mCurrentPolygon.ypoints[i] * sPixelInTexture;
-            double qx = p_x + mCurrentPolygon.xpoints[(i+1) % mCurrentPolygon.npoints] * sPixelInTexture;
-            double qy = p_y + mCurrentPolygon.ypoints[(i+1) % mCurrentPolygon.npoints] * sPixelInTexture;
+            double px = p_x + xpoints[i] * sPixelInTexture;
+            double py = p_y + ypoints[i] * sPixelInTexture;
+            double qx = p_x + xpoints[j] * sPixelInTexture;
+            double qy = p_y + ypoints[j] * sPixelInTexture;
 
-            int length = Math.abs(mCurrentPolygon.xpoints[i] - mCurrentPolygon.xpoints[(i+1) % mCurrentPolygon.npoints]) 
-                    + Math.abs(mCurrentPolygon.ypoints[i] - mCurrentPolygon.ypoints[(i+1) % mCurrentPolygon.npoints]);
+            int length = Math.abs(xpoints[i] - xpoints[j]) + Math.abs(ypoints[i] - ypoints[j]);
+            ensureCapacity(mPointCount + length);
             
             // create collision points in between of polygon point p and q
             for (int k = 0; k < length; k++) {
-                mCollisionPoints.add(new Vector2D(px + k * (qx - px) / length, py + k * (qy - py) / length));
+                mPointsX[mPointCount] = px + k * (qx - px) / length;
+                mPointsY[mPointCount] = py + k * (qy - py) / length;
+                mPointCount++;
             }
         }
+        mPointsPositionX = p_x;
+        mPointsPositionY = p_y;
+    }
+    
+    /**
+     * Makes sure the collision point arrays can hold a number of points.
+     * @param capacity number of points
+     */
+    private void ensureCapacity (int capacity) {
+        if (capacity > mPointsX.length) {
+            int vCapacity = Math.max(capacity, 2 * mPointsX.length);
+            double [] vPointsX = new double[vCapacity];
+            double [] vPointsY = new double[vCapacity];
+            System.arraycopy(mPointsX, 0, vPointsX, 0, mPointCount);
+            System.arraycopy(mPointsY, 0, vPointsY, 0, mPointCount);
+            mPointsX = vPointsX;
+            mPointsY = vPointsY;
+        }
     }
     
     @Override
     public boolean isColliding(PhysicalBody obj) 
     {
-        double dist = obj.getCenter().distance(getCenter());
+        double dx = obj.getCenterX() - getCenterX();
+        double dy = obj.getCenterY() - getCenterY();
+        double radius = obj.getBoundingSphere() + mBoundingSphere;
 
         // check collision between bounding spheres
-        if (dist > obj.getBoundingSphere() + mBoundingSphere)
+        if (Math.sqrt(dx * dx + dy * dy) > radius)
             return false;
             
         // check collision between polygon and other object
-        for (Vector2D vPoint : mCollisionPoints) 
-            if (obj.isColliding(vPoint.x, vPoint.y))
+        for (int i = 0; i < mPointCount; i++) 
+            if (obj.isColliding(mPointsX[i], mPointsY[i]))
                 return true;
         
         return false;
     }
 
+    /**
+     * Calculates the contact with another vehicle by the separating axis 
+     * theorem: the polygons are projected onto the normals of all their edges,
+     * the axis with the smallest overlap gives normal and penetration depth. 
+     * The contact point is the polygon point of this vehicle reaching furthest
+     * along the normal. Other bodies are handled by their bounding spheres. 
+     * @param obj reference to the other rigid body
+     * @param contact contact to fill (normal points from this body to the other)
+     * @return "true" if the bodies are penetrating each other
+     */
     @Override
-    public Vector2D isColliding(Level map) {
-        for (Vector2D vPoint : mCollisionPoints)
+    public boolean getContact (PhysicalBody obj, Contact contact)
+    {
+        if (!(obj instanceof Vehicle))
+            return super.getContact(obj, contact);
+        
+        Vehicle vOther = (Vehicle) obj;
+        contact.depth = Double.MAX_VALUE;
+        if (!findSeparatingAxis(this, this, vOther, contact) || !findSeparatingAxis(vOther, this, vOther, contact))
+            return false;
+        
+        // support point of this polygon along the normal
+        double vMax = -Double.MAX_VALUE;
+        for (int i = 0; i < mCurrentPolygon.npoints; i++)
+        {
+            double px = getPositionX() + mCurrentPolygon.xpoints[i] * sPixelInTexture;
+            double py = getPositionY() + mCurrentPolygon.ypoints[i] * sPixelInTexture;
+            double d = px * contact.nx + py * contact.ny;
+            if (d > vMax)
+            {
+                vMax = d;
+                contact.x = px;
+                contact.y = py;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Projects both polygons onto the normals of the edges of one of them. The
+     * penetration along an axis is the distance one polygon has to be moved 
+     * along the axis to separate them. If an axis with a smaller penetration 
+     * than the depth of the contact is found, normal (pointing from the first 
+     * to the second vehicle) and depth of the contact are replaced. 
+     * @param edges vehicle whose edges are used
+     * @param a first vehicle
+     * @param b second vehicle
+     * @param contact contact to update
+     * @return "false" if a separating axis (no overlap) has been found
+     */
+    private static boolean findSeparatingAxis (Vehicle edges, Vehicle a, Vehicle b, Contact contact)
+    {
+        Polygon vPolygon = edges.mCurrentPolygon;
+        int n = vPolygon.npoints;
+        for (int i = 0; i < n; i++)
         {
-            if ( map.getGroundProperty(vPoint, getLayer()) 
-                    == CollisionTexture.GroundProperty.WALL)
+            double nx = vPolygon.ypoints[(i + 1) % n] - vPolygon.ypoints[i];
+            double ny = vPolygon.xpoints[i] - vPolygon.xpoints[(i + 1) % n];
+            double vLength = Math.sqrt(nx * nx + ny * ny);
+            if (vLength == 0.0)
+                continue;
+            nx /= vLength;
+            ny /= vLength;
+            
+            // moving b along +n or along -n
+            double vForward = a.getProjectionMax(nx, ny) - b.getProjectionMin(nx, ny);
+            double vBackward = b.getProjectionMax(nx, ny) - a.getProjectionMin(nx, ny);
+            double vDepth = Math.min(vForward, vBackward);
+            if (vDepth <= 0.0)
+                return false;
+            if (vDepth < contact.depth)
             {
-                return vPoint;
+                double vSign = vForward <= vBackward ? 1.0 : -1.0;
+                contact.nx = vSign * nx;
+                contact.ny = vSign * ny;
+                contact.depth = vDepth;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Gets the maximum projection of the polygon (in texture-coordinates) onto
+     * an axis. 
+     * @param nx x-coordinate of the normalized axis
+     * @param ny y-coordinate of the normalized axis
+     * @return maximum projection
+     */
+    private double getProjectionMax (double nx, double ny)
+    {
+        double vMax = -Double.MAX_VALUE;
+        for (int i = 0; i < mCurrentPolygon.npoints; i++)
+            vMax = Math.max(vMax, mCurrentPolygon.xpoints[i] * nx + mCurrentPolygon.ypoints[i] * ny);
+        return vMax * sPixelInTexture + getPositionX() * nx + getPositionY() * ny;
+    }
+    
+    /**
+     * Gets the minimum projection of the polygon (in texture-coordinates) onto
+     * an axis. 
+     * @param nx x-coordinate of the normalized axis
+     * @param ny y-coordinate of the normalized axis
+     * @return minimum projection
+     */
+    private double getProjectionMin (double nx, double ny)
+    {
+        double vMin = Double.MAX_VALUE;
+        for (int i = 0; i < mCurrentPolygon.npoints; i++)
+            vMin = Math.min(vMin, mCurrentPolygon.xpoints[i] * nx + mCurrentPolygon.ypoints[i] * ny);
+        return vMin * sPixelInTexture + getPositionX() * nx + getPositionY() * ny;
+    }
+    
+    /**
+     * Calculates the contact with a wall found by "isColliding(Level)". In 
+     * addition to the default implementation the penetration depth is the 
+     * maximum distance to free space of all polygon points. 
+     * @param map reference to the level
+     * @param point collision point
+     * @param contact contact to fill (normal points away from the wall)
+     * @return "true" if a contact normal could be found
+     */
+    @Override
+    public boolean getWallContact (Level map, Vector2D point, Contact contact)
+    {
+        if (!super.getWallContact(map, point, contact))
+            return false;
+        for (int i = 0; i < mCurrentPolygon.npoints; i++)
+        {
+            double px = getPositionX() + mCurrentPolygon.xpoints[i] * sPixelInTexture;
+            double py = getPositionY() + mCurrentPolygon.ypoints[i] * sPixelInTexture;
+            contact.depth = Math.max(contact.depth, -map.getWallDistance(px, py, getLayer()));
+        }
+        return true;
+    }
+
+    /**
+     * Checks the polygon against the distance field of the level. Only the 
+     * polygon points are sampled, and the edges are checked by sampling their 
+     * midpoints (see "isColliding(Level, double, double, double, double)"). 
+     * The found collision point and the contact normal are stored. 
+     * @param map reference to the level
+     * @return collision point (or null if no collision)
+     */
+    @Override
+    public Vector2D isColliding(Level map) {
+        int n = mCurrentPolygon.npoints;
+        double p_x = getPositionX();
+        double p_y = getPositionY();
+        for (int i = 0; i < n; i++) {
+            double px = p_x + mCurrentPolygon.xpoints[i] * sPixelInTexture;
+            double py = p_y + mCurrentPolygon.ypoints[i] * sPixelInTexture;
+            double qx = p_x + mCurrentPolygon.xpoints[(i+1) % n] * sPixelInTexture;
+            double qy = p_y + mCurrentPolygon.ypoints[(i+1) % n] * sPixelInTexture;
+            
+            if (map.getWallDistance(px, py, getLayer()) <= 0.0) {
+                mContactX = px;
+                mContactY = py;
+            }
+            else if (!isColliding(map, px, py, qx, qy)) {
+                continue;
             }
+            mContactNormal = map.getWallNormal(mContactX, mContactY, getLayer());
+            return new Vector2D(mContactX, mContactY);
         }
+        mContactNormal = null;
         return null;
     }
 
+    /**
+     * Position of the last collision point found by "isColliding(Level)".
+     */
+    private double mContactX = 0.0, mContactY = 0.0;
+    
+    /**
+     * Checks one edge of the polygon (without its end points) for collisions 
+     * with walls. If the distance to the nearest wall at the midpoint of the 
+     * edge exceeds half of its length (plus one pixel as the distance field
+     * only has pixel accuracy), no point of the edge can be inside of a wall. 
+     * Otherwise both halves are checked the same way, down to a quarter of a 
+     * pixel. 
+     * @param map reference to the level
+     * @param ax x-coordinate of the first end point
+     * @param ay y-coordinate of the first end point
+     * @param bx x-coordinate of the second end point
+     * @param by y-coordinate of the second end point
+     * @return "true" if colliding (the collision point is stored)
+     */
+    private boolean isColliding(Level map, double ax, double ay, double bx, double by) {
+        double mx = (ax + bx) * 0.5;
+        double my = (ay + by) * 0.5;
+        double vDistance = map.getWallDistance(mx, my, getLayer());
+        if (vDistance <= 0.0) {
+            mContactX = mx;
+            mContactY = my;
+            return true;
+        }
+        
+        double vHalfLength = 0.5 * Math.sqrt((bx - ax) * (bx - ax) + (by - ay) * (by - ay));
+        if (vDistance - sPixelInTexture >= vHalfLength || vHalfLength < 0.25 * sPixelInTexture)
+            return false;
+        
+        return isColliding(map, ax, ay, mx, my) || isColliding(map, mx, my, bx, by);
+    }
+
+    /**
+     * Updates polygon and collision points. Nothing is recreated if neither
+     * rotation nor position have changed since the last update. 
+     */
     @Override
     public void updateData ()
     {
-        updatePolygon(r_c);
-        createCollisionPoints();
+        double r_c = getRotation();
+        if (r_c != mPolygonAngle)
+            updatePolygon(r_c);
+        if (getPositionX() != mPointsPositionX || getPositionY() != mPointsPositionY)
+            createCollisionPoints();
     }
 
     @Override
@@ -223,6 +551,11 @@ public class Vehicle extends PhysicalBody {
         {
             points[i] = new Vector2D(mCurrentPolygon.xpoints[i],mCurrentPolygon.ypoints[i]);
         }
+        Rectangle vBounds = mCurrentPolygon.getBounds();
+        mMinX = vBounds.x;
+        mMinY = vBounds.y;
+        mMaxX = vBounds.x + vBounds.width;
+        mMaxY = vBounds.y + vBounds.height;
         
         // Create Bounding-Sphere
         for (int i = 0; i < points.length; i++)
@@ -231,6 +564,20 @@ public class Vehicle extends PhysicalBody {
             if (dist > mBoundingSphere)
                 mBoundingSphere = dist;
         }
+        
+        // Allocate the collision points for any rotation: a rotated edge has 
+        // at most sqrt(2) times its length in pixel-steps (plus rounding).
+        int vCapacity = 0;
+        for (int i = 0; i < points.length; i++)
+        {
+            double length = points[i].distance(points[(i + 1) % points.length]) * sTextureSize;
+            vCapacity += (int) Math.ceil(Math.sqrt(2.0) * length) + 2;
+        }
+        mPointsX = new double[vCapacity];
+        mPointsY = new double[vCapacity];
+        mPointCount = 0;
+        mPolygonAngle = Double.NaN;
+        mPointsPositionX = mPointsPositionY = Double.NaN;
     }
 
     @Override
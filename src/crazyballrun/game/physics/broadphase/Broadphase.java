@@ -0,0 +1,217 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package crazyballrun.game.physics.broadphase;
+
+import crazyballrun.game.level.Level;
+import crazyballrun.game.level.Tile;
+import crazyballrun.game.level.objects.LevelObject;
+import crazyballrun.game.physics.bodies.PhysicalBody;
+import java.util.Arrays;
+
+/**
+ * The Broadphase finds all pairs of objects which might collide with each other
+ * during the current timestep. It is performed once per timestep after updating
+ * the positions of all objects. Just the candidate pairs have to be checked by
+ * the (expensive) collision tests of the PhysicalBody-implementations. Every
+ * pair is reported once only, the first object of a pair always has a lower 
+ * index than the second one. Implementations which can also find the 
+ * colliding object of a single object at any time (see "hasObjectQueries") 
+ * allow the PhysicsThread to move and test the objects one after another.
+ * 
+ * @author Timm Hoffmeister
+ */
+public abstract class Broadphase {
+    
+    /**
+     * Reference to the level.
+     */
+    protected Level mLevel = null;
+    
+    /**
+     * Objects of the current timestep. 
+     */
+    protected LevelObject [] mObjects = null;
+    
+    /**
+     * Number of objects of the current timestep.
+     */
+    protected int mObjectCount = 0;
+    
+    /**
+     * Indices of the first objects of all candidate pairs.
+     */
+    private int [] mPairFirst = new int[64];
+    
+    /**
+     * Indices of the second objects of all candidate pairs.
+     */
+    private int [] mPairSecond = new int[64];
+    
+    /**
+     * Number of candidate pairs found in the current timestep. 
+     */
+    private int mPairCount = 0;
+    
+    /**
+     * Buffer for sorting the pairs (see "sortPairs").
+     */
+    private long [] mPairKeys = new long[0];
+    
+    /**
+     * Sets the level-reference for the Broadphase. 
+     * @param level reference to the level
+     */
+    public void setLevel (Level level)
+    {
+        mLevel = level;
+    }
+    
+    /**
+     * Checks if the Broadphase can find the colliding object of a single object
+     * between two updates (see "collision").
+     * @return 'true' if "collision" is supported
+     */
+    public boolean hasObjectQueries ()
+    {
+        return false;
+    }
+    
+    /**
+     * Prepares the object queries of a timestep (see "collision"). Has to be 
+     * called before the objects are moved. 
+     * @param objects objects of the current timestep (just the first 'count' 
+     * entries are used)
+     * @param count number of objects
+     */
+    public void beginQueries (LevelObject [] objects, int count)
+    {
+        mObjects = objects;
+        mObjectCount = count;
+    }
+    
+    /**
+     * Finds the first object which collides with the given object at the 
+     * current positions of all objects (including the collision test). 
+     * @param obj object checking for a collision
+     * @return the colliding object (or null if there's none)
+     * @throws UnsupportedOperationException if "hasObjectQueries" is 'false'
+     */
+    public LevelObject collision (LevelObject obj)
+    {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support object queries.");
+    }
+    
+    /**
+     * Finds all candidate pairs for the given objects. 
+     * @param objects objects of the current timestep (just the first 'count' 
+     * entries are used)
+     * @param count number of objects
+     */
+    public void update (LevelObject [] objects, int count)
+    {
+        mObjects = objects;
+        mObjectCount = count;
+        mPairCount = 0;
+        findPairs();
+    }
+    
+    /**
+     * Gets the number of candidate pairs found by the last update.
+     * @return number of candidate pairs
+     */
+    public int getPairCount ()
+    {
+        return mPairCount;
+    }
+    
+    /**
+     * Sorts the candidate pairs of the last update by the indices of their 
+     * objects, so the order of the pairs only depends on the order of the 
+     * objects (not on the broadphase implementation or on earlier timesteps).
+     */
+    public void sortPairs ()
+    {
+        if (mPairKeys.length < mPairCount)
+            mPairKeys = new long[mPairFirst.length];
+        for (int p = 0; p < mPairCount; p++)
+            mPairKeys[p] = ((long) mPairFirst[p] << 32) | mPairSecond[p];
+        Arrays.sort(mPairKeys, 0, mPairCount);
+        for (int p = 0; p < mPairCount; p++)
+        {
+            mPairFirst[p] = (int) (mPairKeys[p] >>> 32);
+            mPairSecond[p] = (int) mPairKeys[p];
+        }
+    }
+    
+    /**
+     * Gets the index of the first object of a candidate pair. 
+     * @param pair index of the pair
+     * @return index of the object in the object-array of the last update
+     */
+    public int getFirst (int pair)
+    {
+        return mPairFirst[pair];
+    }
+    
+    /**
+     * Gets the index of the second object of a candidate pair. 
+     * @param pair index of the pair
+     * @return index of the object in the object-array of the last update
+     */
+    public int getSecond (int pair)
+    {
+        return mPairSecond[pair];
+    }
+    
+    /**
+     * Checks if an object may hit another object concerning their layers. Objects
+     * on the same layer may always collide. Objects on neighboring layers may 
+     * just collide if the other object is placed on a layer-transition. 
+     * @param obj object checking for a collision
+     * @param other object which might be hit
+     * @return 'true' if a collision of both objects is possible
+     */
+    public boolean isReachable (LevelObject obj, LevelObject other)
+    {
+        PhysicalBody vOther = other.getObjectModel();
+        int vDelta = vOther.getLayer() - obj.getObjectModel().getLayer();
+        
+        if (vDelta == 0)
+            return true;
+        if (vDelta < -1 || vDelta > 1 || mLevel == null)
+            return false;
+        
+        Tile vTile = mLevel.getTile(vOther.getCenterX(), vOther.getCenterY(), vOther.getLayer());
+        return vTile != null && (vDelta < 0 ? vTile.hasNextLayer() : vTile.hasPreviousLayer());
+    }
+    
+    /**
+     * Adds a candidate pair. The index of the first object has to be lower
+     * than the index of the second object. 
+     * @param first index of the first object
+     * @param second index of the second object
+     */
+    protected void addPair (int first, int second)
+    {
+        if (mPairCount == mPairFirst.length)
+        {
+            int [] vFirst = new int[mPairCount * 2];
+            int [] vSecond = new int[mPairCount * 2];
+            System.arraycopy(mPairFirst, 0, vFirst, 0, mPairCount);
+            System.arraycopy(mPairSecond, 0, vSecond, 0, mPairCount);
+            mPairFirst = vFirst;
+            mPairSecond = vSecond;
+        }
+        mPairFirst[mPairCount] = first;
+        mPairSecond[mPairCount] = second;
+        mPairCount++;
+    }
+    
+    /**
+     * Finds all candidate pairs of the current objects (mObjects) and adds them
+     * through "addPair(first, second)". 
+     */
+    protected abstract void findPairs ();
+}
@@ -0,0 +1,39 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package crazyballrun.game.physics.broadphase;
+
+import crazyballrun.game.GameConstants;
+
+/**
+ * The BroadphaseFactory generates instances of different Broadphase-
+ * implementations.
+ * 
+ * @author Timm Hoffmeister
+ */
+public class BroadphaseFactory {
+    
+    /**
+     * Creates an instance of Broadphase of a particular type. 
+     * @param type type of broadphase ("Tile", "Grid" or "SweepAndPrune")
+     * @return reference to the Broadphase
+     */
+    public static Broadphase create (String type) {
+        
+        if (type.equals("Tile")) 
+        {
+            return new TileBroadphase();
+        } 
+        else if (type.equals("Grid")) 
+        {
+            return new GridBroadphase(GameConstants.BROADPHASE_CELL_SIZE);
+        } 
+        else if (type.equals("SweepAndPrune")) 
+        {
+            return new SweepAndPruneBroadphase();
+        }
+        
+        return null;
+    }    
+}
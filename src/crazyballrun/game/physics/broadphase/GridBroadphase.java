@@ -0,0 +1,345 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package crazyballrun.game.physics.broadphase;
+
+import crazyballrun.game.level.objects.LevelObject;
+import crazyballrun.game.physics.bodies.PhysicalBody;
+
+/**
+ * The GridBroadphase sorts the bounding boxes of all objects into the cells of
+ * a uniform grid (one grid per layer). The occupied cells are stored in a 
+ * spatial hash, which is rebuilt every timestep by a counting sort. Objects are
+ * candidate pairs if their bounding boxes overlap and they share a cell on the
+ * same or a neighboring layer. 
+ * 
+ * The grid also answers object queries (see "collision"): it's built from the
+ * positions at the beginning of the timestep, and each query scans the cells
+ * around the current bounding box of the object with a margin of one cell, so
+ * objects which have moved less than one cell since then are still found 
+ * (like the tile scan, which only looks at the neighboring tiles). 
+ * 
+ * @author Timm Hoffmeister
+ */
+public class GridBroadphase extends Broadphase {
+    
+    /**
+     * Size of a grid cell (in textures).
+     */
+    private double mCellSize = 1.0;
+    
+    /**
+     * Bounding boxes of the objects (minimum x-coordinate).
+     */
+    private double [] mMinX = new double[0];
+    
+    /**
+     * Bounding boxes of the objects (minimum y-coordinate).
+     */
+    private double [] mMinY = new double[0];
+    
+    /**
+     * Bounding boxes of the objects (maximum x-coordinate).
+     */
+    private double [] mMaxX = new double[0];
+    
+    /**
+     * Bounding boxes of the objects (maximum y-coordinate).
+     */
+    private double [] mMaxY = new double[0];
+    
+    /**
+     * First cell in x-direction covered by the objects.
+     */
+    private int [] mCellX0 = new int[0];
+    
+    /**
+     * First cell in y-direction covered by the objects.
+     */
+    private int [] mCellY0 = new int[0];
+    
+    /**
+     * Last cell in x-direction covered by the objects.
+     */
+    private int [] mCellX1 = new int[0];
+    
+    /**
+     * Last cell in y-direction covered by the objects.
+     */
+    private int [] mCellY1 = new int[0];
+    
+    /**
+     * Layers of the objects. 
+     */
+    private int [] mLayer = new int[0];
+    
+    /**
+     * Index of the first entry of each hash bucket (mBucketStart[b + 1] is the
+     * end of bucket b).
+     */
+    private int [] mBucketStart = new int[1];
+    
+    /**
+     * Insertion position for each hash bucket while filling the entries.
+     */
+    private int [] mBucketFill = new int[1];
+    
+    /**
+     * Object index of each entry (one entry per object and covered cell). 
+     */
+    private int [] mEntryObject = new int[0];
+    
+    /**
+     * Cell x-coordinate of each entry. 
+     */
+    private int [] mEntryX = new int[0];
+    
+    /**
+     * Cell y-coordinate of each entry. 
+     */
+    private int [] mEntryY = new int[0];
+    
+    /**
+     * Constructor of GridBroadphase.
+     * @param cellSize size of a grid cell (in textures)
+     */
+    public GridBroadphase (double cellSize)
+    {
+        mCellSize = cellSize;
+    }
+    
+    /**
+     * Calculates the hash bucket of a grid cell.
+     * @param x x-coordinate of the cell
+     * @param y y-coordinate of the cell
+     * @param layer layer of the cell
+     * @param mask bit mask of the hash table size
+     * @return index of the bucket
+     */
+    private static int bucket (int x, int y, int layer, int mask)
+    {
+        return ((x * 73856093) ^ (y * 19349663) ^ (layer * 83492791)) & mask;
+    }
+    
+    /**
+     * Calculates the cell coordinate of a position. 
+     * @param position position (in textures)
+     * @return cell coordinate
+     */
+    private int cell (double position)
+    {
+        return (int) Math.floor(position / mCellSize);
+    }
+    
+    /**
+     * Makes sure the arrays for the objects are large enough. 
+     * @param count number of objects
+     */
+    private void ensureObjectCapacity (int count)
+    {
+        if (mMinX.length < count)
+        {
+            int vSize = Math.max(count, mMinX.length * 2);
+            mMinX = new double[vSize];
+            mMinY = new double[vSize];
+            mMaxX = new double[vSize];
+            mMaxY = new double[vSize];
+            mCellX0 = new int[vSize];
+            mCellY0 = new int[vSize];
+            mCellX1 = new int[vSize];
+            mCellY1 = new int[vSize];
+            mLayer = new int[vSize];
+        }
+    }
+    
+    /**
+     * Makes sure the arrays for the entries and buckets are large enough.
+     * @param entries number of entries
+     * @param buckets number of hash buckets
+     */
+    private void ensureEntryCapacity (int entries, int buckets)
+    {
+        if (mEntryObject.length < entries)
+        {
+            int vSize = Math.max(entries, mEntryObject.length * 2);
+            mEntryObject = new int[vSize];
+            mEntryX = new int[vSize];
+            mEntryY = new int[vSize];
+        }
+        if (mBucketStart.length < buckets + 1)
+        {
+            mBucketStart = new int[buckets + 1];
+            mBucketFill = new int[buckets + 1];
+        }
+    }
+    
+    @Override
+    public boolean hasObjectQueries ()
+    {
+        return true;
+    }
+    
+    @Override
+    public void beginQueries (LevelObject [] objects, int count)
+    {
+        super.beginQueries(objects, count);
+        createGrid();
+    }
+    
+    @Override
+    public LevelObject collision (LevelObject obj)
+    {
+        PhysicalBody vBody = obj.getObjectModel();
+        double vRadius = vBody.getBoundingSphere();
+        double vCenterX = vBody.getCenterX();
+        double vCenterY = vBody.getCenterY();
+        int vLayer = vBody.getLayer();
+        int vX0 = cell(vCenterX - vRadius) - 1, vX1 = cell(vCenterX + vRadius) + 1;
+        int vY0 = cell(vCenterY - vRadius) - 1, vY1 = cell(vCenterY + vRadius) + 1;
+        int vMask = mBuckets - 1;
+        
+        // the colliding object with the lowest index is returned (layers of 
+        // the grid may be one off, too, if an object has changed its layer)
+        int vFound = mObjectCount;
+        for (int l = vLayer - 2; l <= vLayer + 2; l++)
+        {
+            for (int x = vX0; x <= vX1; x++)
+            {
+                for (int y = vY0; y <= vY1; y++)
+                {
+                    int vBucket = bucket(x, y, l, vMask);
+                    for (int e = mBucketStart[vBucket]; e < mBucketStart[vBucket + 1]; e++)
+                    {
+                        int j = mEntryObject[e];
+                        
+                        // each object is tested once in the first scanned cell
+                        if (j >= vFound || mLayer[j] != l || mEntryX[e] != x || mEntryY[e] != y ||
+                            Math.max(mCellX0[j], vX0) != x || Math.max(mCellY0[j], vY0) != y)
+                            continue;
+                        
+                        LevelObject vOther = mObjects[j];
+                        PhysicalBody vOtherBody = vOther.getObjectModel();
+                        if (vOtherBody != vBody && 
+                            vOtherBody.isRigidBody() && 
+                            isReachable(obj, vOther) &&
+                            vBody.isColliding(vOtherBody))
+                            vFound = j;
+                    }
+                }
+            }
+        }
+        return vFound < mObjectCount ? mObjects[vFound] : null;
+    }
+    
+    /**
+     * Number of hash buckets of the current grid.
+     */
+    private int mBuckets = 0;
+    
+    /**
+     * Sorts the bounding boxes of the current objects (mObjects) into the 
+     * cells of the grid. 
+     */
+    private void createGrid ()
+    {
+        ensureObjectCapacity(mObjectCount);
+        
+        // bounding boxes and covered cells
+        int vEntries = 0;
+        for (int i = 0; i < mObjectCount; i++)
+        {
+            PhysicalBody vBody = mObjects[i].getObjectModel();
+            double vRadius = vBody.getBoundingSphere();
+            double vCenterX = vBody.getCenterX();
+            double vCenterY = vBody.getCenterY();
+            mMinX[i] = vCenterX - vRadius;
+            mMinY[i] = vCenterY - vRadius;
+            mMaxX[i] = vCenterX + vRadius;
+            mMaxY[i] = vCenterY + vRadius;
+            mCellX0[i] = cell(mMinX[i]);
+            mCellY0[i] = cell(mMinY[i]);
+            mCellX1[i] = cell(mMaxX[i]);
+            mCellY1[i] = cell(mMaxY[i]);
+            mLayer[i] = vBody.getLayer();
+            vEntries += (mCellX1[i] - mCellX0[i] + 1) * (mCellY1[i] - mCellY0[i] + 1);
+        }
+        
+        // size of the hash table (at least twice the number of entries)
+        int vBuckets = 16;
+        while (vBuckets < 2 * vEntries)
+            vBuckets <<= 1;
+        int vMask = vBuckets - 1;
+        mBuckets = vBuckets;
+        ensureEntryCapacity(vEntries, vBuckets);
+        
+        // counting sort of all entries into the hash buckets
+        for (int b = 0; b <= vBuckets; b++)
+            mBucketStart[b] = 0;
+        for (int i = 0; i < mObjectCount; i++)
+            for (int x = mCellX0[i]; x <= mCellX1[i]; x++)
+                for (int y = mCellY0[i]; y <= mCellY1[i]; y++)
+                    mBucketStart[bucket(x, y, mLayer[i], vMask) + 1]++;
+        for (int b = 0; b < vBuckets; b++)
+        {
+            mBucketStart[b + 1] += mBucketStart[b];
+            mBucketFill[b] = mBucketStart[b];
+        }
+        for (int i = 0; i < mObjectCount; i++)
+        {
+            for (int x = mCellX0[i]; x <= mCellX1[i]; x++)
+            {
+                for (int y = mCellY0[i]; y <= mCellY1[i]; y++)
+                {
+                    int vEntry = mBucketFill[bucket(x, y, mLayer[i], vMask)]++;
+                    mEntryObject[vEntry] = i;
+                    mEntryX[vEntry] = x;
+                    mEntryY[vEntry] = y;
+                }
+            }
+        }
+    }
+    
+    @Override
+    protected void findPairs ()
+    {
+        createGrid();
+        int vMask = mBuckets - 1;
+        
+        // find pairs on the same and the neighboring layers
+        for (int i = 0; i < mObjectCount; i++)
+        {
+            for (int l = mLayer[i] - 1; l <= mLayer[i] + 1; l++)
+            {
+                for (int x = mCellX0[i]; x <= mCellX1[i]; x++)
+                {
+                    for (int y = mCellY0[i]; y <= mCellY1[i]; y++)
+                    {
+                        int vBucket = bucket(x, y, l, vMask);
+                        for (int e = mBucketStart[vBucket]; e < mBucketStart[vBucket + 1]; e++)
+                        {
+                            int j = mEntryObject[e];
+                            
+                            // each pair is reported once by the object with 
+                            // the lower index in the first shared cell
+                            if (j <= i || mLayer[j] != l || mEntryX[e] != x || mEntryY[e] != y ||
+                                Math.max(mCellX0[i], mCellX0[j]) != x || 
+                                Math.max(mCellY0[i], mCellY0[j]) != y)
+                                continue;
+                            
+                            // overlapping bounding boxes
+                            if (mMinX[i] > mMaxX[j] || mMinX[j] > mMaxX[i] || 
+                                mMinY[i] > mMaxY[j] || mMinY[j] > mMaxY[i])
+                                continue;
+                            
+                            if (l == mLayer[i] || 
+                                isReachable(mObjects[i], mObjects[j]) || 
+                                isReachable(mObjects[j], mObjects[i]))
+                                addPair(i, j);
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
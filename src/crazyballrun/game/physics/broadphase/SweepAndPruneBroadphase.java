@@ -0,0 +1,242 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package crazyballrun.game.physics.broadphase;
+
+import crazyballrun.game.level.objects.LevelObject;
+import crazyballrun.game.physics.bodies.PhysicalBody;
+import java.util.IdentityHashMap;
+
+/**
+ * The SweepAndPruneBroadphase keeps the bounding boxes of all objects in two 
+ * lists, one sorted by their minimum x-coordinate and one sorted by their 
+ * minimum y-coordinate. The lists are kept from one timestep to the next and
+ * re-sorted by insertion sort, which is almost linear as long as the objects 
+ * move coherently. Each timestep the boxes are swept along the axis on which 
+ * they are spread wider (fewer overlaps, e.g. x for a horizontal track and y
+ * for a vertical one), the overlap on the other axis is checked for each pair
+ * found by the sweep. 
+ * 
+ * @author Timm Hoffmeister
+ */
+public class SweepAndPruneBroadphase extends Broadphase {
+    
+    /**
+     * Bounding box of an object inside the sorted list.
+     */
+    private static class Proxy 
+    {
+        /**
+         * Reference to the object.
+         */
+        LevelObject object;
+        
+        /**
+         * Index of the object in the current timestep.
+         */
+        int index;
+        
+        /**
+         * Layer of the object. 
+         */
+        int layer;
+        
+        /**
+         * Timestep in which the object has been seen last. 
+         */
+        int stamp;
+        
+        /**
+         * Minimum x-coordinate of the bounding box.
+         */
+        double minX;
+        
+        /**
+         * Maximum x-coordinate of the bounding box.
+         */
+        double maxX;
+        
+        /**
+         * Minimum y-coordinate of the bounding box.
+         */
+        double minY;
+        
+        /**
+         * Maximum y-coordinate of the bounding box.
+         */
+        double maxY;
+    }
+    
+    /**
+     * Bounding boxes sorted by their minimum x-coordinate.
+     */
+    private Proxy [] mSortedX = new Proxy[64];
+    
+    /**
+     * Bounding boxes sorted by their minimum y-coordinate.
+     */
+    private Proxy [] mSortedY = new Proxy[64];
+    
+    /**
+     * Number of bounding boxes in the sorted lists.
+     */
+    private int mSortedCount = 0;
+    
+    /**
+     * Bounding box of each known object. 
+     */
+    private IdentityHashMap<LevelObject, Proxy> mProxies = new IdentityHashMap<LevelObject, Proxy>();
+    
+    /**
+     * Number of the current timestep. 
+     */
+    private int mStamp = 0;
+    
+    /**
+     * Updates the bounding boxes of all objects, adds new objects to the end 
+     * of the sorted lists and removes objects which do not exist anymore.
+     */
+    private void updateProxies ()
+    {
+        mStamp++;
+        
+        for (int i = 0; i < mObjectCount; i++)
+        {
+            LevelObject vObject = mObjects[i];
+            Proxy vProxy = mProxies.get(vObject);
+            if (vProxy == null)
+            {
+                vProxy = new Proxy();
+                vProxy.object = vObject;
+                mProxies.put(vObject, vProxy);
+                if (mSortedCount == mSortedX.length)
+                {
+                    Proxy [] vSorted = new Proxy[mSortedCount * 2];
+                    System.arraycopy(mSortedX, 0, vSorted, 0, mSortedCount);
+                    mSortedX = vSorted;
+                    vSorted = new Proxy[mSortedCount * 2];
+                    System.arraycopy(mSortedY, 0, vSorted, 0, mSortedCount);
+                    mSortedY = vSorted;
+                }
+                mSortedX[mSortedCount] = vProxy;
+                mSortedY[mSortedCount] = vProxy;
+                mSortedCount++;
+            }
+            
+            PhysicalBody vBody = vObject.getObjectModel();
+            double vRadius = vBody.getBoundingSphere();
+            double vCenterX = vBody.getCenterX();
+            double vCenterY = vBody.getCenterY();
+            vProxy.index = i;
+            vProxy.layer = vBody.getLayer();
+            vProxy.stamp = mStamp;
+            vProxy.minX = vCenterX - vRadius;
+            vProxy.maxX = vCenterX + vRadius;
+            vProxy.minY = vCenterY - vRadius;
+            vProxy.maxY = vCenterY + vRadius;
+        }
+        
+        // remove objects of previous timesteps
+        for (int i = 0; i < mSortedCount; i++)
+            if (mSortedX[i].stamp != mStamp)
+                mProxies.remove(mSortedX[i].object);
+        int vCount = removeOld(mSortedX);
+        removeOld(mSortedY);
+        mSortedCount = vCount;
+    }
+    
+    /**
+     * Removes the bounding boxes of objects of previous timesteps from a 
+     * sorted list (keeps the order).
+     * @param sorted sorted list
+     * @return number of remaining bounding boxes
+     */
+    private int removeOld (Proxy [] sorted)
+    {
+        int vCount = 0;
+        for (int i = 0; i < mSortedCount; i++)
+        {
+            Proxy vProxy = sorted[i];
+            if (vProxy.stamp == mStamp)
+                sorted[vCount++] = vProxy;
+        }
+        for (int i = vCount; i < mSortedCount; i++)
+            sorted[i] = null;
+        return vCount;
+    }
+    
+    /**
+     * Sorts a list of bounding boxes by their minimum x- or y-coordinate 
+     * (insertion sort, the list is nearly sorted from the last timestep).
+     * @param sorted list to sort
+     * @param x 'true' to sort by the x-coordinate, 'false' for y
+     */
+    private void sort (Proxy [] sorted, boolean x)
+    {
+        for (int i = 1; i < mSortedCount; i++)
+        {
+            Proxy vProxy = sorted[i];
+            double vMin = x ? vProxy.minX : vProxy.minY;
+            int j = i - 1;
+            while (j >= 0 && (x ? sorted[j].minX : sorted[j].minY) > vMin)
+            {
+                sorted[j + 1] = sorted[j];
+                j--;
+            }
+            sorted[j + 1] = vProxy;
+        }
+    }
+    
+    /**
+     * Checks if the bounding boxes are spread wider on the x-axis than on the
+     * y-axis (variance of the minimum coordinates).
+     * @return 'true' if the sweep should run along the x-axis
+     */
+    private boolean isSpreadOnX ()
+    {
+        double vSumX = 0.0, vSumY = 0.0, vSquareX = 0.0, vSquareY = 0.0;
+        for (int i = 0; i < mSortedCount; i++)
+        {
+            Proxy vProxy = mSortedX[i];
+            vSumX += vProxy.minX;
+            vSumY += vProxy.minY;
+            vSquareX += vProxy.minX * vProxy.minX;
+            vSquareY += vProxy.minY * vProxy.minY;
+        }
+        return vSquareX * mSortedCount - vSumX * vSumX >= vSquareY * mSortedCount - vSumY * vSumY;
+    }
+    
+    @Override
+    protected void findPairs ()
+    {
+        updateProxies();
+        sort(mSortedX, true);
+        sort(mSortedY, false);
+        
+        // sweep along the axis with the wider spread
+        boolean vX = isSpreadOnX();
+        Proxy [] vSorted = vX ? mSortedX : mSortedY;
+        for (int i = 0; i < mSortedCount; i++)
+        {
+            Proxy vProxy = vSorted[i];
+            double vMax = vX ? vProxy.maxX : vProxy.maxY;
+            for (int j = i + 1; j < mSortedCount && (vX ? vSorted[j].minX : vSorted[j].minY) <= vMax; j++)
+            {
+                Proxy vOther = vSorted[j];
+                
+                // overlap on the other axis and neighboring layers
+                boolean vSeparated = vX ? 
+                        vProxy.minY > vOther.maxY || vOther.minY > vProxy.maxY :
+                        vProxy.minX > vOther.maxX || vOther.minX > vProxy.maxX;
+                if (vSeparated || Math.abs(vProxy.layer - vOther.layer) > 1)
+                    continue;
+                
+                if (vProxy.layer == vOther.layer ||
+                    isReachable(vProxy.object, vOther.object) || 
+                    isReachable(vOther.object, vProxy.object))
+                    addPair(Math.min(vProxy.index, vOther.index), Math.max(vProxy.index, vOther.index));
+            }
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package crazyballrun.game.physics.broadphase;
+
+import crazyballrun.game.level.Tile;
+import crazyballrun.game.level.objects.LevelObject;
+import crazyballrun.game.physics.bodies.PhysicalBody;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+
+/**
+ * The TileBroadphase uses the rigid body lists of the tiles: an object may hit
+ * the objects on the 3x3 tiles around its center (also one layer above and 
+ * under the object, if there's a layer-transition). Unlike the other 
+ * implementations, it can be asked for the colliding object of a single 
+ * object at any time (see "collision"), so the PhysicsThread can move and 
+ * test the objects one after another. 
+ * 
+ * @author Timm Hoffmeister
+ */
+public class TileBroadphase extends Broadphase {
+    
+    /**
+     * Index of each object of the current timestep.
+     */
+    private IdentityHashMap<LevelObject, Integer> mIndices = new IdentityHashMap<LevelObject, Integer>();
+    
+    /**
+     * Pairs which have already been added in the current timestep.
+     */
+    private HashSet<Long> mFound = new HashSet<Long>();
+    
+    /**
+     * Objects of the scanned tiles.
+     */
+    private ArrayList<LevelObject> mCandidates = new ArrayList<LevelObject>();
+    
+    @Override
+    public boolean hasObjectQueries ()
+    {
+        return true;
+    }
+    
+    /**
+     * Gets the tile around an object which has to be scanned for collisions.
+     * @param body body of the object
+     * @param x offset in x-direction (in tiles)
+     * @param y offset in y-direction (in tiles)
+     * @param l offset of the layer
+     * @return the tile or null if there's none or no collision is possible
+     */
+    private Tile getTile (PhysicalBody body, int x, int y, int l)
+    {
+        Tile vTile = mLevel.getTile(body.getCenterX() + x, body.getCenterY() + y, body.getLayer() + l);
+        
+        // skip impossible collisions
+        if ( (vTile != null) && (l == 0 ||  
+             (l < 0 && vTile.hasNextLayer()) ||
+             (l > 0 && vTile.hasPreviousLayer()) ))
+            return vTile;
+        return null;
+    }
+    
+    @Override
+    public LevelObject collision (LevelObject obj)
+    {
+        PhysicalBody vBody = obj.getObjectModel();
+        
+        // possible collision on layer-transitions
+        for (int l = -1; l < 2; l++)
+        {
+            // possible collision 1 texture in all directions
+            for (int x = -1; x < 2; x++) 
+            {
+                for (int y = -1; y < 2; y++)
+                {
+                    // detect possible object-object collisions on the selected tile
+                    Tile vTile = getTile(vBody, x, y, l);
+                    LevelObject vCollisionObject = vTile != null ? vTile.collision(vBody) : null;
+                    if (vCollisionObject != null)
+                        return vCollisionObject;
+                }
+            }        
+        }
+        return null;
+    }
+    
+    @Override
+    protected void findPairs ()
+    {
+        mIndices.clear();
+        mFound.clear();
+        for (int i = 0; i < mObjectCount; i++)
+            mIndices.put(mObjects[i], i);
+        
+        for (int i = 0; i < mObjectCount; i++)
+        {
+            PhysicalBody vBody = mObjects[i].getObjectModel();
+            for (int l = -1; l < 2; l++)
+            {
+                for (int x = -1; x < 2; x++) 
+                {
+                    for (int y = -1; y < 2; y++)
+                    {
+                        Tile vTile = getTile(vBody, x, y, l);
+                        if (vTile == null) 
+                            continue;
+                        
+                        mCandidates.clear();
+                        vTile.getRigidBodies(mCandidates);
+                        for (LevelObject vCandidate : mCandidates)
+                        {
+                            Integer vIndex = mIndices.get(vCandidate);
+                            if (vIndex == null || vIndex == i)
+                                continue;
+                            int vFirst = Math.min(i, vIndex), vSecond = Math.max(i, vIndex);
+                            if (mFound.add(((long) vFirst << 32) | vSecond))
+                                addPair(vFirst, vSecond);
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
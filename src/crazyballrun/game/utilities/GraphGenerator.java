@@ -7,7 +7,10 @@ package crazyballrun.game.utilities;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 
 /**
@@ -48,6 +51,11 @@ public class GraphGenerator {
          */
         public Comparable content;
         
+        /**
+         * Position of the node in the leaf-list.
+         */
+        private int index;
+        
         /**
          * Creates an instance of Node. 
          * @param leaf reference to the QuadTree-leaf
@@ -138,6 +146,36 @@ public class GraphGenerator {
      */
     private HashMap<QuadTree.Node, Node> mLeafMap = new HashMap<QuadTree.Node, Node>();
     
+    /**
+     * Orders nodes by their position in the leaf-list.
+     */
+    private static final Comparator<PathFinder.Node> sIndexOrder = new Comparator<PathFinder.Node>() {
+        @Override
+        public int compare (PathFinder.Node node1, PathFinder.Node node2) {
+            return ((Node) node1).index - ((Node) node2).index;
+        }
+    };
+    
+    /**
+     * Orders nodes of the same horizontal edge by their x-coordinate.
+     */
+    private static final Comparator<Node> sXOrder = new Comparator<Node>() {
+        @Override
+        public int compare (Node node1, Node node2) {
+            return node1.getX() < node2.getX() ? -1 : (node1.getX() == node2.getX() ? 0 : 1);
+        }
+    };
+    
+    /**
+     * Orders nodes of the same vertical edge by their y-coordinate.
+     */
+    private static final Comparator<Node> sYOrder = new Comparator<Node>() {
+        @Override
+        public int compare (Node node1, Node node2) {
+            return node1.getY() < node2.getY() ? -1 : (node1.getY() == node2.getY() ? 0 : 1);
+        }
+    };
+    
     /**
      * Creates an instance of GraphGenerator.
      * @param quadtree reference to the quadtree
@@ -155,7 +193,8 @@ public class GraphGenerator {
         mLeafList.clear();
 
         long minSize = mQuadTree.getMinNodeSize();
-        LinkedList<QuadTree.Node> vList = new LinkedList<QuadTree.Node>();
+        ArrayList<QuadTree<?>.Node> vList = new ArrayList<QuadTree<?>.Node>();
+        HashSet<QuadTree<?>.Node> vFound = new HashSet<QuadTree<?>.Node>();
         
         // Go through the domain by stepsize "minimum node size"
         for (long x = minSize / 2; x < mQuadTree.getDomainWidth(); x = x + minSize)
@@ -167,7 +206,7 @@ public class GraphGenerator {
                 if (vNode != null && vNode.getContent() != null) 
                 {
                     // Check if the leaf is already in the list (larger leafs)
-                    if (!vList.contains(vNode)) 
+                    if (vFound.add(vNode)) 
                     {
                         vList.add(vNode);
                     }
@@ -176,9 +215,10 @@ public class GraphGenerator {
         }
         
         // Create new nodes supporting neighborhood information
-        for (QuadTree.Node vNode : vList) 
+        for (QuadTree<?>.Node vNode : vList) 
         {
             Node vNNode = new Node(vNode);
+            vNNode.index = mLeafList.size();
             mLeafList.add(vNNode);
             mLeafMap.put(vNode, vNNode);
         }
@@ -186,10 +226,36 @@ public class GraphGenerator {
 
     /**
      * Creates the neighborhood-relation between the leaf-nodes of the QuadTree.
-     * Runtime of this method is O(N²).
+     * The leafs are grouped by their edges (e.g. all leafs whose bottom edge
+     * lies on the same line) and sorted along them. Since leafs don't overlap,
+     * the candidates along an edge of a node are found by binary search, so the
+     * runtime of this method is O(N log N). The neighbors of a node are in the
+     * order of the leaf-list.
      */
     private void createNeighborhood () {
         
+        // group leafs by their edges
+        HashMap<Long, ArrayList<Node>> vTopEdges = new HashMap<Long, ArrayList<Node>>();
+        HashMap<Long, ArrayList<Node>> vBottomEdges = new HashMap<Long, ArrayList<Node>>();
+        HashMap<Long, ArrayList<Node>> vLeftEdges = new HashMap<Long, ArrayList<Node>>();
+        HashMap<Long, ArrayList<Node>> vRightEdges = new HashMap<Long, ArrayList<Node>>();
+        for (PathFinder.Node vPNode : mLeafList) 
+        {
+            Node vNode = (Node) vPNode;
+            addToEdge(vTopEdges, vNode.getY(), vNode);
+            addToEdge(vBottomEdges, vNode.getY() + vNode.getHeight(), vNode);
+            addToEdge(vLeftEdges, vNode.getX(), vNode);
+            addToEdge(vRightEdges, vNode.getX() + vNode.getWidth(), vNode);
+        }
+        for (ArrayList<Node> vEdge : vTopEdges.values())
+            Collections.sort(vEdge, sXOrder);
+        for (ArrayList<Node> vEdge : vBottomEdges.values())
+            Collections.sort(vEdge, sXOrder);
+        for (ArrayList<Node> vEdge : vLeftEdges.values())
+            Collections.sort(vEdge, sYOrder);
+        for (ArrayList<Node> vEdge : vRightEdges.values())
+            Collections.sort(vEdge, sYOrder);
+        
         // find neighbors for all leafs
         for (PathFinder.Node vPNode : mLeafList) 
         {
@@ -197,14 +263,66 @@ public class GraphGenerator {
             Node vNode = (Node) vPNode;
             vNode.neighbors.clear();
             
-            // go through all candidates
-            for (PathFinder.Node vNeighbor : mLeafList) 
-            {
-                if (vNeighbor != vNode && isNeighbor((Node)vNeighbor, vNode)) 
-                {
-                    vNode.neighbors.add(vNeighbor);
-                }
-            }
+            // go through the candidates on all four edges
+            addNeighbors(vNode, vBottomEdges.get(vNode.getY()), true);
+            addNeighbors(vNode, vTopEdges.get(vNode.getY() + vNode.getHeight()), true);
+            addNeighbors(vNode, vRightEdges.get(vNode.getX()), false);
+            addNeighbors(vNode, vLeftEdges.get(vNode.getX() + vNode.getWidth()), false);
+            Collections.sort(vNode.neighbors, sIndexOrder);
+        }
+    }
+    
+    /**
+     * Adds a node to the group of an edge.
+     * @param edges groups of nodes by edges
+     * @param edge coordinate of the edge
+     * @param node reference to the node
+     */
+    private static void addToEdge (HashMap<Long, ArrayList<Node>> edges, long edge, Node node) {
+        ArrayList<Node> vEdge = edges.get(edge);
+        if (vEdge == null) 
+        {
+            vEdge = new ArrayList<Node>();
+            edges.put(edge, vEdge);
+        }
+        vEdge.add(node);
+    }
+    
+    /**
+     * Adds the nodes of an edge which overlap with a node (and are neighbors
+     * of it) to the neighbors of the node.
+     * @param node reference to the node
+     * @param edge nodes on the edge of the node (sorted along the edge), may 
+     * be null
+     * @param horizontal "true" if the edge is horizontal (top or bottom edge)
+     */
+    private void addNeighbors (Node node, ArrayList<Node> edge, boolean horizontal) {
+        if (edge == null)
+            return;
+        long vStart = horizontal ? node.getX() : node.getY();
+        long vEnd = vStart + (horizontal ? node.getWidth() : node.getHeight());
+        
+        // binary search for the first candidate which ends after the start
+        int vLow = 0, vHigh = edge.size();
+        while (vLow < vHigh) 
+        {
+            int vMid = (vLow + vHigh) >>> 1;
+            Node vCandidate = edge.get(vMid);
+            long vCandidateEnd = horizontal ? vCandidate.getX() + vCandidate.getWidth() : vCandidate.getY() + vCandidate.getHeight();
+            if (vCandidateEnd <= vStart)
+                vLow = vMid + 1;
+            else
+                vHigh = vMid;
+        }
+        
+        // go through all candidates which begin before the end
+        for (int i = vLow; i < edge.size(); i++) 
+        {
+            Node vCandidate = edge.get(i);
+            if ((horizontal ? vCandidate.getX() : vCandidate.getY()) >= vEnd)
+                break;
+            if (isNeighbor(vCandidate, node))
+                node.neighbors.add(vCandidate);
         }
     }
     
@@ -5,12 +5,20 @@
 package crazyballrun.game.utilities;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.LinkedList;
-import java.util.PriorityQueue;
 
 /**
  * The PathFinder calculates the shortest path between two nodes in a graph. 
+ * The graph is copied into arrays when the PathFinder is created: each node 
+ * gets a dense id, the neighbors and costs are stored per id. The A* search 
+ * uses an indexed 4-ary heap (with decrease-key) as open list and a closed 
+ * set which is reset by increasing a generation counter. The arrays of the 
+ * search are kept per thread and reused for every search. Nodes with the 
+ * same f-value leave the open list in the order in which they have been 
+ * added or updated: since the integer costs and heuristic are not exact, 
+ * this order decides which one of several (nearly) shortest paths is found.
  * 
  * @author Timm Hoffmeister
  */
@@ -44,69 +52,309 @@ public class PathFinder {
     }
 
     /**
-     * Representation of node information used by the pathfinding algorithm.
+     * State of the A* search of one thread. The values of a node (g, f,
+     * predecessor, heap position) are only valid if the node has been opened
+     * in the current generation, so a new search doesn't need to clear them.
      */
-    private class NodeProperties implements Comparable<NodeProperties> {
-        public long g;
-        public long f;
-        public NodeProperties predecessor;
-        public Node node;
-
-        @Override
-        public int compareTo(NodeProperties o) {
-            return Long.compare(f, o.f);
+    private static final class SearchContext {
+        
+        /**
+         * Costs from the start to the node.
+         */
+        private final long [] g;
+        
+        /**
+         * Estimated costs from the start to the goal through the node.
+         */
+        private final long [] f;
+        
+        /**
+         * Predecessor of the node on the cheapest known path.
+         */
+        private final int [] predecessor;
+        
+        /**
+         * Generation in which the node has been opened.
+         */
+        private final int [] opened;
+        
+        /**
+         * Generation in which the node has been closed (visited).
+         */
+        private final int [] closed;
+        
+        /**
+         * Position of the node in the heap (-1 if it isn't in the heap).
+         */
+        private final int [] position;
+        
+        /**
+         * Number of the last "push" of the node (orders nodes with the same 
+         * f-value).
+         */
+        private final long [] order;
+        
+        /**
+         * Number of "push"-calls of the current search.
+         */
+        private long pushes = 0;
+        
+        /**
+         * Open list: 4-ary min-heap of node ids ordered by f.
+         */
+        private final int [] heap;
+        
+        /**
+         * Number of nodes in the heap.
+         */
+        private int size = 0;
+        
+        /**
+         * Generation of the current search.
+         */
+        private int generation = 0;
+        
+        /**
+         * Creates the search state for a graph.
+         * @param nodes number of nodes of the graph
+         */
+        public SearchContext (int nodes) {
+            g = new long[nodes];
+            f = new long[nodes];
+            predecessor = new int[nodes];
+            opened = new int[nodes];
+            closed = new int[nodes];
+            position = new int[nodes];
+            order = new long[nodes];
+            heap = new int[nodes];
+        }
+        
+        /**
+         * Starts a new search (all nodes become unvisited).
+         */
+        public void begin () {
+            size = 0;
+            pushes = 0;
+            generation++;
+            if (generation == Integer.MAX_VALUE) 
+            {
+                Arrays.fill(opened, 0);
+                Arrays.fill(closed, 0);
+                generation = 1;
+            }
+        }
+        
+        /**
+         * Checks if a node is in the open list.
+         * @param node node id
+         * @return "true" if the node is in the heap
+         */
+        public boolean isOpen (int node) {
+            return opened[node] == generation && position[node] >= 0;
         }
-        public NodeProperties(Node node) {
-            this.node = node;
+        
+        /**
+         * Checks if a node has already been visited.
+         * @param node node id
+         * @return "true" if the node is closed
+         */
+        public boolean isClosed (int node) {
+            return closed[node] == generation;
+        }
+        
+        /**
+         * Adds a node to the open list or moves it up after its f-value has
+         * been decreased.
+         * @param node node id
+         */
+        public void push (int node) {
+            order[node] = pushes++;
+            if (isOpen(node)) 
+            {
+                siftUp(position[node], node);
+                return;
+            }
+            opened[node] = generation;
+            siftUp(size++, node);
+        }
+        
+        /**
+         * Removes the node with the lowest f-value from the open list and 
+         * closes it.
+         * @return node id (-1 if the open list is empty)
+         */
+        public int poll () {
+            if (size == 0)
+                return -1;
+            int vNode = heap[0];
+            int vLast = heap[--size];
+            if (size > 0)
+                siftDown(0, vLast);
+            position[vNode] = -1;
+            closed[vNode] = generation;
+            return vNode;
+        }
+        
+        /**
+         * Compares two nodes by f-value and, if they are equal, by the number
+         * of their last "push".
+         * @param node1 node id
+         * @param node2 node id
+         * @return "true" if node1 has to leave the open list before node2
+         */
+        private boolean isBefore (int node1, int node2) {
+            return f[node1] < f[node2] || (f[node1] == f[node2] && order[node1] < order[node2]);
+        }
+        
+        /**
+         * Moves a node towards the root until its parent comes before it.
+         * @param index start position in the heap
+         * @param node node id
+         */
+        private void siftUp (int index, int node) {
+            while (index > 0) 
+            {
+                int vParent = (index - 1) >>> 2;
+                int vParentNode = heap[vParent];
+                if (!isBefore(node, vParentNode))
+                    break;
+                heap[index] = vParentNode;
+                position[vParentNode] = index;
+                index = vParent;
+            }
+            heap[index] = node;
+            position[node] = index;
+        }
+        
+        /**
+         * Moves a node towards the leafs until it comes before all children.
+         * @param index start position in the heap
+         * @param node node id
+         */
+        private void siftDown (int index, int node) {
+            while (true) 
+            {
+                int vFirst = (index << 2) + 1;
+                if (vFirst >= size)
+                    break;
+                int vLast = Math.min(vFirst + 4, size);
+                int vChild = vFirst;
+                for (int c = vFirst + 1; c < vLast; c++)
+                    if (isBefore(heap[c], heap[vChild]))
+                        vChild = c;
+                int vChildNode = heap[vChild];
+                if (!isBefore(vChildNode, node))
+                    break;
+                heap[index] = vChildNode;
+                position[vChildNode] = index;
+                index = vChild;
+            }
+            heap[index] = node;
+            position[node] = index;
         }
-        public void clear() {g = Long.MAX_VALUE; f = 0;}
     }
     
     /**
-     * Maps node-references to Integer-values.
+     * Nodes of the graph (index is the node id).
+     */
+    private final Node [] mNodes;
+    
+    /**
+     * Maps node-references to node ids.
+     */
+    private final HashMap<Node, Integer> mIds;
+    
+    /**
+     * First edge of each node in the edge arrays (the edges of node i are
+     * [mFirstEdge[i], mFirstEdge[i+1])).
+     */
+    private final int [] mFirstEdge;
+    
+    /**
+     * Target node id of each edge.
      */
-    private HashMap<Node, NodeProperties> mNodeList = new HashMap<Node, NodeProperties>();
+    private final int [] mEdgeTarget;
     
     /**
-     * Priority queue used for A* implementation.
+     * Costs of each edge.
      */
-    private PriorityQueue<NodeProperties> mQueue = new PriorityQueue<NodeProperties>();
+    private final long [] mEdgeCosts;
     
     /**
-     * List of all visited nodes (used by A*).
+     * Search state of each thread which uses the PathFinder.
      */
-    private LinkedList<NodeProperties> mClosedList = new LinkedList<NodeProperties>();
+    private final ThreadLocal<SearchContext> mContext = new ThreadLocal<SearchContext>() {
+        @Override
+        protected SearchContext initialValue () {
+            return new SearchContext(mNodes.length);
+        }
+    };
     
     /**
-     * Creates an instance of PathFinder.
+     * Creates an instance of PathFinder. Links which are created after this
+     * (e.g. "GraphGenerator.createLink") are not seen by the PathFinder,
+     * neighbors which aren't in the list are ignored.
      * @param nodeList list of graph nodes
      */
     public PathFinder (LinkedList<Node> nodeList) {
-        for (Node node : nodeList) 
-            mNodeList.put(node, new NodeProperties(node));
+        mNodes = nodeList.toArray(new Node[nodeList.size()]);
+        mIds = new HashMap<Node, Integer>(mNodes.length * 2);
+        for (int i = 0; i < mNodes.length; i++)
+            mIds.put(mNodes[i], i);
+        
+        // copy neighbors and costs into the edge arrays
+        mFirstEdge = new int[mNodes.length + 1];
+        int vEdges = 0;
+        for (int i = 0; i < mNodes.length; i++)
+            vEdges += mNodes[i].getNeighbors().size();
+        int [] vTarget = new int[vEdges];
+        long [] vCosts = new long[vEdges];
+        vEdges = 0;
+        for (int i = 0; i < mNodes.length; i++) 
+        {
+            mFirstEdge[i] = vEdges;
+            for (Node vNeighbor : mNodes[i].getNeighbors()) 
+            {
+                Integer vId = mIds.get(vNeighbor);
+                if (vId == null)
+                    continue;
+                vTarget[vEdges] = vId;
+                vCosts[vEdges] = mNodes[i].getCosts(vNeighbor);
+                vEdges++;
+            }
+        }
+        mFirstEdge[mNodes.length] = vEdges;
+        mEdgeTarget = Arrays.copyOf(vTarget, vEdges);
+        mEdgeCosts = Arrays.copyOf(vCosts, vEdges);
     }
     
     /**
      * Finds the (shortest) path from start- to goal-node.  
      * @param startNode reference to the start-node
      * @param goalNode reference to the goal-node
-     * @return shortest path from start- to goal-node or null if no path found
+     * @return shortest path from start- to goal-node (without the start-node)
+     * or null if no path found
      */
     public LinkedList<Node> getPath (Node startNode, Node goalNode) {
         
         // initialization
-        NodeProperties goal = mNodeList.get(goalNode);
-        NodeProperties start = mNodeList.get(startNode);
-        mQueue.clear();
-        mClosedList.clear();
-        mQueue.add(start);
+        Integer vStartId = mIds.get(startNode);
+        Integer vGoalId = mIds.get(goalNode);
+        if (vStartId == null || vGoalId == null)
+            return null;
+        int start = vStartId, goal = vGoalId;
+        SearchContext vContext = mContext.get();
+        long [] g = vContext.g, f = vContext.f;
+        int [] predecessor = vContext.predecessor;
+        vContext.begin();
+        g[start] = 0;
+        f[start] = 0;
+        vContext.push(start);
         
         // start search
-        while (!mQueue.isEmpty()) 
+        int curNode;
+        while ((curNode = vContext.poll()) >= 0) 
         {
-            // visit next node of the queue
-            NodeProperties curNode = mQueue.poll();
-            
             // goal found
             if (curNode == goal) 
             {
@@ -114,44 +362,38 @@ public class PathFinder {
 
                 // recontruct path
                 while (curNode != start) {
-                    path.addFirst(curNode.node);
-                    curNode = curNode.predecessor;
+                    path.addFirst(mNodes[curNode]);
+                    curNode = predecessor[curNode];
                 }
                 return path;
             }
             
             // expand node
-            for (Node neighbor : curNode.node.getNeighbors())
+            for (int e = mFirstEdge[curNode]; e < mFirstEdge[curNode + 1]; e++)
             {
-                NodeProperties successor = mNodeList.get(neighbor);
+                int successor = mEdgeTarget[e];
                         
                 // already visited
-                if (mClosedList.contains(successor))
+                if (vContext.isClosed(successor))
                     continue;
                 
                 // costs from start to successor
-                long g = curNode.g + curNode.node.getCosts(successor.node); 
+                long vG = g[curNode] + mEdgeCosts[e]; 
                 
                 // skip successor is already in the queue and doesn't need update
-                if (mQueue.contains(successor) && g >= successor.g)
+                if (vContext.isOpen(successor) && vG >= g[successor])
                     continue;
                 
                 // update successor node
-                successor.predecessor = curNode;
-                successor.g = g;
+                predecessor[successor] = curNode;
+                g[successor] = vG;
                 
                 // estimate the path costs from start to goal through successor
-                long f = g + successor.node.getHeuristic(goal.node);
-                successor.f = f;
+                f[successor] = vG + mNodes[successor].getHeuristic(goalNode);
                 
                 // update priority in queue
-                if (mQueue.contains(successor)) 
-                    mQueue.remove(successor);
-                mQueue.add(successor);
+                vContext.push(successor);
             }
-            
-            // add current node to the list of visited nodes
-            mClosedList.add(curNode);
         }
         
         return null;
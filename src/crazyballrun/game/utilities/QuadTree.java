@@ -8,13 +8,21 @@ import java.awt.Color;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
 import java.io.Serializable;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedList;
+import java.util.zip.CRC32;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
@@ -26,16 +34,56 @@ import org.xml.sax.helpers.DefaultHandler;
  * The QuadTree class is a descrete representation of a continous domain. It 
  * adaptively increase accuracy where changes of data in the domain are high. 
  * 
+ * A quadtree can be stored as xml-file ("save(String)") or as compact binary
+ * file ("save(String, long)"). The binary file consists of a header (magic 
+ * number, version, hash of the source data, domain), the table of the 
+ * distinct leaf contents (one int each, so only quadtrees with Integer 
+ * contents can be stored this way), one bit per node in pre-order 
+ * ("1" if the node has children, which are derived from the parent like in 
+ * "createChildren"), the content index of each leaf and a CRC32 of all 
+ * preceding bytes. 
+ * 
  * @param <Value> content type of the quadtree
  * @author Timm Hoffmeister
  */
-public class QuadTree <Value extends Comparable & Serializable> {
+public class QuadTree <Value extends Comparable<? super Value> & Serializable> {
     
     /**
      * String-representation for "new line" (file-input).
      */
     private static String newline = System.getProperty("line.separator");
     
+    /**
+     * Magic number of the binary quadtree files ("CBQT").
+     */
+    private static final int sMagic = 0x43425154;
+    
+    /**
+     * Version of the binary quadtree files.
+     */
+    private static final int sVersion = 2;
+    
+    /**
+     * Size of the header of the binary quadtree files in bytes.
+     */
+    private static final int sHeaderSize = 4 + 4 + 8 + 8 * 6 + 4 * 3;
+    
+    /**
+     * A Raster provides the content of each pixel of the domain for building
+     * a quadtree at once (see "QuadTree(long, long, long, long, long, Raster)").
+     * @param <Value> content type of the quadtree
+     */
+    public interface Raster <Value>
+    {
+        /**
+         * Gets the content of a pixel.
+         * @param x x-coordinate of the pixel
+         * @param y y-coordinate of the pixel
+         * @return content of the pixel (null if the pixel is not inserted)
+         */
+        Value get (long x, long y);
+    }
+    
     /**
      * QuadTreeParser is used to parse a QuadTree-xml file.
      */
@@ -183,11 +231,18 @@ public class QuadTree <Value extends Comparable & Serializable> {
             if (width / 2 < mMinNodeSize || height / 2 < mMinNodeSize)
                 return false;
 
+            split();
+            return true;
+        }
+        
+        /**
+         * Creates the four children of the node (with the node's content).
+         */
+        private void split () {
             children.add(new Node(x,             y,              width / 2,             height / 2,              content));
             children.add(new Node(x,             y + height / 2, width / 2,             height / 2 + height % 2, content));
             children.add(new Node(x + width / 2, y,              width / 2 + width % 2, height / 2,              content));
             children.add(new Node(x + width / 2, y + height / 2, width / 2 + width % 2, height / 2 + height % 2, content));
-            return true;
         }
         
         /**
@@ -259,6 +314,14 @@ public class QuadTree <Value extends Comparable & Serializable> {
         parser.parse(file);
     }
     
+    /**
+     * Creates an empty QuadTree-instance (filled by "load").
+     */
+    private QuadTree()
+    {
+        
+    }
+    
     /**
      * Creates an instance of QuadTree. 
      * @param x1 top left point of the domain
@@ -276,6 +339,65 @@ public class QuadTree <Value extends Comparable & Serializable> {
         mRootNode = new Node(x1, y1, mDomainSize, mDomainSize, null);
     }
     
+    /**
+     * Creates an instance of QuadTree from a raster. The result is the same 
+     * tree as inserting each pixel of the raster (except those without
+     * content) tile by tile, but the tree is built bottom-up in one pass: 
+     * the nodes are subdivided down to the minimum node size, each leaf gets 
+     * the largest content of its pixels and four leaves with the same content
+     * are combined. The leaves are visited in Morton order (children order of 
+     * "createChildren"), each pixel is read once. 
+     * @param x1 top left point of the domain
+     * @param y1 top left point of the domain
+     * @param x2 bottom right point of the domain
+     * @param y2 bottom right point of the domain
+     * @param minSize minimum node size
+     * @param raster content of the pixels
+     */
+    public QuadTree(long x1, long y1, long x2, long y2, long minSize, Raster<Value> raster) 
+    {
+        this(x1, y1, x2, y2, minSize);
+        build(mRootNode, raster);
+    }
+    
+    /**
+     * Builds the subtree of a node from the raster (post-order).
+     * @param node node without children
+     * @param raster content of the pixels
+     */
+    private void build (Node node, Raster<Value> raster) {
+        
+        // Deepest level -> leaf (stores the largest content)
+        if (!node.createChildren()) {
+            long vX2 = Math.min(node.x + node.width, mRootNode.x + mWidth);
+            long vY2 = Math.min(node.y + node.height, mRootNode.y + mHeight);
+            for (long x = node.x; x < vX2; x++) {
+                for (long y = node.y; y < vY2; y++) {
+                    Value vContent = raster.get(x, y);
+                    if (vContent != null && (node.content == null || vContent.compareTo(node.content) > 0))
+                        node.content = vContent;
+                }
+            }
+            return;
+        }
+        
+        // Combine 4 leafs with the same content (nodes without any pixel 
+        // stay leafs without content)
+        boolean vSameContent = true;
+        Value vContent = null;
+        for (int i = 0; i < 4; i++) {
+            Node vNode = node.children.get(i);
+            build(vNode, raster);
+            if (i == 0)
+                vContent = vNode.content;
+            vSameContent &= vNode.children.isEmpty() && vNode.content == vContent;
+        }
+        if (vSameContent) {
+            node.content = vContent;
+            node.children.clear();
+        }
+    }
+    
     /**
      * Inserts a new element into the quadtree. If the node already exists, its
      * content will be replaced. 
@@ -496,6 +618,208 @@ public class QuadTree <Value extends Comparable & Serializable> {
         // finish node-infos
         file.write(tabs + "</Node>" + newline);
     }
+
+    /**
+     * Stores the quadtree into a binary file (see class description). Nodes 
+     * with children have no content. 
+     * @param filename name of the file
+     * @param sourceHash hash of the data the quadtree has been created from
+     * @throws IOException file not writable or contents which aren't Integers
+     */
+    public void save (String filename, long sourceHash) throws IOException
+    {
+        // traverse the tree in pre-order: structure bits and leaf contents
+        ArrayList<Value> vValues = new ArrayList<Value>();
+        HashMap<Value, Integer> vValueIndices = new HashMap<Value, Integer>();
+        ByteArrayOutputStream vStructure = new ByteArrayOutputStream();
+        ArrayList<Integer> vLeaves = new ArrayList<Integer>();
+        int vNodes = 0, vBits = 0;
+        
+        ArrayDeque<Node> vStack = new ArrayDeque<Node>();
+        vStack.push(mRootNode);
+        while (!vStack.isEmpty())
+        {
+            Node vNode = vStack.pop();
+            if (!vNode.children.isEmpty())
+            {
+                vBits |= 1 << (vNodes & 7);
+                for (int i = vNode.children.size() - 1; i >= 0; i--)
+                    vStack.push(vNode.children.get(i));
+            }
+            else
+            {
+                Integer vIndex = -1;
+                if (vNode.content != null)
+                {
+                    vIndex = vValueIndices.get(vNode.content);
+                    if (vIndex == null)
+                    {
+                        if (!(vNode.content instanceof Integer))
+                            throw new IOException("Only Integer contents can be stored in binary quadtree files: " + filename);
+                        vIndex = vValues.size();
+                        vValues.add(vNode.content);
+                        vValueIndices.put(vNode.content, vIndex);
+                    }
+                }
+                vLeaves.add(vIndex);
+            }
+            if ((++vNodes & 7) == 0)
+            {
+                vStructure.write(vBits);
+                vBits = 0;
+            }
+        }
+        if ((vNodes & 7) != 0)
+            vStructure.write(vBits);
+        
+        // header, table, structure, leaf indices
+        ByteArrayOutputStream vBytes = new ByteArrayOutputStream();
+        DataOutputStream vOutput = new DataOutputStream(vBytes);
+        vOutput.writeInt(sMagic);
+        vOutput.writeInt(sVersion);
+        vOutput.writeLong(sourceHash);
+        vOutput.writeLong(mMinNodeSize);
+        vOutput.writeLong(mWidth);
+        vOutput.writeLong(mHeight);
+        vOutput.writeLong(mRootNode.x);
+        vOutput.writeLong(mRootNode.y);
+        vOutput.writeLong(mRootNode.width);
+        vOutput.writeInt(vNodes);
+        vOutput.writeInt(vLeaves.size());
+        vOutput.writeInt(vValues.size());
+        for (Value vValue : vValues)
+            vOutput.writeInt(((Integer) vValue).intValue());
+        vStructure.writeTo(vOutput);
+        for (Integer vIndex : vLeaves)
+        {
+            if (vValues.size() < 255)
+                vOutput.writeByte(vIndex);
+            else
+                vOutput.writeInt(vIndex);
+        }
+        vOutput.flush();
+        
+        CRC32 vCrc = new CRC32();
+        vCrc.update(vBytes.toByteArray());
+        vOutput.writeInt((int) vCrc.getValue());
+        vOutput.close();
+        
+        FileOutputStream vFile = new FileOutputStream(filename);
+        try
+        {
+            vBytes.writeTo(vFile);
+        }
+        finally
+        {
+            vFile.close();
+        }
+    }
+    
+    /**
+     * Loads a quadtree from a binary file (see "save(String, long)"). The file
+     * is memory-mapped and verified by its checksum.
+     * @param filename name of the file
+     * @param sourceHash hash of the data the quadtree should be created from
+     * @return the quadtree or null if the file belongs to other source data or
+     * to another version (the quadtree has to be created again)
+     * @throws IOException file not readable or corrupted
+     */
+    public static QuadTree<Integer> load (String filename, long sourceHash) throws IOException
+    {
+        RandomAccessFile vFile = new RandomAccessFile(filename, "r");
+        MappedByteBuffer vBuffer;
+        try
+        {
+            FileChannel vChannel = vFile.getChannel();
+            if (vChannel.size() < sHeaderSize + 4 || vChannel.size() > Integer.MAX_VALUE)
+                throw new IOException("Invalid quadtree file: " + filename);
+            
+            // header (checked before mapping, so stale files can be replaced)
+            if (vFile.readInt() != sMagic)
+                throw new IOException("Invalid quadtree file: " + filename);
+            if (vFile.readInt() != sVersion || vFile.readLong() != sourceHash)
+                return null;
+            
+            vBuffer = vChannel.map(FileChannel.MapMode.READ_ONLY, 0, vChannel.size());
+        }
+        finally
+        {
+            vFile.close();
+        }
+        
+        // checksum of everything but the checksum itself
+        int vEnd = vBuffer.limit() - 4;
+        CRC32 vCrc = new CRC32();
+        byte [] vChunk = new byte[8192];
+        vBuffer.position(0);
+        while (vBuffer.position() < vEnd)
+        {
+            int vLength = Math.min(vChunk.length, vEnd - vBuffer.position());
+            vBuffer.get(vChunk, 0, vLength);
+            vCrc.update(vChunk, 0, vLength);
+        }
+        if (vBuffer.getInt() != (int) vCrc.getValue())
+            throw new IOException("Corrupted quadtree file: " + filename);
+        
+        QuadTree<Integer> vTree = new QuadTree<Integer>();
+        vBuffer.position(16);
+        vTree.mMinNodeSize = vBuffer.getLong();
+        vTree.mWidth = vBuffer.getLong();
+        vTree.mHeight = vBuffer.getLong();
+        vTree.mDomainSize = Math.max(vTree.mWidth, vTree.mHeight);
+        long x = vBuffer.getLong(), y = vBuffer.getLong(), size = vBuffer.getLong();
+        int vNodes = vBuffer.getInt();
+        int vLeaves = vBuffer.getInt();
+        int vValueCount = vBuffer.getInt();
+        if (vValueCount < 0 || vValueCount > (vEnd - vBuffer.position()) / 4)
+            throw new IOException("Invalid quadtree file: " + filename);
+        
+        // table of contents
+        Integer [] vValues = new Integer[vValueCount];
+        for (int i = 0; i < vValueCount; i++)
+            vValues[i] = vBuffer.getInt();
+        
+        // rebuild the nodes in pre-order
+        int vStructure = vBuffer.position();
+        int vLeafIndex = vStructure + (vNodes + 7) / 8;
+        int vIndexSize = vValueCount < 255 ? 1 : 4;
+        if (vLeafIndex + vLeaves * vIndexSize != vEnd)
+            throw new IOException("Invalid quadtree file: " + filename);
+        
+        vTree.mRootNode = vTree.new Node(x, y, size, size, null);
+        ArrayDeque<QuadTree<Integer>.Node> vStack = new ArrayDeque<QuadTree<Integer>.Node>();
+        vStack.push(vTree.mRootNode);
+        for (int n = 0; n < vNodes; n++)
+        {
+            if (vStack.isEmpty())
+                throw new IOException("Invalid quadtree file: " + filename);
+            QuadTree<Integer>.Node vNode = vStack.pop();
+            if ((vBuffer.get(vStructure + (n >> 3)) & (1 << (n & 7))) != 0)
+            {
+                vNode.split();
+                for (int i = 3; i >= 0; i--)
+                    vStack.push(vNode.children.get(i));
+            }
+            else
+            {
+                if (vLeafIndex >= vEnd)
+                    throw new IOException("Invalid quadtree file: " + filename);
+                int vIndex;
+                if (vIndexSize == 1)
+                {
+                    vIndex = vBuffer.get(vLeafIndex) & 0xFF;
+                    vIndex = vIndex == 0xFF ? -1 : vIndex;
+                }
+                else
+                    vIndex = vBuffer.getInt(vLeafIndex);
+                vLeafIndex += vIndexSize;
+                vNode.content = vIndex >= 0 ? vValues[vIndex] : null;
+            }
+        }
+        if (!vStack.isEmpty())
+            throw new IOException("Invalid quadtree file: " + filename);
+        return vTree;
+    }
     
     
     
@@ -0,0 +1,199 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package crazyballrun.game;
+
+import crazyballrun.game.ThreadLifecycle.State;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Testing class for ThreadLifecycle-class.
+ * 
+ * @author Timm Hoffmeister
+ */
+public class ThreadLifecycleTest {
+    
+    /**
+     * Maximum time to wait for another thread in miliseconds.
+     */
+    private static final long sTimeout = 5000;
+    
+    public ThreadLifecycleTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+    
+    @Before
+    public void setUp() {
+    }
+    
+    @After
+    public void tearDown() {
+    }
+    
+    /**
+     * Owner thread which waits in "awaitResume" once.
+     */
+    private static class Owner extends Thread {
+        
+        /**
+         * State of the owner.
+         */
+        public ThreadLifecycle mLifecycle = null;
+        
+        /**
+         * Result of "awaitResume".
+         */
+        public volatile boolean mPaused = false;
+        
+        @Override
+        public void run () {
+            mPaused = mLifecycle.awaitResume();
+        }
+    }
+    
+    /**
+     * Creates an owner thread, which isn't started yet.
+     * @param state initial state of its lifecycle
+     * @return reference to the owner
+     */
+    private Owner createOwner (State state) {
+        Owner vOwner = new Owner();
+        vOwner.mLifecycle = new ThreadLifecycle(vOwner, state);
+        return vOwner;
+    }
+    
+    /**
+     * Waits until a thread is parked.
+     * @param thread reference to the thread
+     */
+    private void awaitParked (Thread thread) throws InterruptedException {
+        long vEnd = System.currentTimeMillis() + sTimeout;
+        while (thread.getState() != Thread.State.WAITING)
+        {
+            assertTrue(System.currentTimeMillis() < vEnd);
+            Thread.sleep(1);
+        }
+    }
+
+    /**
+     * Test of the state transitions (pause, resume, setAmple and stop).
+     */
+    @Test
+    public void testTransitions() {
+        System.out.println("transitions");
+        ThreadLifecycle instance = new ThreadLifecycle(Thread.currentThread(), State.PAUSED);
+        assertTrue(instance.isPaused());
+        
+        // the ample can't be activated while paused
+        assertFalse(instance.setAmple(true));
+        assertFalse(instance.pause());
+        assertTrue(instance.resume());
+        assertEquals(State.RUNNING, instance.getState());
+        assertFalse(instance.resume());
+        
+        // ample on and off
+        assertTrue(instance.setAmple(true));
+        assertTrue(instance.isAmple());
+        assertFalse(instance.setAmple(true));
+        assertTrue(instance.setAmple(false));
+        assertEquals(State.RUNNING, instance.getState());
+        assertFalse(instance.setAmple(false));
+        
+        // pausing during the ample continues without it
+        assertTrue(instance.setAmple(true));
+        assertTrue(instance.pause());
+        assertTrue(instance.isPaused());
+        assertFalse(instance.setAmple(false));
+        assertTrue(instance.resume());
+        assertEquals(State.RUNNING, instance.getState());
+        
+        // stopping is final
+        assertTrue(instance.pause());
+        instance.stop();
+        assertFalse(instance.isRunning());
+        assertFalse(instance.resume());
+        assertFalse(instance.pause());
+        assertFalse(instance.setAmple(true));
+        assertEquals(State.STOPPING, instance.getState());
+    }
+
+    /**
+     * Test of awaitResume method: a parked thread is resumed by another 
+     * thread, interrupts don't end the pause.
+     */
+    @Test
+    public void testAwaitResume() throws InterruptedException {
+        System.out.println("awaitResume");
+        final Owner vOwner = createOwner(State.PAUSED);
+        vOwner.start();
+        awaitParked(vOwner);
+        
+        vOwner.interrupt();
+        Thread.sleep(20);
+        assertTrue(vOwner.isAlive());
+        assertTrue(vOwner.mLifecycle.isPaused());
+        
+        Thread vResumer = new Thread() {
+            @Override
+            public void run () {
+                vOwner.mLifecycle.resume();
+            }
+        };
+        vResumer.start();
+        vOwner.join(sTimeout);
+        assertFalse(vOwner.isAlive());
+        assertTrue(vOwner.mPaused);
+        assertEquals(State.RUNNING, vOwner.mLifecycle.getState());
+        
+        // not paused: returns at once
+        vOwner.mLifecycle.setAmple(true);
+        assertFalse(vOwner.mLifecycle.awaitResume());
+    }
+
+    /**
+     * Test of stop method: a parked thread is woken up.
+     */
+    @Test
+    public void testStop() throws InterruptedException {
+        System.out.println("stop");
+        Owner vOwner = createOwner(State.PAUSED);
+        vOwner.start();
+        awaitParked(vOwner);
+        vOwner.mLifecycle.stop();
+        vOwner.join(sTimeout);
+        assertFalse(vOwner.isAlive());
+        assertFalse(vOwner.mLifecycle.isRunning());
+    }
+
+    /**
+     * Test of resume method: a resume racing with the owner entering 
+     * "awaitResume" (before, during or after parking) is never lost.
+     */
+    @Test
+    public void testResume_NoLostWakeup() throws InterruptedException {
+        System.out.println("resume");
+        for (int i = 0; i < 500; i++)
+        {
+            Owner vOwner = createOwner(State.PAUSED);
+            vOwner.start();
+            if (i % 2 == 0)
+                Thread.yield();
+            assertTrue(vOwner.mLifecycle.resume());
+            vOwner.join(sTimeout);
+            assertFalse(vOwner.isAlive());
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package crazyballrun.game.level;
+
+import crazyballrun.game.graphics.Animation;
+import crazyballrun.game.level.objects.LevelObject;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test-class for the ObjectRegistry.
+ * @author Timm Hoffmeister
+ */
+public class ObjectRegistryTest {
+
+    /**
+     * Minimal LevelObject for the registry.
+     */
+    private static class TestObject extends LevelObject
+    {
+        @Override
+        public Animation getAnimation() { return null; }
+
+        @Override
+        public void setProperty(String property, String value) { }
+
+        @Override
+        public void initialize() { }
+
+        @Override
+        public void onCollision(LevelObject obj) { }
+    }
+
+    public ObjectRegistryTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    /**
+     * Test of add and commit methods, of class ObjectRegistry.
+     */
+    @Test
+    public void testAddCommit() {
+        System.out.println("add/commit");
+        ObjectRegistry instance = new ObjectRegistry();
+        LevelObject vFirst = new TestObject();
+        LevelObject vSecond = new TestObject();
+
+        // nothing visible before the commit
+        instance.add(vFirst);
+        instance.add(vSecond);
+        assertEquals(0, instance.getSnapshot().length);
+        assertEquals(0, instance.getVersion());
+
+        assertTrue(instance.commit());
+        LevelObject [] vSnapshot = instance.getSnapshot();
+        assertEquals(2, vSnapshot.length);
+        assertSame(vFirst, vSnapshot[0]);
+        assertSame(vSecond, vSnapshot[1]);
+        assertEquals(1, instance.getVersion());
+        
+        // ids are assigned in the order of adding
+        assertEquals(1, vFirst.getId());
+        assertEquals(2, vSecond.getId());
+
+        // unchanged registry keeps its snapshot
+        assertFalse(instance.commit());
+        assertSame(vSnapshot, instance.getSnapshot());
+        assertEquals(1, instance.getVersion());
+    }
+
+    /**
+     * Test of remove method, of class ObjectRegistry.
+     */
+    @Test
+    public void testRemove() {
+        System.out.println("remove");
+        ObjectRegistry instance = new ObjectRegistry();
+        LevelObject vFirst = new TestObject();
+        LevelObject vSecond = new TestObject();
+        LevelObject vThird = new TestObject();
+        instance.add(vFirst);
+        instance.add(vSecond);
+        instance.commit();
+        LevelObject [] vOld = instance.getSnapshot();
+
+        // removal and addition are applied at once, old snapshot stays valid
+        instance.remove(vFirst);
+        instance.add(vThird);
+        assertTrue(instance.commit());
+        LevelObject [] vSnapshot = instance.getSnapshot();
+        assertEquals(2, vSnapshot.length);
+        assertSame(vSecond, vSnapshot[0]);
+        assertSame(vThird, vSnapshot[1]);
+        assertEquals(2, vOld.length);
+        assertSame(vFirst, vOld[0]);
+
+        // object added and removed within one batch never shows up
+        LevelObject vFourth = new TestObject();
+        instance.add(vFourth);
+        instance.remove(vFourth);
+        instance.commit();
+        assertEquals(2, instance.getSnapshot().length);
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package crazyballrun.game.physics;
+
+import crazyballrun.game.GameConstants;
+import crazyballrun.game.physics.bodies.PhysicalBody;
+import crazyballrun.game.physics.bodies.SoftBody;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test-class for the CollisionResponse.
+ * @author Timm Hoffmeister
+ */
+public class CollisionResponseTest {
+
+    public CollisionResponseTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    /**
+     * Creates a body at a position with a velocity.
+     * @param x x-coordinate of the position
+     * @param vx x-coordinate of the velocity
+     * @param mass mass of the body ("0" for immovable)
+     * @return reference to the body
+     */
+    private PhysicalBody createBody (double x, double vx, String mass) {
+        PhysicalBody vBody = new SoftBody();
+        vBody.setProperty("Mass", mass);
+        vBody.setPosition(x, 0.0);
+        vBody.setVelocity(vx, 0.0);
+        return vBody;
+    }
+
+    /**
+     * Test of resolve method, of class CollisionResponse. Two approaching
+     * bodies of the same mass are pushed apart by the penetration depth and
+     * move away from each other afterwards.
+     */
+    @Test
+    public void testResolve() {
+        System.out.println("resolve");
+        PhysicalBody a = createBody(0.0, 1.0, "1");
+        PhysicalBody b = createBody(0.1, -1.0, "1");
+        Contact vContact = new Contact();
+        vContact.set(0.05, 0.0, 1.0, 0.0, 0.05);
+
+        CollisionResponse.resolve(a, b, vContact);
+
+        // separated within one step
+        double vGap = b.getPositionX() - a.getPositionX();
+        assertEquals(0.1 + 0.05 + GameConstants.CONTACT_SEPARATION, vGap, 1e-12);
+        assertEquals(-(0.05 + GameConstants.CONTACT_SEPARATION) / 2, a.getPositionX(), 1e-12);
+
+        // restitution 0.2: the bodies move apart with a fifth of the speed
+        assertEquals(-0.2, a.getVelocityX(), 1e-12);
+        assertEquals(0.2, b.getVelocityX(), 1e-12);
+        assertEquals(0.0, a.getVelocityY(), 0.0);
+
+        // no impulse for separating bodies, but the overlap is still removed
+        a.setVelocity(-1.0, 0.0);
+        b.setVelocity(1.0, 0.0);
+        CollisionResponse.resolve(a, b, vContact);
+        assertEquals(-1.0, a.getVelocityX(), 0.0);
+        assertEquals(1.0, b.getVelocityX(), 0.0);
+    }
+
+    /**
+     * Test of resolve method, of class CollisionResponse, with immovable
+     * bodies (mass "0").
+     */
+    @Test
+    public void testResolve_Immovable() {
+        System.out.println("resolve");
+        PhysicalBody a = createBody(0.0, 0.0, "0");
+        PhysicalBody b = createBody(0.1, -1.0, "1");
+        Contact vContact = new Contact();
+        vContact.set(0.05, 0.0, 1.0, 0.0, 0.05);
+
+        // only the movable body is pushed back and bounces off
+        CollisionResponse.resolve(a, b, vContact);
+        assertEquals(0.0, a.getPositionX(), 0.0);
+        assertEquals(0.0, a.getVelocityX(), 0.0);
+        assertEquals(0.1 + 0.05 + GameConstants.CONTACT_SEPARATION, b.getPositionX(), 1e-12);
+        assertEquals(0.2, b.getVelocityX(), 1e-12);
+
+        // two immovable bodies are left alone
+        PhysicalBody c = createBody(0.1, -1.0, "0");
+        CollisionResponse.resolve(a, c, vContact);
+        assertEquals(0.0, a.getPositionX(), 0.0);
+        assertEquals(0.1, c.getPositionX(), 0.0);
+        assertEquals(-1.0, c.getVelocityX(), 0.0);
+    }
+
+    /**
+     * Test of resolveWall method, of class CollisionResponse. Only the
+     * velocity along the normal is reflected, the tangential one is kept.
+     */
+    @Test
+    public void testResolveWall() {
+        System.out.println("resolveWall");
+        PhysicalBody vBody = createBody(1.0, -1.0, "0");
+        vBody.setVelocity(-1.0, 0.5);
+        Contact vContact = new Contact();
+        vContact.set(1.0, 0.0, 1.0, 0.0, 0.02);
+
+        // the mass doesn't matter for walls
+        CollisionResponse.resolveWall(vBody, vContact);
+        assertEquals(1.0 + 0.02 + GameConstants.CONTACT_SEPARATION, vBody.getPositionX(), 1e-12);
+        assertEquals(0.0, vBody.getPositionY(), 0.0);
+        assertEquals(0.2, vBody.getVelocityX(), 1e-12);
+        assertEquals(0.5, vBody.getVelocityY(), 0.0);
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package crazyballrun.game.physics.bodies;
+
+import crazyballrun.game.GameConstants;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Testing class for PhysicalBody-class (sleeping of idle bodies).
+ * 
+ * @author Timm Hoffmeister
+ */
+public class PhysicalBodyTest {
+    
+    public PhysicalBodyTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+    
+    @Before
+    public void setUp() {
+    }
+    
+    @After
+    public void tearDown() {
+    }
+    
+    /**
+     * Creates a body which has been idle long enough to fall asleep.
+     * @return reference to the sleeping body
+     */
+    private PhysicalBody createSleepingBody () {
+        PhysicalBody vBody = new SoftBody();
+        for (int i = 0; i < GameConstants.SLEEP_STEPS; i++)
+            vBody.updateSleep(vBody.isIdle());
+        assertTrue(vBody.isSleeping());
+        return vBody;
+    }
+
+    /**
+     * Test of updateSleep method, of class PhysicalBody.
+     */
+    @Test
+    public void testUpdateSleep() {
+        System.out.println("updateSleep");
+        PhysicalBody instance = new SoftBody();
+        assertTrue(instance.isIdle());
+        
+        // falls asleep after SLEEP_STEPS idle timesteps in a row
+        for (int i = 1; i < GameConstants.SLEEP_STEPS; i++)
+        {
+            instance.updateSleep(true);
+            assertFalse(instance.isSleeping());
+        }
+        instance.updateSleep(true);
+        assertTrue(instance.isSleeping());
+        
+        // a busy timestep wakes it up and restarts the counting
+        instance.updateSleep(false);
+        assertFalse(instance.isSleeping());
+        for (int i = 1; i < GameConstants.SLEEP_STEPS; i++)
+            instance.updateSleep(true);
+        assertFalse(instance.isSleeping());
+        
+        // moving bodies aren't idle
+        instance.setVelocity(0.1, 0.0);
+        assertFalse(instance.isIdle());
+    }
+
+    /**
+     * Test of applyImpulse method, of class PhysicalBody (waking up).
+     */
+    @Test
+    public void testApplyImpulse() {
+        System.out.println("applyImpulse");
+        PhysicalBody instance = createSleepingBody();
+        instance.applyImpulse(0.1, 0.0);
+        assertFalse(instance.isSleeping());
+        assertFalse(instance.isIdle());
+    }
+
+    /**
+     * Test of attachRotation method, of class PhysicalBody (waking up).
+     */
+    @Test
+    public void testAttachRotation() {
+        System.out.println("attachRotation");
+        PhysicalBody instance = createSleepingBody();
+        instance.attachRotation(0.1);
+        assertFalse(instance.isSleeping());
+        
+        // attached forces keep the body awake
+        assertFalse(instance.isIdle());
+        instance.detachRotation(0.1);
+        assertTrue(instance.isIdle());
+    }
+
+    /**
+     * Test of attachAcceleration method, of class PhysicalBody (waking up).
+     */
+    @Test
+    public void testAttachAcceleration() {
+        System.out.println("attachAcceleration");
+        PhysicalBody instance = createSleepingBody();
+        instance.attachAcceleration(0.1, 0.0);
+        assertFalse(instance.isSleeping());
+        
+        // attached forces keep the body awake
+        assertFalse(instance.isIdle());
+        instance.detachAcceleration(0.1, 0.0);
+        assertTrue(instance.isIdle());
+    }
+}
@@ -20,6 +20,10 @@ import crazyballrun.game.controls.IControl;
 import java.util.ArrayList;
 import crazyballrun.game.GameSettingsParser;
 import crazyballrun.game.level.Level;
+import crazyballrun.game.level.Tile;
+import crazyballrun.game.physics.CollisionResponse;
+import crazyballrun.game.physics.CollisionTexture;
+import crazyballrun.game.physics.Contact;
 import crazyballrun.game.level.objects.LevelObject;
 import crazyballrun.game.utilities.Vector2D;
 import java.awt.Color;
@@ -168,6 +172,95 @@ public class VehicleTest {
         }
     }
 
+    /**
+     * Test of isColliding method (walls), of class Vehicle. The level has no 
+     * walls at all, so polygon points on the seams of the tiles must not hit
+     * anything.
+     */
+    @Test
+    public void testIsColliding_Level() {
+        System.out.println("isColliding");
+        
+        // Level without walls
+        Level vLevel = new Level();
+        vLevel.createMap(4, 4, 1);
+        CollisionTexture vTexture = new CollisionTexture(
+                new BufferedImage(GameConstants.TEXTURE_SIZE, GameConstants.TEXTURE_SIZE, BufferedImage.TYPE_INT_RGB));
+        for (int x = 0; x < 4; x++)
+            for (int y = 0; y < 4; y++)
+                vLevel.createLevelTile(new Tile(vTexture, null, null), x, y, 0);
+        
+        assertTrue(vLevel.getWallDistance(2.0, 1.5, 0) > 0.0);
+        assertTrue(vLevel.getWallDistance(1.5, 2.0, 0) > 0.0);
+        assertTrue(vLevel.getWallDistance(2.0, 2.0, 0) > 0.0);
+        
+        LevelObject vObj = LevelEngine.getInstance().loadObject("Truck");
+        vObj.setLevel(vLevel);
+        Vehicle instance = (Vehicle)vObj.getObjectModel();
+        
+        // move the truck pixel by pixel over the seams at x = 2 and y = 2
+        for (int i = 0; i < GameConstants.TEXTURE_SIZE; i++)
+        {
+            double vOffset = (double) i / GameConstants.TEXTURE_SIZE;
+            vObj.setPosition(new Vector2D(1.5 + vOffset, 1.5 + vOffset), 0);
+            vObj.initialize();
+            instance.updateData();
+            assertNull(instance.isColliding(vLevel));
+        }
+    }
+
+    /**
+     * Test of getContact method, of class Vehicle. The contact of two 
+     * overlapping trucks is found by the separating axis theorem and the 
+     * CollisionResponse separates them within one step. 
+     */
+    @Test
+    public void testGetContact() {
+        System.out.println("getContact");
+        
+        LevelObject vObj = LevelEngine.getInstance().loadObject("Truck");
+        LevelObject vObjColl = LevelEngine.getInstance().loadObject("Truck");
+        Level vLevel = new Level();
+        vLevel.create("SimpleMap");
+        vObj.setLevel(vLevel);
+        vObjColl.setLevel(vLevel);
+        
+        for (int immovable = 0; immovable < 2; immovable++)
+        {
+            vObj.setPosition(new Vector2D(0.0, 0.0), 0);
+            vObj.initialize();
+            vObjColl.setPosition(new Vector2D(0.09375, 0.140625), 0);
+            vObjColl.initialize();
+            
+            Vehicle instance = (Vehicle)vObj.getObjectModel();
+            Vehicle instance_coll = (Vehicle)vObjColl.getObjectModel();
+            instance.setProperty("Mass", immovable == 0 ? "1" : "0");
+            instance.updateData();
+            instance_coll.updateData();
+            
+            // normal points from the first truck to the second one
+            Contact vContact = new Contact();
+            assertTrue(instance.getContact(instance_coll, vContact));
+            assertTrue(vContact.depth > 0.0);
+            assertEquals(1.0, vContact.nx * vContact.nx + vContact.ny * vContact.ny, 1e-9);
+            double dx = instance_coll.getCenterX() - instance.getCenterX();
+            double dy = instance_coll.getCenterY() - instance.getCenterY();
+            assertTrue(vContact.nx * dx + vContact.ny * dy > 0.0);
+            
+            // separated within one step, immovable trucks stay in place
+            CollisionResponse.resolve(instance, instance_coll, vContact);
+            instance.updateData();
+            instance_coll.updateData();
+            assertFalse(instance.getContact(instance_coll, vContact));
+            assertFalse(instance.isColliding(instance_coll));
+            if (immovable == 1)
+            {
+                assertEquals(0.0, instance.getPositionX(), 0.0);
+                assertEquals(0.0, instance.getPositionY(), 0.0);
+            }
+        }
+    }
+
     /**
      * Test of isRigidBody method, of class Vehicle.
      */
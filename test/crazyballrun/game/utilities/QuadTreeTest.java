@@ -10,6 +10,7 @@ import java.awt.Color;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.util.HashMap;
+import java.util.Random;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
@@ -143,4 +144,121 @@ public class QuadTreeTest {
         
         assertTrue(vEqual);        
     }
+
+    /**
+     * Test of the raster constructor of class QuadTree: the tree built from
+     * the image has to be the same as the tree of "testInsert".
+     */
+    @Test
+    public void testRaster() {
+        System.out.println("raster");
+
+        BufferedImage vOutput = null, vResult = null;
+
+        // load image
+        final BufferedImage vImage;
+        try {
+            vImage = ImageIO.read(this.getClass().getResource("QuadTreeTest.bmp"));
+            vOutput = ImageIO.read(this.getClass().getResource("QuadTreeTestOutput.bmp"));
+            vResult = ImageIO.read(this.getClass().getResource("QuadTreeTestResult.bmp"));
+        }
+        catch (IOException e) {
+            fail("Image not found: QuadTreeTest.bmp");
+            return;
+        }
+        
+        // Build tree from image at once
+        QuadTree<Integer> vTree = new QuadTree<Integer>(0, 0, vImage.getWidth(), vImage.getHeight(), 4, new QuadTree.Raster<Integer>() {
+            @Override
+            public Integer get (long x, long y) {
+                if (vImage.getRGB((int) x, (int) y) == Color.WHITE.getRGB())
+                    return 1;
+                else if (vImage.getRGB((int) x, (int) y) == Color.BLACK.getRGB())
+                    return 0;
+                return 2;
+            }
+        });
+        
+        // Paint tree into output image
+        HashMap<Integer, Color> vColorTable = new HashMap<Integer, Color> ();
+        vColorTable.put(0, Color.BLUE);
+        vColorTable.put(1, Color.RED);
+        vColorTable.put(2, Color.YELLOW);
+        vTree.paint(vOutput, vColorTable);    
+        
+        // Compare test-result to real solution
+        boolean vEqual = true;
+        for (int x = 0; x < vOutput.getWidth(); x++)
+            for (int y = 0; y < vOutput.getHeight(); y++)
+                if (vOutput.getRGB(x, y) != vResult.getRGB(x, y))
+                    vEqual = false;
+
+        assertTrue(vEqual);
+    }
+
+    /**
+     * Test of the raster constructor of class QuadTree: the tree has to be the
+     * same as inserting the pixels tile by tile (like the LevelParser), also
+     * for missing tiles and a domain which is not square.
+     */
+    @Test
+    public void testRasterTiles() {
+        System.out.println("raster (tiles)");
+        
+        final int vTileSize = 16, vTilesX = 5, vTilesY = 3;
+        final int vWidth = vTileSize * vTilesX, vHeight = vTileSize * vTilesY;
+        
+        // Random walls, one missing tile
+        Random vRandom = new Random(42);
+        final Integer [] vPixels = new Integer[vWidth * vHeight];
+        for (int i = 0; i < vPixels.length; i++)
+            vPixels[i] = vRandom.nextInt(20) == 0 ? 1 : 0;
+        for (int x = 20; x < 50; x++)
+            for (int y = 10; y < 30; y++)
+                vPixels[y * vWidth + x] = 1;
+        for (int x = 2 * vTileSize; x < 3 * vTileSize; x++)
+            for (int y = vTileSize; y < 2 * vTileSize; y++)
+                vPixels[y * vWidth + x] = null;
+        
+        // Insert pixels tile by tile
+        QuadTree<Integer> vInserted = new QuadTree<Integer>(0, 0, vWidth, vHeight, 3);
+        for (int tx = 0; tx < vTilesX; tx++)
+            for (int ty = 0; ty < vTilesY; ty++)
+                for (int ix = 0; ix < vTileSize; ix++)
+                    for (int iy = 0; iy < vTileSize; iy++)
+                    {
+                        Integer vPixel = vPixels[(ty * vTileSize + iy) * vWidth + tx * vTileSize + ix];
+                        if (vPixel != null)
+                            vInserted.insert(tx * vTileSize + ix, ty * vTileSize + iy, vPixel);
+                    }
+        
+        // Build from the raster
+        QuadTree<Integer> vBuilt = new QuadTree<Integer>(0, 0, vWidth, vHeight, 3, new QuadTree.Raster<Integer>() {
+            @Override
+            public Integer get (long x, long y) {
+                return vPixels[(int) (y * vWidth + x)];
+            }
+        });
+        
+        // Same leaf at each point of the (square) domain
+        for (int x = 0; x < vWidth; x++)
+        {
+            for (int y = 0; y < vWidth; y++)
+            {
+                QuadTree<Integer>.Node vExpected = vInserted.getLeaf(x, y);
+                QuadTree<Integer>.Node vResult = vBuilt.getLeaf(x, y);
+                if (vExpected == null)
+                {
+                    assertNull(vResult);
+                    continue;
+                }
+                assertNotNull(vResult);
+                assertEquals(vExpected.getX(), vResult.getX());
+                assertEquals(vExpected.getY(), vResult.getY());
+                assertEquals(vExpected.getWidth(), vResult.getWidth());
+                assertEquals(vExpected.getHeight(), vResult.getHeight());
+                assertEquals(vExpected.getContent(), vResult.getContent());
+            }
+        }
+    }
 }